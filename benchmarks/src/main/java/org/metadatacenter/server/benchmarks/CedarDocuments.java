@@ -0,0 +1,194 @@
+package org.metadatacenter.server.benchmarks;
+
+import checkers.nullness.quals.NonNull;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Generates documents with the structure and size of CEDAR templates and template instances. Templates embed a JSON
+ * schema per field, with the "$schema" keys and JSON-LD keys that the DAO escapes or maps when they are stored, and
+ * weigh tens of kilobytes; instances hold a value per field of their template and weigh a few kilobytes. The
+ * documents are built from a seed so that all runs measure the same data.
+ */
+public class CedarDocuments {
+
+  public static final String TEMPLATE_TYPE = "template";
+  public static final String INSTANCE_TYPE = "instance";
+
+  static final String BASE_PATH = "https://repo.metadatacenter.org/";
+  private static final String SCHEMA = "http://json-schema.org/draft-04/schema#";
+  private static final String CORE = "https://schema.metadatacenter.org/core/";
+  private static final String PROPERTIES = "https://schema.metadatacenter.org/properties/";
+  private static final String[] INPUT_TYPES = {"textfield", "textarea", "date", "email", "numeric", "list", "radio",
+      "checkbox"};
+  private static final String[] WORDS = {"sample", "organism", "tissue", "assay", "platform", "protocol", "donor",
+      "disease", "treatment", "instrument", "library", "strategy", "cell", "line", "study", "identifier"};
+
+  private final JsonNodeFactory factory = JsonNodeFactory.instance;
+  private final Random random;
+
+  public CedarDocuments(long seed) {
+    this.random = new Random(seed);
+  }
+
+  /**
+   * @param type   {@link #TEMPLATE_TYPE} or {@link #INSTANCE_TYPE}
+   * @param fields The number of fields of the template
+   * @return A new document without linked data ID
+   */
+  @NonNull
+  public ObjectNode document(@NonNull String type, int fields) {
+    switch (type) {
+      case TEMPLATE_TYPE:
+        return template(fields);
+      case INSTANCE_TYPE:
+        return instance(fields);
+      default:
+        throw new IllegalArgumentException("Unknown document type: " + type);
+    }
+  }
+
+  /**
+   * @return The modifications of a typical update of a document of the type: new values for some of its fields
+   */
+  @NonNull
+  public ObjectNode modifications(@NonNull String type, int fields) {
+    ObjectNode modifications = factory.objectNode();
+    if (TEMPLATE_TYPE.equals(type)) {
+      modifications.put("title", sentence(4));
+      modifications.put("description", sentence(20));
+      modifications.putObject("_ui").set("order", fieldOrder(fields));
+    } else {
+      for (int i = 0; i < Math.min(fields, 5); i++) {
+        modifications.putObject(fieldName(i)).put("@value", sentence(3));
+      }
+    }
+    return modifications;
+  }
+
+  @NonNull
+  public ObjectNode template(int fields) {
+    ObjectNode template = factory.objectNode();
+    template.put("$schema", SCHEMA);
+    template.put("@type", CORE + "Template");
+    ObjectNode context = template.putObject("@context");
+    context.put("pav", "http://purl.org/pav/");
+    context.put("cedar", CORE);
+    template.put("type", "object");
+    template.put("title", sentence(4));
+    template.put("description", sentence(20));
+    ObjectNode properties = template.putObject("properties");
+    properties.set("@context", contextSchema(fields));
+    properties.set("@id", stringSchema("uri"));
+    properties.set("@type", stringSchema("uri"));
+    ArrayNode required = template.putArray("required");
+    required.add("@context").add("@id");
+    for (int i = 0; i < fields; i++) {
+      properties.set(fieldName(i), field(i));
+      required.add(fieldName(i));
+    }
+    ObjectNode ui = template.putObject("_ui");
+    ui.set("order", fieldOrder(fields));
+    ui.putArray("pages");
+    template.put("pav:createdOn", "2016-03-01T10:15:30-08:00");
+    template.put("pav:lastUpdatedOn", "2016-03-02T16:45:00-08:00");
+    template.put("additionalProperties", false);
+    return template;
+  }
+
+  @NonNull
+  public ObjectNode instance(int fields) {
+    ObjectNode instance = factory.objectNode();
+    ObjectNode context = instance.putObject("@context");
+    for (int i = 0; i < fields; i++) {
+      context.put(fieldName(i), PROPERTIES + fieldName(i));
+    }
+    instance.put("_templateId", BASE_PATH + "templates/" + new UUID(random.nextLong(), random.nextLong()));
+    for (int i = 0; i < fields; i++) {
+      ObjectNode value = instance.putObject(fieldName(i));
+      if (i % 4 == 3) {
+        value.put("@id", "http://purl.obolibrary.org/obo/NCBITaxon_" + (9000 + random.nextInt(1000)));
+        value.put("_valueLabel", sentence(2));
+      } else {
+        value.put("@value", sentence(1 + random.nextInt(6)));
+      }
+    }
+    instance.put("pav:createdOn", "2016-03-01T10:15:30-08:00");
+    return instance;
+  }
+
+  private ObjectNode field(int index) {
+    ObjectNode field = factory.objectNode();
+    field.put("$schema", SCHEMA);
+    field.put("@id", BASE_PATH + "template-fields/" + new UUID(random.nextLong(), random.nextLong()));
+    field.put("@type", CORE + "TemplateField");
+    field.put("type", "object");
+    field.put("title", sentence(3));
+    field.put("description", sentence(12));
+    ObjectNode properties = field.putObject("properties");
+    properties.putObject("@type").putArray("oneOf").addObject().put("type", "string").put("format", "uri");
+    properties.putObject("@value").putArray("type").add("string").add("null");
+    properties.putObject("_valueLabel").putArray("type").add("string").add("null");
+    field.putArray("required").add("@value");
+    ObjectNode ui = field.putObject("_ui");
+    String inputType = INPUT_TYPES[index % INPUT_TYPES.length];
+    ui.put("inputType", inputType);
+    ObjectNode constraints = field.putObject("_valueConstraints");
+    constraints.put("requiredValue", random.nextBoolean());
+    constraints.put("multipleChoice", false);
+    if ("list".equals(inputType) || "radio".equals(inputType) || "checkbox".equals(inputType)) {
+      ArrayNode literals = constraints.putArray("literals");
+      for (int i = 0; i < 8; i++) {
+        literals.addObject().put("label", sentence(2));
+      }
+    }
+    field.put("pav:createdOn", "2016-03-01T10:15:30-08:00");
+    field.put("additionalProperties", false);
+    return field;
+  }
+
+  private ObjectNode contextSchema(int fields) {
+    ObjectNode schema = factory.objectNode();
+    schema.put("type", "object");
+    ObjectNode properties = schema.putObject("properties");
+    for (int i = 0; i < fields; i++) {
+      properties.putObject(fieldName(i)).putArray("enum").add(PROPERTIES + fieldName(i));
+    }
+    schema.put("additionalProperties", false);
+    return schema;
+  }
+
+  private ObjectNode stringSchema(String format) {
+    ObjectNode schema = factory.objectNode();
+    schema.put("type", "string");
+    schema.put("format", format);
+    return schema;
+  }
+
+  private ArrayNode fieldOrder(int fields) {
+    ArrayNode order = factory.arrayNode();
+    for (int i = 0; i < fields; i++) {
+      order.add(fieldName(i));
+    }
+    return order;
+  }
+
+  private static String fieldName(int index) {
+    return "field" + index;
+  }
+
+  private String sentence(int words) {
+    StringBuilder sentence = new StringBuilder();
+    for (int i = 0; i < words; i++) {
+      if (i > 0) {
+        sentence.append(' ');
+      }
+      sentence.append(WORDS[random.nextInt(WORDS.length)]);
+    }
+    return sentence.toString();
+  }
+}
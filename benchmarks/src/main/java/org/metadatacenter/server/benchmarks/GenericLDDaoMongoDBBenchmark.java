@@ -0,0 +1,143 @@
+package org.metadatacenter.server.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.fakemongo.Fongo;
+import org.metadatacenter.server.dao.cache.JsonNodeSizeEstimator;
+import org.metadatacenter.server.dao.cache.LruDocumentCache;
+import org.metadatacenter.server.dao.mongodb.GenericLDDaoMongoDB;
+import org.metadatacenter.server.service.BulkCreateReport;
+import org.metadatacenter.server.service.FieldNameInEx;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.management.InstanceNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the read and write paths of {@link GenericLDDaoMongoDB} on CEDAR templates and instances, against an
+ * in-process MongoDB (Fongo). The database work is the same for every version of the DAO, so differences between runs
+ * come from the DAO itself: encoding and decoding, key escaping, ID mapping and caching.
+ * <p>
+ * Each benchmark reports its throughput and the percentiles of its latency. The allocation rate is reported by the
+ * GC profiler:
+ * <pre>
+ *   java -jar target/benchmarks.jar GenericLDDaoMongoDBBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class GenericLDDaoMongoDBBenchmark {
+
+  private static final int STORED_DOCUMENTS = 1000;
+  private static final int PAGE_SIZE = 50;
+  private static final List<String> SUMMARY_FIELDS = Arrays.asList("@id", "title", "description", "_templateId");
+
+  @Param({CedarDocuments.TEMPLATE_TYPE, CedarDocuments.INSTANCE_TYPE})
+  public String documentType;
+
+  @Param({"40"})
+  public int fields;
+
+  @Param({"false", "true"})
+  public boolean cached;
+
+  private GenericLDDaoMongoDB dao;
+  private ObjectNode document;
+  private ObjectNode modifications;
+  private String[] ids;
+
+  @Setup(Level.Trial)
+  public void createDao() {
+    Fongo fongo = new Fongo("benchmark");
+    dao = new GenericLDDaoMongoDB(fongo.getMongo(), "cedar", documentType + "s",
+        CedarDocuments.BASE_PATH + documentType + "s/");
+    if (cached) {
+      dao.setCache(new LruDocumentCache<>(STORED_DOCUMENTS, Long.MAX_VALUE, JsonNodeSizeEstimator::estimate));
+    }
+    CedarDocuments documents = new CedarDocuments(42);
+    document = documents.document(documentType, fields);
+    modifications = documents.modifications(documentType, fields);
+  }
+
+  /**
+   * Restores the stored documents before each iteration, so that the creations of the previous one do not make the
+   * collection grow from one iteration to the next
+   */
+  @Setup(Level.Iteration)
+  public void storeDocuments() throws IOException {
+    dao.deleteAll();
+    List<JsonNode> elements = new ArrayList<>(STORED_DOCUMENTS);
+    for (int i = 0; i < STORED_DOCUMENTS; i++) {
+      elements.add(document.deepCopy());
+    }
+    BulkCreateReport<JsonNode> report = dao.createAll(elements);
+    if (!report.isSuccess()) {
+      throw new IllegalStateException("The documents of the benchmark could not be stored");
+    }
+    ids = new String[STORED_DOCUMENTS];
+    for (int i = 0; i < STORED_DOCUMENTS; i++) {
+      ids[i] = elements.get(i).get("@id").asText();
+    }
+  }
+
+  /**
+   * Baseline of {@link #create()}, which has to copy the document since the DAO adds the IDs to it
+   */
+  @Benchmark
+  public JsonNode copyDocument() {
+    return document.deepCopy();
+  }
+
+  @Benchmark
+  public JsonNode create() throws IOException {
+    return dao.create(document.deepCopy());
+  }
+
+  @Benchmark
+  public JsonNode find() throws IOException {
+    return dao.find(randomId());
+  }
+
+  @Benchmark
+  public List<JsonNode> findAll() throws IOException {
+    return dao.findAll(PAGE_SIZE, randomOffset(), null, FieldNameInEx.UNDEFINED);
+  }
+
+  @Benchmark
+  public List<JsonNode> findAllSummaries() throws IOException {
+    return dao.findAll(PAGE_SIZE, randomOffset(), SUMMARY_FIELDS, FieldNameInEx.INCLUDE);
+  }
+
+  @Benchmark
+  public JsonNode update() throws IOException, InstanceNotFoundException {
+    return dao.update(randomId(), modifications);
+  }
+
+  private String randomId() {
+    return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+  }
+
+  private int randomOffset() {
+    return ThreadLocalRandom.current().nextInt(STORED_DOCUMENTS - PAGE_SIZE);
+  }
+}
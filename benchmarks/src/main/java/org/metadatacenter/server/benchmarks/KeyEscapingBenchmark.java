@@ -0,0 +1,94 @@
+package org.metadatacenter.server.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.metadatacenter.server.dao.mongodb.MongoKeyEscaper;
+import org.metadatacenter.util.FixMongoDirection;
+import org.metadatacenter.util.json.JsonUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the adaptation of the keys of whole trees by {@code JsonUtils.fixMongoDB} with
+ * {@link MongoKeyEscaper#fixMongoDB(JsonNode, FixMongoDirection)}, in both directions. The trees are binary trees of
+ * objects of the given depth, whose objects hold the given number of fields. Keys to adapt are absent, only at the
+ * root, or in every object, since the cost of sharing unchanged subtrees depends on where they are.
+ * <p>
+ * Run with {@code -prof gc} to compare the allocation of the two engines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class KeyEscapingBenchmark {
+
+  private static final int CHILDREN = 2;
+
+  @Param({"2", "5", "8"})
+  public int depth;
+
+  @Param({"4", "16", "64"})
+  public int width;
+
+  @Param({"none", "root", "all"})
+  public String reservedKeys;
+
+  private final JsonUtils jsonUtils = new JsonUtils();
+  private JsonNode document;
+  private JsonNode storedDocument;
+
+  @Setup
+  public void createDocuments() {
+    document = tree(depth, true);
+    storedDocument = MongoKeyEscaper.fixMongoDB(document, FixMongoDirection.WRITE_TO_MONGO);
+  }
+
+  @Benchmark
+  public JsonNode jsonUtilsWrite() {
+    return jsonUtils.fixMongoDB(document, FixMongoDirection.WRITE_TO_MONGO);
+  }
+
+  @Benchmark
+  public JsonNode jsonUtilsRead() {
+    return jsonUtils.fixMongoDB(storedDocument, FixMongoDirection.READ_FROM_MONGO);
+  }
+
+  @Benchmark
+  public JsonNode escaperWrite() {
+    return MongoKeyEscaper.fixMongoDB(document, FixMongoDirection.WRITE_TO_MONGO);
+  }
+
+  @Benchmark
+  public JsonNode escaperRead() {
+    return MongoKeyEscaper.fixMongoDB(storedDocument, FixMongoDirection.READ_FROM_MONGO);
+  }
+
+  private ObjectNode tree(int levels, boolean root) {
+    ObjectNode node = JsonNodeFactory.instance.objectNode();
+    if ("all".equals(reservedKeys) || ("root".equals(reservedKeys) && root)) {
+      node.put("$schema", "http://json-schema.org/draft-04/schema#");
+    }
+    for (int i = 0; node.size() < width; i++) {
+      if (levels > 1 && i < CHILDREN) {
+        node.set("child" + i, tree(levels - 1, false));
+      } else {
+        node.put("field" + i, "value " + i);
+      }
+    }
+    return node;
+  }
+}
@@ -0,0 +1,39 @@
+package org.metadatacenter.server.dao;
+
+import checkers.nullness.quals.NonNull;
+import org.metadatacenter.server.service.FieldNameInEx;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of {@link GenericDao}. Failures are reported by completing the returned future
+ * exceptionally with the exception the blocking method would have thrown.
+ */
+public interface AsyncGenericDao<K, T> {
+
+  @NonNull CompletableFuture<T> create(@NonNull T element);
+
+  @NonNull CompletableFuture<List<T>> findAll();
+
+  @NonNull CompletableFuture<List<T>> findAll(Integer count, Integer page, List<String> fieldNames, FieldNameInEx
+      includeExclude);
+
+  @NonNull CompletableFuture<List<T>> findAll(List<String> fieldNames, FieldNameInEx includeExclude);
+
+  @NonNull CompletableFuture<T> find(@NonNull K id);
+
+  @NonNull CompletableFuture<Map<K, T>> findByIds(@NonNull Collection<K> ids);
+
+  @NonNull CompletableFuture<T> update(@NonNull K id, @NonNull T modifications);
+
+  @NonNull CompletableFuture<Void> delete(@NonNull K id);
+
+  @NonNull CompletableFuture<Boolean> exists(@NonNull K id);
+
+  @NonNull CompletableFuture<Void> deleteAll();
+
+  @NonNull CompletableFuture<Long> count();
+}
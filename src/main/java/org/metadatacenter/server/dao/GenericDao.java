@@ -1,16 +1,27 @@
 package org.metadatacenter.server.dao;
 
 import checkers.nullness.quals.NonNull;
+import org.metadatacenter.server.service.BulkCreateReport;
+import org.metadatacenter.server.service.FieldFilter;
 import org.metadatacenter.server.service.FieldNameInEx;
+import org.metadatacenter.server.service.Page;
+import org.metadatacenter.server.service.QueryResult;
+import org.metadatacenter.server.service.SortSpec;
+import org.reactivestreams.Publisher;
 
 import javax.management.InstanceNotFoundException;
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 public interface GenericDao<K, T> {
 
   @NonNull T create(@NonNull T element) throws IOException;
 
+  @NonNull BulkCreateReport<T> createAll(@NonNull List<T> elements) throws IOException;
+
   @NonNull List<T> findAll() throws IOException;
 
   @NonNull List<T> findAll(Integer count, Integer page, List<String> fieldNames, FieldNameInEx includeExclude) throws
@@ -18,8 +29,52 @@ public interface GenericDao<K, T> {
 
   @NonNull List<T> findAll(List<String> fieldNames, FieldNameInEx includeExclude) throws IOException;
 
+  /**
+   * Finds the elements in the given order. Implementations may reject orders that would require sorting a whole
+   * result in memory.
+   */
+  @NonNull List<T> findAll(Integer limit, Integer offset, List<SortSpec> sort, List<String> fieldNames, FieldNameInEx
+      includeExclude) throws IOException;
+
+  /**
+   * Lazily streams the elements instead of materializing them. The returned stream holds a database cursor and must
+   * be closed by the caller.
+   */
+  @NonNull Stream<T> streamAll();
+
+  @NonNull Stream<T> streamAll(Integer limit, Integer offset, List<String> fieldNames, FieldNameInEx includeExclude);
+
+  @NonNull Stream<T> streamAll(List<String> fieldNames, FieldNameInEx includeExclude);
+
+  @NonNull Stream<T> streamAll(Integer limit, Integer offset, List<SortSpec> sort, List<String> fieldNames,
+      FieldNameInEx includeExclude);
+
+  /**
+   * Publishes the elements to Reactive Streams subscribers, reading them from the database only as they are requested.
+   */
+  @NonNull Publisher<T> publishAll();
+
+  @NonNull Publisher<T> publishAll(Integer limit, Integer offset, List<String> fieldNames, FieldNameInEx
+      includeExclude);
+
+  @NonNull Publisher<T> publishAll(List<String> fieldNames, FieldNameInEx includeExclude);
+
+  @NonNull Page<T> findPage(int limit, String continuationToken, List<String> fieldNames, FieldNameInEx
+      includeExclude) throws IOException;
+
+  /**
+   * Finds the elements that match all the filters, reporting the index expected to serve the query.
+   */
+  @NonNull QueryResult<T> query(@NonNull List<FieldFilter> filters, Integer limit, Integer offset, List<String>
+      fieldNames, FieldNameInEx includeExclude) throws IOException;
+
+  @NonNull QueryResult<T> query(@NonNull List<FieldFilter> filters, List<SortSpec> sort, Integer limit, Integer offset,
+      List<String> fieldNames, FieldNameInEx includeExclude) throws IOException;
+
   T find(@NonNull K id) throws IOException;
 
+  @NonNull Map<K, T> findByIds(@NonNull Collection<K> ids) throws IOException;
+
   @NonNull T update(@NonNull K id, @NonNull T modifications) throws InstanceNotFoundException, IOException;
 
   void delete(@NonNull K id) throws InstanceNotFoundException, IOException;
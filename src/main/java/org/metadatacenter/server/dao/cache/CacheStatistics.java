@@ -0,0 +1,62 @@
+package org.metadatacenter.server.dao.cache;
+
+/**
+ * Snapshot of the statistics of a {@link DocumentCache}
+ */
+public class CacheStatistics {
+
+  private final long hitCount;
+  private final long missCount;
+  private final long evictionCount;
+  private final long entryCount;
+  private final long weight;
+
+  public CacheStatistics(long hitCount, long missCount, long evictionCount, long entryCount, long weight) {
+    this.hitCount = hitCount;
+    this.missCount = missCount;
+    this.evictionCount = evictionCount;
+    this.entryCount = entryCount;
+    this.weight = weight;
+  }
+
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  public long getMissCount() {
+    return missCount;
+  }
+
+  public long getRequestCount() {
+    return hitCount + missCount;
+  }
+
+  /**
+   * @return The ratio of requests that were served from the cache, or 1 if there were no requests
+   */
+  public double getHitRate() {
+    long requestCount = getRequestCount();
+    return (requestCount == 0) ? 1.0 : (double) hitCount / requestCount;
+  }
+
+  public long getEvictionCount() {
+    return evictionCount;
+  }
+
+  public long getEntryCount() {
+    return entryCount;
+  }
+
+  /**
+   * @return The total estimated size of the cached documents, in bytes
+   */
+  public long getWeight() {
+    return weight;
+  }
+
+  @Override
+  public String toString() {
+    return "CacheStatistics{hitCount=" + hitCount + ", missCount=" + missCount + ", evictionCount=" + evictionCount
+        + ", entryCount=" + entryCount + ", weight=" + weight + "}";
+  }
+}
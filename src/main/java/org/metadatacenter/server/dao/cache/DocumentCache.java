@@ -0,0 +1,35 @@
+package org.metadatacenter.server.dao.cache;
+
+import checkers.nullness.quals.NonNull;
+
+import java.io.IOException;
+
+/**
+ * Read-through cache of documents by key. Implementations must be thread-safe, must not cache null (missing)
+ * documents, and must not store a document that was loaded before an invalidation that happened while it was being
+ * loaded.
+ */
+public interface DocumentCache<K, V> {
+
+  /**
+   * Get a document, loading and caching it if it is not cached yet
+   *
+   * @param key    The key of the document
+   * @param loader Loads the document if it is not cached
+   * @return The document, or null if it does not exist
+   * @throws IOException If an error occurs while loading the document
+   */
+  V get(@NonNull K key, @NonNull DocumentLoader<K, V> loader) throws IOException;
+
+  /**
+   * @return The cached document, or null if it is not cached
+   */
+  V getIfPresent(@NonNull K key);
+
+  void invalidate(@NonNull K key);
+
+  void invalidateAll();
+
+  @NonNull
+  CacheStatistics getStatistics();
+}
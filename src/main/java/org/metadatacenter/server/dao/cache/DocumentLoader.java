@@ -0,0 +1,16 @@
+package org.metadatacenter.server.dao.cache;
+
+import checkers.nullness.quals.NonNull;
+
+import java.io.IOException;
+
+/**
+ * Loads a document from the underlying storage when it is not found in a {@link DocumentCache}
+ */
+public interface DocumentLoader<K, V> {
+
+  /**
+   * @return The document, or null if it does not exist
+   */
+  V load(@NonNull K key) throws IOException;
+}
@@ -0,0 +1,54 @@
+package org.metadatacenter.server.dao.cache;
+
+import checkers.nullness.quals.NonNull;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.BinaryNode;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Rough estimate of the heap footprint of a Jackson tree, meant to bound caches by size rather than to be exact
+ */
+public final class JsonNodeSizeEstimator {
+
+  private static final long NODE_OVERHEAD = 16;
+  private static final long CONTAINER_OVERHEAD = 64;
+  private static final long FIELD_OVERHEAD = 48;
+  private static final long STRING_OVERHEAD = 40;
+
+  private JsonNodeSizeEstimator() {
+  }
+
+  /**
+   * @return The estimated size of the tree, in bytes
+   */
+  public static long estimate(@NonNull JsonNode node) {
+    switch (node.getNodeType()) {
+      case OBJECT:
+        long objectSize = CONTAINER_OVERHEAD;
+        Iterator<Map.Entry<String, JsonNode>> it = node.fields();
+        while (it.hasNext()) {
+          Map.Entry<String, JsonNode> field = it.next();
+          objectSize += FIELD_OVERHEAD + stringSize(field.getKey()) + estimate(field.getValue());
+        }
+        return objectSize;
+      case ARRAY:
+        long arraySize = CONTAINER_OVERHEAD;
+        for (JsonNode element : node) {
+          arraySize += 8 + estimate(element);
+        }
+        return arraySize;
+      case STRING:
+        return NODE_OVERHEAD + stringSize(node.textValue());
+      case BINARY:
+        return NODE_OVERHEAD + 16 + ((BinaryNode) node).binaryValue().length;
+      default:
+        return NODE_OVERHEAD + 8;
+    }
+  }
+
+  private static long stringSize(String value) {
+    return STRING_OVERHEAD + 2L * value.length();
+  }
+}
@@ -0,0 +1,174 @@
+package org.metadatacenter.server.dao.cache;
+
+import checkers.nullness.quals.NonNull;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Least recently used cache bounded both by a number of entries and by a total weight, usually the estimated size of
+ * the cached documents in bytes. Documents are loaded outside of the cache lock, so a slow load does not block the
+ * readers of other keys.
+ * <p>
+ * Invalidations bump a generation counter, and a document is only stored if no invalidation happened while it was
+ * being loaded. This keeps a load that raced with an update or a deletion from caching the previous version.
+ */
+public class LruDocumentCache<K, V> implements DocumentCache<K, V> {
+
+  private final int maxEntries;
+  private final long maxWeight;
+  @NonNull
+  private final ToLongFunction<V> weigher;
+  private final long expireAfterWriteMillis;
+  @NonNull
+  private final LongSupplier clock;
+
+  @NonNull
+  private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long weight;
+  private long generation;
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+
+  public LruDocumentCache(int maxEntries) {
+    this(maxEntries, Long.MAX_VALUE, value -> 0);
+  }
+
+  /**
+   * @param maxEntries The maximum number of cached documents
+   * @param maxWeight  The maximum total weight of the cached documents
+   * @param weigher    Computes the weight of a document
+   */
+  public LruDocumentCache(int maxEntries, long maxWeight, @NonNull ToLongFunction<V> weigher) {
+    this(maxEntries, maxWeight, weigher, Long.MAX_VALUE, System::currentTimeMillis);
+  }
+
+  /**
+   * @param maxEntries             The maximum number of cached documents
+   * @param maxWeight              The maximum total weight of the cached documents
+   * @param weigher                Computes the weight of a document
+   * @param expireAfterWriteMillis The time after which a cached document is loaded again, counted from the start of
+   *                               its load
+   * @param clock                  The current time in milliseconds
+   */
+  public LruDocumentCache(int maxEntries, long maxWeight, @NonNull ToLongFunction<V> weigher,
+                          long expireAfterWriteMillis, @NonNull LongSupplier clock) {
+    if (maxEntries <= 0 || maxWeight <= 0 || expireAfterWriteMillis <= 0) {
+      throw new IllegalArgumentException("The cache bounds must be positive");
+    }
+    this.maxEntries = maxEntries;
+    this.maxWeight = maxWeight;
+    this.weigher = weigher;
+    this.expireAfterWriteMillis = expireAfterWriteMillis;
+    this.clock = clock;
+  }
+
+  @Override
+  public V get(@NonNull K key, @NonNull DocumentLoader<K, V> loader) throws IOException {
+    long loadGeneration;
+    long loadTime;
+    synchronized (this) {
+      loadTime = now();
+      Entry<V> entry = getEntry(key, loadTime);
+      if (entry != null) {
+        hitCount++;
+        return entry.value;
+      }
+      missCount++;
+      loadGeneration = generation;
+    }
+    V value = loader.load(key);
+    if (value != null) {
+      long valueWeight = weigher.applyAsLong(value);
+      synchronized (this) {
+        if (loadGeneration == generation && valueWeight <= maxWeight) {
+          Entry<V> previous = entries.put(key, new Entry<>(value, valueWeight, loadTime));
+          if (previous != null) {
+            weight -= previous.weight;
+          }
+          weight += valueWeight;
+          evict();
+        }
+      }
+    }
+    return value;
+  }
+
+  @Override
+  public synchronized V getIfPresent(@NonNull K key) {
+    Entry<V> entry = getEntry(key, now());
+    if (entry == null) {
+      missCount++;
+      return null;
+    }
+    hitCount++;
+    return entry.value;
+  }
+
+  @Override
+  public synchronized void invalidate(@NonNull K key) {
+    generation++;
+    Entry<V> entry = entries.remove(key);
+    if (entry != null) {
+      weight -= entry.weight;
+    }
+  }
+
+  @Override
+  public synchronized void invalidateAll() {
+    generation++;
+    entries.clear();
+    weight = 0;
+  }
+
+  @Override
+  @NonNull
+  public synchronized CacheStatistics getStatistics() {
+    return new CacheStatistics(hitCount, missCount, evictionCount, entries.size(), weight);
+  }
+
+  /**
+   * @return The entry of the key, or null if there is none or it expired, in which case it is removed
+   */
+  private Entry<V> getEntry(K key, long now) {
+    Entry<V> entry = entries.get(key);
+    if (entry != null && now - entry.writeTime >= expireAfterWriteMillis) {
+      entries.remove(key);
+      weight -= entry.weight;
+      evictionCount++;
+      return null;
+    }
+    return entry;
+  }
+
+  private long now() {
+    // The clock is not read when documents never expire
+    return (expireAfterWriteMillis == Long.MAX_VALUE) ? 0 : clock.getAsLong();
+  }
+
+  private void evict() {
+    Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+    while ((entries.size() > maxEntries || weight > maxWeight) && it.hasNext()) {
+      weight -= it.next().getValue().weight;
+      it.remove();
+      evictionCount++;
+    }
+  }
+
+  private static final class Entry<V> {
+    private final V value;
+    private final long weight;
+    private final long writeTime;
+
+    private Entry(V value, long weight, long writeTime) {
+      this.value = value;
+      this.weight = weight;
+      this.writeTime = writeTime;
+    }
+  }
+}
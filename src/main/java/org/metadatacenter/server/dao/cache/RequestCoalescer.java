@@ -0,0 +1,158 @@
+package org.metadatacenter.server.dao.cache;
+
+import checkers.nullness.quals.NonNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+/**
+ * Coalesces concurrent loads of the same key into a single one: the first caller loads the document and the callers
+ * that arrive while it is in flight wait for its result instead of issuing their own query.
+ * <p>
+ * A document handed to several callers is shared unless a copier is given, in which case each of them gets its own
+ * copy. A caller that was not joined by any other keeps the loaded instance, so loads that are not concurrent cost no
+ * copy.
+ */
+public class RequestCoalescer<K, V> {
+
+  @NonNull
+  private final ConcurrentMap<K, Flight<V>> inFlight = new ConcurrentHashMap<>();
+  @NonNull
+  private final AtomicLong coalescedCount = new AtomicLong();
+  @NonNull
+  private final UnaryOperator<V> copier;
+
+  /**
+   * Coalescer that hands the same instance to all the callers of a load
+   */
+  public RequestCoalescer() {
+    this(UnaryOperator.identity());
+  }
+
+  /**
+   * @param copier Copies a document that is handed to several callers
+   */
+  public RequestCoalescer(@NonNull UnaryOperator<V> copier) {
+    this.copier = copier;
+  }
+
+  /**
+   * Load a document, or wait for the load of the same key that is already in flight
+   *
+   * @param key    The key of the document
+   * @param loader Loads the document
+   * @return The document, or null if it does not exist
+   * @throws IOException If an error occurs while loading the document
+   */
+  public V load(@NonNull K key, @NonNull DocumentLoader<K, V> loader) throws IOException {
+    while (true) {
+      Flight<V> flight = new Flight<>();
+      Flight<V> existing = inFlight.putIfAbsent(key, flight);
+      if (existing == null) {
+        return lead(key, loader, flight);
+      }
+      // A flight is closed once it has left the map, so a new one can be started when it is too late to join
+      if (existing.join()) {
+        coalescedCount.incrementAndGet();
+        return copy(await(existing.future));
+      }
+    }
+  }
+
+  /**
+   * Detach the load in flight for a key, if any, so that later callers start a new one. Used when the document is
+   * modified, since the load in flight may return the previous version.
+   */
+  public void forget(@NonNull K key) {
+    inFlight.remove(key);
+  }
+
+  /**
+   * Detach all the loads in flight, for when all the documents are modified
+   */
+  public void forgetAll() {
+    inFlight.clear();
+  }
+
+  /**
+   * @return The number of loads that were served by waiting for a load already in flight
+   */
+  public long getCoalescedCount() {
+    return coalescedCount.get();
+  }
+
+  private V lead(K key, DocumentLoader<K, V> loader, Flight<V> flight) throws IOException {
+    V value;
+    try {
+      value = loader.load(key);
+    } catch (IOException | RuntimeException | Error e) {
+      inFlight.remove(key, flight);
+      flight.close();
+      flight.future.completeExceptionally(e);
+      throw e;
+    }
+    inFlight.remove(key, flight);
+    boolean shared = flight.close();
+    flight.future.complete(value);
+    // The waiters copy the loaded instance, so it is only handed out when there are none
+    return shared ? copy(value) : value;
+  }
+
+  private V copy(V value) {
+    return (value == null) ? null : copier.apply(value);
+  }
+
+  private V await(CompletableFuture<V> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for a load in flight");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  /**
+   * A load in flight and the callers that joined it
+   */
+  private static final class Flight<V> {
+
+    private final CompletableFuture<V> future = new CompletableFuture<>();
+    private int waiterCount;
+    private boolean closed;
+
+    /**
+     * @return False if the load already completed, in which case its result is not shared anymore
+     */
+    private synchronized boolean join() {
+      if (closed) {
+        return false;
+      }
+      waiterCount++;
+      return true;
+    }
+
+    /**
+     * @return True if callers joined the load
+     */
+    private synchronized boolean close() {
+      closed = true;
+      return waiterCount > 0;
+    }
+  }
+}
@@ -0,0 +1,12 @@
+package org.metadatacenter.server.dao.id;
+
+import checkers.nullness.quals.NonNull;
+
+/**
+ * Strategy used by the DAOs to generate the local part of the linked data IDs (@id in JSON-LD) of new elements,
+ * which is appended to the base path of the collection. Implementations must be thread-safe.
+ */
+public interface IdGenerator {
+
+  @NonNull String generateId();
+}
@@ -0,0 +1,18 @@
+package org.metadatacenter.server.dao.id;
+
+import checkers.nullness.quals.NonNull;
+
+import java.util.UUID;
+
+/**
+ * Generates random (version 4) UUIDs. New IDs are spread uniformly over the @id index, so insertions touch random
+ * pages of the index; see {@link TimeOrderedUuidGenerator} for an append-friendly alternative.
+ */
+public class RandomUuidGenerator implements IdGenerator {
+
+  @Override
+  @NonNull
+  public String generateId() {
+    return UUID.randomUUID().toString();
+  }
+}
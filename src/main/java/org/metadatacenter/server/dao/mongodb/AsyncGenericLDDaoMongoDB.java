@@ -0,0 +1,358 @@
+package org.metadatacenter.server.dao.mongodb;
+
+import checkers.nullness.quals.NonNull;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mongodb.MongoWriteException;
+import com.mongodb.async.SingleResultCallback;
+import com.mongodb.async.client.FindIterable;
+import com.mongodb.async.client.MongoClient;
+import com.mongodb.async.client.MongoCollection;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.result.DeleteResult;
+import org.bson.Document;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.conversions.Bson;
+import org.metadatacenter.server.dao.AsyncGenericDao;
+import org.metadatacenter.server.dao.id.IdGenerator;
+import org.metadatacenter.server.dao.id.RandomUuidGenerator;
+import org.metadatacenter.server.service.FieldNameInEx;
+
+import javax.management.InstanceNotFoundException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Service to manage elements in a MongoDB database without blocking the calling thread. It uses the asynchronous
+ * MongoDB driver, so no thread is held while a request is in flight, and offers the same operations and failure
+ * semantics as {@link GenericLDDaoMongoDB}. The returned futures are completed on the threads of the driver, so
+ * dependent stages that block should be run on an executor of their own.
+ */
+public class AsyncGenericLDDaoMongoDB implements AsyncGenericDao<String, JsonNode> {
+
+  @NonNull
+  protected final MongoCollection<Document> entityCollection;
+  @NonNull
+  protected final MongoCollection<JsonNode> jsonEntityCollection;
+  // Completed with the name of the @id index once it exists; creations wait for it to detect @id collisions
+  @NonNull
+  private final AtomicReference<CompletableFuture<String>> linkedDataIdIndex = new AtomicReference<>();
+
+  @NonNull
+  protected final LinkedDataIdMapper linkedDataIdMapper;
+
+  private String linkedDataIdBasePath;
+  @NonNull
+  private IdGenerator idGenerator = new RandomUuidGenerator();
+
+  public AsyncGenericLDDaoMongoDB(@NonNull MongoClient mongoClient, @NonNull String dbName,
+                                  @NonNull String collectionName, String linkedDataIdBasePath) {
+    entityCollection = mongoClient.getDatabase(dbName).getCollection(collectionName);
+    linkedDataIdMapper = new LinkedDataIdMapper(linkedDataIdBasePath);
+    JsonNodeCodec codec = new JsonNodeCodec(JsonNodeFactory.instance, linkedDataIdMapper);
+    jsonEntityCollection = entityCollection.withDocumentClass(JsonNode.class).withCodecRegistry(
+        CodecRegistries.fromRegistries(CodecRegistries.fromProviders(new JsonNodeCodecProvider(codec)),
+            entityCollection.getCodecRegistry()));
+    this.linkedDataIdBasePath = linkedDataIdBasePath;
+    linkedDataIdIndex.set(ensureLinkedDataIdIndex());
+  }
+
+  /* CRUD operations */
+
+  /**
+   * Create an element that contains a Linked Data identifier field (@id in JSON-LD). As in
+   * {@link GenericLDDaoMongoDB#create(JsonNode)}, the element is inserted optimistically and a new @id is only
+   * generated if the insertion fails because of a collision. The supplied element only gains the generated @id, and
+   * the future is completed with a copy that also contains the MongoDB _id.
+   *
+   * @param element An element
+   * @return A future completed with the created element
+   */
+  @Override
+  @NonNull
+  public CompletableFuture<JsonNode> create(@NonNull JsonNode element) {
+    if (GenericLDDaoMongoDB.hasLinkedDataId(element)) {
+      return failed(new IllegalArgumentException(GenericLDDaoMongoDB.LINKED_DATA_ID_NOT_ALLOWED));
+    }
+    ObjectNode document = element.deepCopy();
+    return currentLinkedDataIdIndex().thenCompose(indexName -> insert(element, document, indexName, 1));
+  }
+
+  private CompletableFuture<JsonNode> insert(JsonNode element, ObjectNode document, String indexName, int attempt) {
+    String linkedDataId = generateLinkedDataId();
+    ((ObjectNode) element).put("@id", linkedDataId);
+    document.put("@id", linkedDataId);
+    CompletableFuture<JsonNode> result = new CompletableFuture<>();
+    // The codec adapts all keys not accepted by MongoDB while writing, and adds the generated _id to the document
+    jsonEntityCollection.insertOne(document, (ignored, t) -> {
+      if (t == null) {
+        result.complete(document);
+      } else if (attempt < GenericLDDaoMongoDB.MAX_LINKED_DATA_ID_ATTEMPTS && t instanceof MongoWriteException
+          && MongoIndexManager.isDuplicateKey(((MongoWriteException) t).getError(), indexName)) {
+        forward(insert(element, document, indexName, attempt + 1), result);
+      } else {
+        result.completeExceptionally(t);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * @return The creation of the unique index of the linked data IDs. A failed creation is retried instead of failing
+   * all the following insertions.
+   */
+  private CompletableFuture<String> currentLinkedDataIdIndex() {
+    CompletableFuture<String> index = linkedDataIdIndex.get();
+    if (index.isCompletedExceptionally()) {
+      CompletableFuture<String> retry = ensureLinkedDataIdIndex();
+      // Concurrent insertions that saw the same failure use the retry of the first one
+      index = linkedDataIdIndex.compareAndSet(index, retry) ? retry : linkedDataIdIndex.get();
+    }
+    return index;
+  }
+
+  private CompletableFuture<String> ensureLinkedDataIdIndex() {
+    return callback(callback -> entityCollection.createIndex(new Document("@id", 1), new IndexOptions().unique(true),
+        callback));
+  }
+
+  private String generateLinkedDataId() {
+    return linkedDataIdBasePath + idGenerator.generateId();
+  }
+
+  @NonNull
+  public IdGenerator getIdGenerator() {
+    return idGenerator;
+  }
+
+  /**
+   * Set the strategy that generates the linked data IDs of new elements. IDs are random UUIDs by default;
+   * {@link org.metadatacenter.server.dao.id.TimeOrderedUuidGenerator} generates increasing ones, which are appended
+   * to the @id index instead of being inserted at random places in it.
+   */
+  public void setIdGenerator(@NonNull IdGenerator idGenerator) {
+    this.idGenerator = idGenerator;
+  }
+
+  public boolean isCompactLinkedDataIds() {
+    return linkedDataIdMapper.isCompact();
+  }
+
+  /**
+   * Enable or disable the compact storage of linked data IDs (see {@link LinkedDataIdMapper}). While enabled, IDs
+   * made of the base path followed by a UUID are stored as binary UUIDs and lookups match both forms, so it can be
+   * enabled on a collection that still contains string IDs.
+   *
+   * @throws IllegalStateException If compact storage is enabled and the DAO has no base path
+   */
+  public void setCompactLinkedDataIds(boolean compactLinkedDataIds) {
+    linkedDataIdMapper.setCompact(compactLinkedDataIds);
+  }
+
+  /**
+   * Find all elements
+   *
+   * @return A future completed with a list of elements
+   */
+  @Override
+  @NonNull
+  public CompletableFuture<List<JsonNode>> findAll() {
+    return findAll(null, null, null, FieldNameInEx.UNDEFINED);
+  }
+
+  @Override
+  @NonNull
+  public CompletableFuture<List<JsonNode>> findAll(List<String> fieldNames, FieldNameInEx includeExclude) {
+    return findAll(null, null, fieldNames, includeExclude);
+  }
+
+  @Override
+  @NonNull
+  public CompletableFuture<List<JsonNode>> findAll(Integer limit, Integer offset, List<String> fieldNames,
+                                                   FieldNameInEx includeExclude) {
+    FindIterable<JsonNode> findIterable = jsonEntityCollection.find();
+    if (limit != null) {
+      findIterable.limit(limit);
+    }
+    if (offset != null) {
+      findIterable.skip(offset);
+    }
+    Bson fields = GenericLDDaoMongoDB.buildProjection(fieldNames, includeExclude);
+    if (fields != null) {
+      findIterable.projection(fields);
+    }
+    return callback(callback -> findIterable.into(new ArrayList<>(), callback));
+  }
+
+  /**
+   * Find an element using its linked data ID  (@id in JSON-LD)
+   *
+   * @param id The linked data ID of the element
+   * @return A future completed with a JSON representation of the element or null if the element was not found
+   */
+  @Override
+  @NonNull
+  public CompletableFuture<JsonNode> find(@NonNull String id) {
+    if ((id == null) || (id.length() == 0)) {
+      return failed(new IllegalArgumentException());
+    }
+    return callback(callback -> jsonEntityCollection.find(linkedDataIdMapper.filter(id)).first(callback));
+  }
+
+  /**
+   * Find several elements using their linked data IDs (@id in JSON-LD) with a single query
+   *
+   * @param ids The linked data IDs of the elements
+   * @return A future completed with the elements by ID, in the order of the supplied IDs and without duplicates. IDs
+   * of elements that were not found are mapped to null.
+   */
+  @Override
+  @NonNull
+  public CompletableFuture<Map<String, JsonNode>> findByIds(@NonNull Collection<String> ids) {
+    Map<String, JsonNode> elements = new LinkedHashMap<>();
+    for (String id : ids) {
+      if ((id == null) || (id.length() == 0)) {
+        return failed(new IllegalArgumentException());
+      }
+      elements.put(id, null);
+    }
+    if (elements.isEmpty()) {
+      return CompletableFuture.completedFuture(elements);
+    }
+    CompletableFuture<List<JsonNode>> found = callback(callback ->
+        jsonEntityCollection.find(linkedDataIdMapper.filter(elements.keySet())).into(new ArrayList<>(), callback));
+    return found.thenApply(list -> {
+      for (JsonNode element : list) {
+        // Replacing the value of an existing key keeps the order of the IDs
+        elements.put(element.get("@id").textValue(), element);
+      }
+      return elements;
+    });
+  }
+
+  /**
+   * Update an element using its linked data ID  (@id in JSON-LD). The update is applied and the updated element is
+   * returned atomically, in a single round trip.
+   *
+   * @param id            The linked data ID of the element to update
+   * @param modifications The update
+   * @return A future completed with the updated JSON representation of the element, or completed exceptionally with
+   * an {@link InstanceNotFoundException} if the element is not found
+   */
+  @Override
+  @NonNull
+  public CompletableFuture<JsonNode> update(@NonNull String id, @NonNull JsonNode modifications) {
+    if ((id == null) || (id.length() == 0)) {
+      return failed(new IllegalArgumentException());
+    }
+    // The codec adapts all keys not accepted by MongoDB while writing
+    CompletableFuture<JsonNode> updated = callback(callback -> jsonEntityCollection.findOneAndUpdate(
+        linkedDataIdMapper.filter(id), new Document("$set", modifications),
+        new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER), callback));
+    return updated.thenCompose(element -> (element == null) ? failed(new InstanceNotFoundException())
+        : CompletableFuture.completedFuture(element));
+  }
+
+  /**
+   * Delete an element using its linked data ID  (@id in JSON-LD)
+   *
+   * @param id The linked data ID of the element to delete
+   * @return A future completed when the element is deleted, or completed exceptionally with an
+   * {@link InstanceNotFoundException} if the element is not found
+   */
+  @Override
+  @NonNull
+  public CompletableFuture<Void> delete(@NonNull String id) {
+    if ((id == null) || (id.length() == 0)) {
+      return failed(new IllegalArgumentException());
+    }
+    CompletableFuture<DeleteResult> deleted = callback(callback -> entityCollection.deleteOne(
+        linkedDataIdMapper.filter(id), callback));
+    return deleted.thenCompose(deleteResult -> (deleteResult.getDeletedCount() == 0)
+        ? failed(new InstanceNotFoundException()) : CompletableFuture.completedFuture(null));
+  }
+
+  /**
+   * Check if an element exists using its linked data ID  (@id in JSON-LD). Only the @id is projected, so the check
+   * is answered from the @id index without fetching or decoding the document.
+   *
+   * @param id The linked data ID of the element
+   * @return A future completed with True if an element with the supplied linked data ID exists or False otherwise
+   */
+  @Override
+  @NonNull
+  public CompletableFuture<Boolean> exists(@NonNull String id) {
+    if ((id == null) || (id.length() == 0)) {
+      return failed(new IllegalArgumentException());
+    }
+    CompletableFuture<Document> found = callback(callback -> entityCollection.find(linkedDataIdMapper.filter(id))
+        .projection(Projections.fields(Projections.include("@id"), Projections.excludeId()))
+        .limit(1)
+        .first(callback));
+    return found.thenApply(document -> document != null);
+  }
+
+  /**
+   * Delete all elements
+   */
+  @Override
+  @NonNull
+  public CompletableFuture<Void> deleteAll() {
+    CompletableFuture<Void> dropped = callback(entityCollection::drop);
+    // Dropping the collection also drops its indexes
+    CompletableFuture<String> recreated = dropped.thenCompose(ignored -> ensureLinkedDataIdIndex());
+    linkedDataIdIndex.set(recreated);
+    return recreated.thenApply(ignored -> null);
+  }
+
+  @Override
+  @NonNull
+  public CompletableFuture<Long> count() {
+    return callback(entityCollection::count);
+  }
+
+  /**
+   * Run an operation of the asynchronous driver and adapt its callback to a future
+   */
+  private static <R> CompletableFuture<R> callback(Consumer<SingleResultCallback<R>> operation) {
+    CompletableFuture<R> future = new CompletableFuture<>();
+    try {
+      operation.accept((result, t) -> {
+        if (t == null) {
+          future.complete(result);
+        } else {
+          future.completeExceptionally(t);
+        }
+      });
+    } catch (RuntimeException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  private static <R> void forward(CompletableFuture<R> source, CompletableFuture<R> target) {
+    source.whenComplete((result, t) -> {
+      if (t == null) {
+        target.complete(result);
+      } else {
+        target.completeExceptionally(t);
+      }
+    });
+  }
+
+  private static <R> CompletableFuture<R> failed(Throwable t) {
+    CompletableFuture<R> future = new CompletableFuture<>();
+    future.completeExceptionally(t);
+    return future;
+  }
+}
@@ -0,0 +1,156 @@
+package org.metadatacenter.server.dao.mongodb;
+
+import checkers.nullness.quals.NonNull;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCursor;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reactive Streams publisher of the results of a MongoDB query. Each subscriber gets its own cursor, which is opened
+ * on the first request and read only as far as the subscriber has asked for: the cursor fetches a new batch from the
+ * server when the previous one has been delivered and more elements are requested, so at most one batch is held in
+ * memory for a slow subscriber. The cursor is read on the given executor, since reading it blocks.
+ */
+public class CursorPublisher<T> implements Publisher<T> {
+
+  private static final AtomicInteger threadCount = new AtomicInteger();
+  // Reading cursors blocks, so they are not read on the common fork/join pool
+  static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+    Thread thread = new Thread(runnable, "cursor-publisher-" + threadCount.incrementAndGet());
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  @NonNull
+  private final FindIterable<T> findIterable;
+  @NonNull
+  private final Executor executor;
+
+  public CursorPublisher(@NonNull FindIterable<T> findIterable, @NonNull Executor executor) {
+    this.findIterable = findIterable;
+    this.executor = executor;
+  }
+
+  @Override
+  public void subscribe(Subscriber<? super T> subscriber) {
+    if (subscriber == null) {
+      throw new NullPointerException("The subscriber must not be null");
+    }
+    subscriber.onSubscribe(new CursorSubscription(subscriber));
+  }
+
+  private class CursorSubscription implements Subscription, Runnable {
+
+    private final Subscriber<? super T> subscriber;
+    private final AtomicLong demand = new AtomicLong();
+    // Number of pending requests to run the delivery loop; only the caller that raises it from 0 schedules the loop
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile boolean cancelled;
+    private volatile boolean invalidRequest;
+    // Only accessed by the delivery loop, which never runs concurrently with itself
+    private MongoCursor<T> cursor;
+    private boolean done;
+
+    CursorSubscription(Subscriber<? super T> subscriber) {
+      this.subscriber = subscriber;
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        invalidRequest = true;
+      } else {
+        long current;
+        do {
+          current = demand.get();
+        } while (current != Long.MAX_VALUE && !demand.compareAndSet(current, addCapped(current, n)));
+      }
+      schedule();
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+      schedule();
+    }
+
+    private void schedule() {
+      if (pending.getAndIncrement() == 0) {
+        try {
+          executor.execute(this);
+        } catch (RejectedExecutionException e) {
+          done = true;
+          subscriber.onError(e);
+        }
+      }
+    }
+
+    @Override
+    public void run() {
+      int missed = 1;
+      do {
+        if (!done) {
+          deliver();
+        }
+        missed = pending.addAndGet(-missed);
+      } while (missed != 0);
+    }
+
+    private void deliver() {
+      if (cancelled) {
+        terminate();
+        return;
+      }
+      if (invalidRequest) {
+        terminate();
+        subscriber.onError(new IllegalArgumentException("The number of requested elements must be positive"));
+        return;
+      }
+      long requested = demand.get();
+      long emitted = 0;
+      try {
+        if (cursor == null) {
+          cursor = findIterable.iterator();
+        }
+        while (emitted != requested && !cancelled) {
+          if (!cursor.hasNext()) {
+            terminate();
+            subscriber.onComplete();
+            return;
+          }
+          subscriber.onNext(cursor.next());
+          emitted++;
+        }
+      } catch (RuntimeException e) {
+        terminate();
+        subscriber.onError(e);
+        return;
+      }
+      if (requested != Long.MAX_VALUE) {
+        demand.addAndGet(-emitted);
+      }
+    }
+
+    private void terminate() {
+      done = true;
+      if (cursor != null) {
+        cursor.close();
+        cursor = null;
+      }
+    }
+  }
+
+  private static long addCapped(long a, long b) {
+    long sum = a + b;
+    return (sum < 0) ? Long.MAX_VALUE : sum;
+  }
+}
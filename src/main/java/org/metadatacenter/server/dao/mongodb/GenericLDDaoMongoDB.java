@@ -2,57 +2,140 @@ package org.metadatacenter.server.dao.mongodb;
 
 import checkers.nullness.quals.NonNull;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mongodb.MongoBulkWriteException;
 import com.mongodb.MongoClient;
+import com.mongodb.MongoWriteException;
+import com.mongodb.WriteError;
+import com.mongodb.bulk.BulkWriteError;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.InsertManyOptions;
 import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
 import com.mongodb.client.result.DeleteResult;
-import com.mongodb.client.result.UpdateResult;
+import org.bson.BsonDocument;
+import org.bson.BsonType;
+import org.bson.BsonValue;
 import org.bson.Document;
+import org.bson.codecs.configuration.CodecRegistries;
 import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
 import org.metadatacenter.server.dao.GenericDao;
+import org.metadatacenter.server.dao.cache.DocumentCache;
+import org.metadatacenter.server.dao.cache.RequestCoalescer;
+import org.metadatacenter.server.dao.id.IdGenerator;
+import org.metadatacenter.server.dao.id.RandomUuidGenerator;
+import org.metadatacenter.server.service.BulkCreateReport;
+import org.metadatacenter.server.service.FieldFilter;
 import org.metadatacenter.server.service.FieldNameInEx;
-import org.metadatacenter.util.FixMongoDirection;
+import org.metadatacenter.server.service.Page;
+import org.metadatacenter.server.service.QueryResult;
+import org.metadatacenter.server.service.SortSpec;
 import org.metadatacenter.util.MongoFactory;
-import org.metadatacenter.util.json.JsonUtils;
+import org.reactivestreams.Publisher;
 
 import javax.management.InstanceNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static com.fasterxml.jackson.databind.node.JsonNodeType.NULL;
+import static com.mongodb.client.model.Filters.and;
 import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.gt;
+import static com.mongodb.client.model.Filters.regex;
+import static com.mongodb.client.model.Filters.type;
 
 /**
  * Service to manage elements in a MongoDB database
  */
 public class GenericLDDaoMongoDB implements GenericDao<String, JsonNode> {
 
+  public static final int DEFAULT_STREAM_BATCH_SIZE = 100;
+  public static final int DEFAULT_BULK_INSERT_BATCH_SIZE = 1000;
+  public static final int MAX_PAGE_SIZE = 1000;
+
+  private static final String MONGO_ID = "_id";
+  static final String LINKED_DATA_ID_NOT_ALLOWED = "Specifying @id for new objects is not allowed";
+  // A collision between generated IDs is practically impossible, so repeated ones denote a different problem
+  static final int MAX_LINKED_DATA_ID_ATTEMPTS = 3;
+
   @NonNull
   protected final MongoCollection<Document> entityCollection;
-  private final @NonNull JsonUtils jsonUtils;
+  @NonNull
+  protected final MongoCollection<JsonNode> jsonEntityCollection;
+  @NonNull
+  protected final MongoIndexManager indexManager;
+  private String linkedDataIdIndexName;
+
+  @NonNull
+  protected final LinkedDataIdMapper linkedDataIdMapper;
 
   private String linkedDataIdBasePath;
+  @NonNull
+  private IdGenerator idGenerator = new RandomUuidGenerator();
+
+  private int streamBatchSize = DEFAULT_STREAM_BATCH_SIZE;
+  @NonNull
+  private Executor publisherExecutor = CursorPublisher.DEFAULT_EXECUTOR;
+  private int bulkInsertBatchSize = DEFAULT_BULK_INSERT_BATCH_SIZE;
+  private boolean unindexedSortAllowed = false;
+  private boolean bulkInsertOrdered = true;
+  private DocumentCache<String, JsonNode> cache;
+  private volatile RequestCoalescer<String, JsonNode> coalescer = new RequestCoalescer<>(JsonNode::deepCopy);
 
   public GenericLDDaoMongoDB(@NonNull String dbName, @NonNull String collectionName, String linkedDataIdBasePath) {
-    MongoClient mongoClient = MongoFactory.getClient();
+    this(MongoFactory.getClient(), dbName, collectionName, linkedDataIdBasePath);
+  }
+
+  /**
+   * @param mongoClient A client shared with the other DAOs, whose lifecycle is managed by the caller (see
+   *                    {@link MongoClientManager})
+   */
+  public GenericLDDaoMongoDB(@NonNull MongoClient mongoClient, @NonNull String dbName, @NonNull String collectionName,
+                             String linkedDataIdBasePath) {
     entityCollection = mongoClient.getDatabase(dbName).getCollection(collectionName);
-    jsonUtils = new JsonUtils();
+    linkedDataIdMapper = new LinkedDataIdMapper(linkedDataIdBasePath);
+    JsonNodeCodec codec = new JsonNodeCodec(JsonNodeFactory.instance, linkedDataIdMapper);
+    jsonEntityCollection = entityCollection.withDocumentClass(JsonNode.class).withCodecRegistry(
+        CodecRegistries.fromRegistries(CodecRegistries.fromProviders(new JsonNodeCodecProvider(codec)),
+            entityCollection.getCodecRegistry()));
     this.linkedDataIdBasePath = linkedDataIdBasePath;
-    // TODO: close mongoClient after using it
+    indexManager = new MongoIndexManager(entityCollection);
+    ensureIndexes();
   }
 
   /* CRUD operations */
 
   /**
-   * Create an element that contains a Linked Data identifier field (@id in JSON-LD). It is necessary to check that
-   * there are not other elements into the DB with the same @id.
+   * Create an element that contains a Linked Data identifier field (@id in JSON-LD). The uniqueness of the @id is
+   * guaranteed by a unique index: the element is inserted optimistically and a new @id is only generated if the
+   * insertion fails because of a collision.
+   * <p>
+   * The supplied element only gains the generated @id. The returned element is a copy that also contains the MongoDB
+   * _id, so that callers that store the element elsewhere, e.g. within a template, do not store the _id with it.
    *
    * @param element An element
    * @return The created element
@@ -61,24 +144,225 @@ public class GenericLDDaoMongoDB implements GenericDao<String, JsonNode> {
   @Override
   @NonNull
   public JsonNode create(@NonNull JsonNode element) throws IOException {
-    if ((element.get("@id") != null) && (!NULL.equals(element.get("@id").getNodeType()))) {
-      throw new IllegalArgumentException("Specifying @id for new objects is not allowed");
+    if (hasLinkedDataId(element)) {
+      throw new IllegalArgumentException(LINKED_DATA_ID_NOT_ALLOWED);
+    }
+    ObjectNode document = element.deepCopy();
+    for (int attempt = 1; ; attempt++) {
+      String linkedDataId = generateLinkedDataId();
+      ((ObjectNode) element).put("@id", linkedDataId);
+      document.put("@id", linkedDataId);
+      try {
+        // The codec adapts all keys not accepted by MongoDB while writing, and adds the generated _id to the document
+        jsonEntityCollection.insertOne(document);
+        return document;
+      } catch (MongoWriteException e) {
+        if (attempt == MAX_LINKED_DATA_ID_ATTEMPTS || !isLinkedDataIdCollision(e.getError())) {
+          throw e;
+        }
+      }
+    }
+  }
+
+  /**
+   * Create several elements with as few round trips as possible. The elements are inserted with insertMany in batches
+   * of {@link #getBulkInsertBatchSize()}, and the elements whose @id collides with an existing one are retried with a
+   * new @id. In ordered mode (see {@link #isBulkInsertOrdered()}) the creation stops at the first failure and the
+   * elements after it are reported as not attempted; in unordered mode every element is attempted.
+   * <p>
+   * As in {@link #create(JsonNode)}, the supplied elements only gain their @id and the report contains copies of them.
+   * Failures are reported instead of thrown, and the @id assigned to an element that could not be created is
+   * removed again so that it can be resubmitted.
+   *
+   * @param elements The elements to create
+   * @return A report of the created elements and of the failures, by position in the supplied list
+   * @throws IOException If an error occurs during creation
+   */
+  @Override
+  @NonNull
+  public BulkCreateReport<JsonNode> createAll(@NonNull List<JsonNode> elements) throws IOException {
+    BulkCreateReport<JsonNode> report = new BulkCreateReport<>();
+    List<JsonNode> batch = new ArrayList<>(bulkInsertBatchSize);
+    List<Integer> batchIndexes = new ArrayList<>(bulkInsertBatchSize);
+    boolean stopped = false;
+    for (int i = 0; i < elements.size(); i++) {
+      JsonNode element = elements.get(i);
+      if (stopped) {
+        report.addFailure(i, BulkCreateReport.NOT_ATTEMPTED);
+      } else if (hasLinkedDataId(element)) {
+        report.addFailure(i, LINKED_DATA_ID_NOT_ALLOWED);
+        stopped = bulkInsertOrdered;
+      } else {
+        batch.add(element);
+        batchIndexes.add(i);
+      }
+      if (batch.size() == bulkInsertBatchSize || (batch.size() > 0 && (stopped || i == elements.size() - 1))) {
+        if (!insertBatch(batch, batchIndexes, report) && bulkInsertOrdered) {
+          stopped = true;
+        }
+        batch.clear();
+        batchIndexes.clear();
+      }
     }
-    String id = null;
-    // Generate a non-existing uuid
-    do {
-      id = linkedDataIdBasePath + UUID.randomUUID().toString();
-    } while (find(id) != null);
-    ((ObjectNode) element).put("@id", id);
+    return report;
+  }
 
-    // Adapts all keys not accepted by MongoDB
-    JsonNode fixedElement = jsonUtils.fixMongoDB(element, FixMongoDirection.WRITE_TO_MONGO);
-    ObjectMapper mapper = new ObjectMapper();
-    Map elementMap = mapper.convertValue(fixedElement, Map.class);
-    Document elementDoc = new Document(elementMap);
-    entityCollection.insertOne(elementDoc);
-    // Returns the document created (all keys adapted for MongoDB are restored)
-    return jsonUtils.fixMongoDB(mapper.readTree(elementDoc.toJson()), FixMongoDirection.READ_FROM_MONGO);
+  /**
+   * Insert a batch of elements, recording the outcome of each of them in the report
+   *
+   * @return True if all the elements of the batch were created
+   */
+  private boolean insertBatch(List<JsonNode> batch, List<Integer> batchIndexes, BulkCreateReport<JsonNode> report) {
+    boolean success = true;
+    List<ObjectNode> documents = new ArrayList<>(batch.size());
+    for (JsonNode element : batch) {
+      documents.add(element.deepCopy());
+    }
+    for (int attempt = 1; !batch.isEmpty(); attempt++) {
+      for (int i = 0; i < batch.size(); i++) {
+        String linkedDataId = generateLinkedDataId();
+        ((ObjectNode) batch.get(i)).put("@id", linkedDataId);
+        documents.get(i).put("@id", linkedDataId);
+      }
+      Map<Integer, BulkWriteError> errors = new HashMap<>();
+      int failedFrom = batch.size();
+      try {
+        jsonEntityCollection.insertMany(documents, new InsertManyOptions().ordered(bulkInsertOrdered));
+      } catch (MongoBulkWriteException e) {
+        for (BulkWriteError error : e.getWriteErrors()) {
+          errors.put(error.getIndex(), error);
+          failedFrom = Math.min(failedFrom, error.getIndex());
+        }
+      }
+      List<JsonNode> retryBatch = new ArrayList<>();
+      List<ObjectNode> retryDocuments = new ArrayList<>();
+      List<Integer> retryIndexes = new ArrayList<>();
+      for (int i = 0; i < batch.size(); i++) {
+        JsonNode element = batch.get(i);
+        BulkWriteError error = errors.get(i);
+        // In ordered mode the elements after the first failure were not attempted, and share its fate
+        BulkWriteError cause = (error == null && bulkInsertOrdered && i > failedFrom) ? errors.get(failedFrom) : error;
+        if (cause == null) {
+          report.addCreated(batchIndexes.get(i), documents.get(i));
+        } else if (attempt < MAX_LINKED_DATA_ID_ATTEMPTS && isLinkedDataIdCollision(cause)) {
+          retryBatch.add(element);
+          retryDocuments.add(documents.get(i));
+          retryIndexes.add(batchIndexes.get(i));
+        } else {
+          report.addFailure(batchIndexes.get(i), error != null ? error.getMessage() : BulkCreateReport.NOT_ATTEMPTED);
+          ((ObjectNode) element).remove("@id");
+          success = false;
+        }
+      }
+      batch = retryBatch;
+      documents = retryDocuments;
+      batchIndexes = retryIndexes;
+    }
+    return success;
+  }
+
+  /**
+   * Create the indexes of the collection if they do not exist yet. Subclasses that need additional indexes extend
+   * this method, which is also called when the collection is recreated after {@link #deleteAll()}.
+   */
+  protected void ensureIndexes() {
+    linkedDataIdIndexName = indexManager.ensureUniqueIndex("@id");
+  }
+
+  private boolean isLinkedDataIdCollision(WriteError error) {
+    return MongoIndexManager.isDuplicateKey(error, linkedDataIdIndexName);
+  }
+
+  public int getBulkInsertBatchSize() {
+    return bulkInsertBatchSize;
+  }
+
+  public void setBulkInsertBatchSize(int bulkInsertBatchSize) {
+    if (bulkInsertBatchSize <= 0) {
+      throw new IllegalArgumentException("The bulk insert batch size must be positive");
+    }
+    this.bulkInsertBatchSize = bulkInsertBatchSize;
+  }
+
+  public boolean isBulkInsertOrdered() {
+    return bulkInsertOrdered;
+  }
+
+  public void setBulkInsertOrdered(boolean bulkInsertOrdered) {
+    this.bulkInsertOrdered = bulkInsertOrdered;
+  }
+
+  static boolean hasLinkedDataId(JsonNode element) {
+    return (element.get("@id") != null) && (!NULL.equals(element.get("@id").getNodeType()));
+  }
+
+  private String generateLinkedDataId() {
+    return linkedDataIdBasePath + idGenerator.generateId();
+  }
+
+  @NonNull
+  public IdGenerator getIdGenerator() {
+    return idGenerator;
+  }
+
+  /**
+   * Set the strategy that generates the linked data IDs of new elements. IDs are random UUIDs by default;
+   * {@link org.metadatacenter.server.dao.id.TimeOrderedUuidGenerator} generates increasing ones, which are appended
+   * to the @id index instead of being inserted at random places in it.
+   */
+  public void setIdGenerator(@NonNull IdGenerator idGenerator) {
+    this.idGenerator = idGenerator;
+  }
+
+  public boolean isCompactLinkedDataIds() {
+    return linkedDataIdMapper.isCompact();
+  }
+
+  /**
+   * Enable or disable the compact storage of linked data IDs (see {@link LinkedDataIdMapper}). While enabled, IDs
+   * made of the base path followed by a UUID are stored as binary UUIDs and lookups match both forms, so it can be
+   * enabled on a collection that still contains string IDs.
+   *
+   * @throws IllegalStateException If compact storage is enabled and the DAO has no base path
+   */
+  public void setCompactLinkedDataIds(boolean compactLinkedDataIds) {
+    linkedDataIdMapper.setCompact(compactLinkedDataIds);
+  }
+
+  /**
+   * Convert the linked data IDs stored as strings to binary UUIDs, for a collection created before compact storage was
+   * enabled. The conversion is done in batches of {@link #getBulkInsertBatchSize()} updates and can be run while the
+   * collection is in use, since lookups match both forms. Elements whose ID is not made of the base path followed by
+   * a UUID are left unchanged.
+   *
+   * @return The number of converted elements
+   * @throws IllegalStateException If compact storage is not enabled
+   */
+  public long migrateLinkedDataIdsToBinary() {
+    if (!linkedDataIdMapper.isCompact()) {
+      throw new IllegalStateException("Compact storage of linked data IDs is not enabled");
+    }
+    Bson stringIds = and(type("@id", BsonType.STRING), regex("@id", linkedDataIdMapper.compactIdRegex()));
+    long converted = 0;
+    List<WriteModel<Document>> updates = new ArrayList<>(bulkInsertBatchSize);
+    // Each batch is queried anew rather than read from a cursor that is open over the updated elements. Converted
+    // elements no longer match, so every batch makes progress.
+    while (true) {
+      for (Document document : entityCollection.find(stringIds).projection(Projections.include("@id"))
+          .limit(bulkInsertBatchSize)) {
+        BsonValue storedId = linkedDataIdMapper.toStored(document.getString("@id"));
+        if (storedId.isBinary()) {
+          updates.add(new UpdateOneModel<>(eq(MONGO_ID, document.get(MONGO_ID)), new Document("$set",
+              new Document("@id", storedId))));
+        }
+      }
+      if (updates.isEmpty()) {
+        break;
+      }
+      converted += entityCollection.bulkWrite(updates, new BulkWriteOptions().ordered(false)).getModifiedCount();
+      updates.clear();
+    }
+    return converted;
   }
 
   /**
@@ -103,44 +387,451 @@ public class GenericLDDaoMongoDB implements GenericDao<String, JsonNode> {
   @NonNull
   public List<JsonNode> findAll(Integer limit, Integer offset, List<String> fieldNames, FieldNameInEx includeExclude)
       throws IOException {
-    FindIterable<Document> findIterable = entityCollection.find();
+    return findAll(limit, offset, null, fieldNames, includeExclude);
+  }
+
+  /**
+   * Find all elements in a given order. The elements are sorted by the database, which requires an index that
+   * returns them in that order unless unindexed sorts are allowed (see {@link #isUnindexedSortAllowed()}).
+   *
+   * @param sort The sort order, or null for the natural order
+   * @return A list of elements
+   * @throws IllegalArgumentException If no index supports the sort order and unindexed sorts are not allowed
+   * @throws IOException              If an error occurs during retrieval
+   */
+  @Override
+  @NonNull
+  public List<JsonNode> findAll(Integer limit, Integer offset, List<SortSpec> sort, List<String> fieldNames,
+                                FieldNameInEx includeExclude) throws IOException {
+    FindIterable<JsonNode> findIterable = buildFindIterable(null, buildSort(null, sort), limit, offset, fieldNames,
+        includeExclude);
+    try (Stream<JsonNode> stream = stream(findIterable)) {
+      return stream.collect(Collectors.toList());
+    }
+  }
+
+  /**
+   * Stream all elements
+   *
+   * @return A stream of elements that must be closed after use
+   */
+  @Override
+  @NonNull
+  public Stream<JsonNode> streamAll() {
+    return streamAll(null, null, null, FieldNameInEx.UNDEFINED);
+  }
+
+  @Override
+  @NonNull
+  public Stream<JsonNode> streamAll(List<String> fieldNames, FieldNameInEx includeExclude) {
+    return streamAll(null, null, fieldNames, includeExclude);
+  }
+
+  /**
+   * Stream elements lazily from a database cursor. Documents are fetched from the server in batches of
+   * {@link #getStreamBatchSize()} and decoded one by one as the stream is consumed, so at most one batch is held in
+   * memory at any time.
+   *
+   * @return A stream of elements that must be closed after use to release the cursor
+   */
+  @Override
+  @NonNull
+  public Stream<JsonNode> streamAll(Integer limit, Integer offset, List<String> fieldNames,
+                                    FieldNameInEx includeExclude) {
+    return streamAll(limit, offset, null, fieldNames, includeExclude);
+  }
+
+  /**
+   * Stream elements lazily in a given order (see {@link #findAll(Integer, Integer, List, List, FieldNameInEx)}). The
+   * order is supported by an index, so the first elements are available without the whole result being sorted.
+   *
+   * @param sort The sort order, or null for the natural order
+   * @return A stream of elements that must be closed after use to release the cursor
+   * @throws IllegalArgumentException If no index supports the sort order and unindexed sorts are not allowed
+   */
+  @Override
+  @NonNull
+  public Stream<JsonNode> streamAll(Integer limit, Integer offset, List<SortSpec> sort, List<String> fieldNames,
+                                    FieldNameInEx includeExclude) {
+    FindIterable<JsonNode> findIterable = buildFindIterable(null, buildSort(null, sort), limit, offset, fieldNames,
+        includeExclude);
+    findIterable.batchSize(streamBatchSize);
+    return stream(findIterable);
+  }
+
+  /**
+   * Publish all elements
+   *
+   * @return A publisher of elements
+   */
+  @Override
+  @NonNull
+  public Publisher<JsonNode> publishAll() {
+    return publishAll(null, null, null, FieldNameInEx.UNDEFINED);
+  }
+
+  @Override
+  @NonNull
+  public Publisher<JsonNode> publishAll(List<String> fieldNames, FieldNameInEx includeExclude) {
+    return publishAll(null, null, fieldNames, includeExclude);
+  }
+
+  /**
+   * Publish elements to Reactive Streams subscribers. Each subscription reads its own database cursor on the
+   * {@link #getPublisherExecutor() publisher executor}, and only as far as the subscriber has requested: documents are
+   * fetched in batches of {@link #getStreamBatchSize()}, and the next batch is not fetched until the subscriber asks
+   * for more elements than the current one holds.
+   *
+   * @return A publisher of elements, which can be subscribed to several times
+   */
+  @Override
+  @NonNull
+  public Publisher<JsonNode> publishAll(Integer limit, Integer offset, List<String> fieldNames,
+                                        FieldNameInEx includeExclude) {
+    FindIterable<JsonNode> findIterable = buildFindIterable(null, null, limit, offset, fieldNames, includeExclude);
+    findIterable.batchSize(streamBatchSize);
+    return new CursorPublisher<>(findIterable, publisherExecutor);
+  }
+
+  @NonNull
+  public Executor getPublisherExecutor() {
+    return publisherExecutor;
+  }
+
+  /**
+   * Set the executor on which the publishers returned by publishAll read their cursors. Reading a cursor blocks while
+   * a batch is fetched, so the executor should not be one reserved for non-blocking tasks.
+   */
+  public void setPublisherExecutor(@NonNull Executor publisherExecutor) {
+    this.publisherExecutor = publisherExecutor;
+  }
+
+  /**
+   * Find a page of elements using keyset pagination. Pages are ordered by the MongoDB _id and each page seeks
+   * directly past the last _id of the previous one, so fetching a deep page costs the same as fetching the first one,
+   * unlike the offset based findAll.
+   *
+   * @param limit             The maximum number of elements in the page, at most {@link #MAX_PAGE_SIZE}
+   * @param continuationToken The token returned with the previous page, or null to get the first page
+   * @return A page of elements, with the token for the following page if there are more elements
+   * @throws IllegalArgumentException If the limit or the continuation token are not valid
+   * @throws IOException              If an error occurs during retrieval
+   */
+  @Override
+  @NonNull
+  public Page<JsonNode> findPage(int limit, String continuationToken, List<String> fieldNames,
+                                 FieldNameInEx includeExclude) throws IOException {
+    return findPage(null, limit, continuationToken, fieldNames, includeExclude);
+  }
+
+  @NonNull
+  protected Page<JsonNode> findPage(Bson filter, int limit, String continuationToken, List<String> fieldNames,
+                                    FieldNameInEx includeExclude) {
+    if (limit <= 0) {
+      throw new IllegalArgumentException("The page size must be positive");
+    }
+    if (limit > MAX_PAGE_SIZE) {
+      throw new IllegalArgumentException("The page size must not exceed " + MAX_PAGE_SIZE);
+    }
+    Bson query = filter;
+    if (continuationToken != null) {
+      Bson seek = gt(MONGO_ID, decodeContinuationToken(continuationToken));
+      query = (filter == null) ? seek : and(filter, seek);
+    }
+    // One extra element tells whether there is a following page without an additional query
+    FindIterable<JsonNode> findIterable = jsonEntityCollection.find(query == null ? new BsonDocument() : query)
+        .sort(Sorts.ascending(MONGO_ID))
+        .limit(limit + 1);
+    // The _id is needed to build the continuation token, so it is only removed from the results afterwards
+    boolean removeMongoId = false;
+    if (fieldNames != null && fieldNames.size() > 0) {
+      List<String> paths = toStoredPaths(fieldNames);
+      switch (includeExclude) {
+        case INCLUDE:
+          findIterable.projection(Projections.include(paths));
+          removeMongoId = !paths.contains(MONGO_ID);
+          break;
+        case EXCLUDE:
+          List<String> excluded = new ArrayList<>(paths);
+          removeMongoId = excluded.remove(MONGO_ID);
+          if (excluded.size() > 0) {
+            findIterable.projection(Projections.exclude(excluded));
+          }
+          break;
+      }
+    }
+    List<JsonNode> items = new ArrayList<>();
+    try (MongoCursor<JsonNode> cursor = findIterable.iterator()) {
+      while (cursor.hasNext()) {
+        items.add(cursor.next());
+      }
+    }
+    String nextToken = null;
+    if (items.size() > limit) {
+      items.remove(limit);
+      nextToken = encodeContinuationToken(items.get(limit - 1));
+    }
+    if (removeMongoId) {
+      for (JsonNode item : items) {
+        ((ObjectNode) item).remove(MONGO_ID);
+      }
+    }
+    return new Page<>(items, nextToken);
+  }
+
+  static String encodeContinuationToken(JsonNode lastElement) {
+    String lastId = lastElement.path(MONGO_ID).path("$oid").textValue();
+    if (lastId == null || !ObjectId.isValid(lastId)) {
+      throw new IllegalStateException("Keyset pagination requires elements with an ObjectId _id");
+    }
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(new ObjectId(lastId).toByteArray());
+  }
+
+  static ObjectId decodeContinuationToken(String continuationToken) {
+    try {
+      byte[] bytes = Base64.getUrlDecoder().decode(continuationToken);
+      if (bytes.length == 12) {
+        return new ObjectId(bytes);
+      }
+    } catch (IllegalArgumentException e) {
+      // Reported below
+    }
+    throw new IllegalArgumentException("Invalid continuation token");
+  }
+
+  public int getStreamBatchSize() {
+    return streamBatchSize;
+  }
+
+  public void setStreamBatchSize(int streamBatchSize) {
+    if (streamBatchSize <= 0) {
+      throw new IllegalArgumentException("The stream batch size must be positive");
+    }
+    this.streamBatchSize = streamBatchSize;
+  }
+
+  private FindIterable<JsonNode> buildFindIterable(Bson filter, Bson sort, Integer limit, Integer offset,
+                                                   List<String> fieldNames, FieldNameInEx includeExclude) {
+    FindIterable<JsonNode> findIterable = jsonEntityCollection.find(filter == null ? new BsonDocument() : filter);
+    if (sort != null) {
+      findIterable.sort(sort);
+    }
     if (limit != null) {
       findIterable.limit(limit);
     }
     if (offset != null) {
       findIterable.skip(offset);
     }
+    Bson fields = buildProjection(fieldNames, includeExclude);
+    if (fields != null) {
+      findIterable.projection(fields);
+    }
+    return findIterable;
+  }
+
+  /**
+   * Build the projection for the given field names, so that only the requested fields are sent by the server. Field
+   * names can be dotted paths into nested objects, and refer to keys as they appear in the JSON representation.
+   *
+   * @return The projection for the given field names, or null if all the fields are requested
+   */
+  static Bson buildProjection(List<String> fieldNames, FieldNameInEx includeExclude) {
     if (fieldNames != null && fieldNames.size() > 0) {
-      Bson fields = null;
       switch (includeExclude) {
         case INCLUDE:
-          fields = Projections.fields(Projections.include(fieldNames), Projections.excludeId());
-          break;
+          List<String> included = toStoredPaths(fieldNames);
+          return included.contains(MONGO_ID) ? Projections.include(included)
+              : Projections.fields(Projections.include(included), Projections.excludeId());
         case EXCLUDE:
-          fields = Projections.exclude(fieldNames);
-          break;
+          return Projections.exclude(toStoredPaths(fieldNames));
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Map field paths to the paths of the stored documents (see {@link MongoKeyEscaper#escapePath(String)}). Duplicated
+   * paths and paths inside another requested path are dropped, since MongoDB rejects projections where one path is
+   * a prefix of another.
+   */
+  static List<String> toStoredPaths(List<String> fieldNames) {
+    List<String> paths = new ArrayList<>(fieldNames.size());
+    for (String fieldName : fieldNames) {
+      String path = MongoKeyEscaper.escapePath(fieldName);
+      boolean covered = false;
+      for (int i = paths.size() - 1; i >= 0 && !covered; i--) {
+        String other = paths.get(i);
+        if (isSameOrNested(path, other)) {
+          covered = true;
+        } else if (isSameOrNested(other, path)) {
+          paths.remove(i);
+        }
       }
-      if (fields != null) {
-        findIterable.projection(fields);
+      if (!covered) {
+        paths.add(path);
       }
     }
-    MongoCursor<Document> cursor = findIterable.iterator();
-    ObjectMapper mapper = new ObjectMapper();
-    List<JsonNode> docs = new ArrayList<>();
-    try {
-      while (cursor.hasNext()) {
-        JsonNode node = jsonUtils.fixMongoDB(mapper.readTree(cursor.next().toJson()), FixMongoDirection
-            .READ_FROM_MONGO);
-        docs.add(node);
+    return paths;
+  }
+
+  private static boolean isSameOrNested(String path, String parent) {
+    return path.startsWith(parent) && (path.length() == parent.length() || path.charAt(parent.length()) == '.');
+  }
+
+  private Stream<JsonNode> stream(FindIterable<JsonNode> findIterable) {
+    MongoCursor<JsonNode> cursor = findIterable.iterator();
+    Spliterator<JsonNode> spliterator = new Spliterators.AbstractSpliterator<JsonNode>(Long.MAX_VALUE,
+        Spliterator.ORDERED | Spliterator.NONNULL) {
+      @Override
+      public boolean tryAdvance(Consumer<? super JsonNode> action) {
+        if (!cursor.hasNext()) {
+          return false;
+        }
+        action.accept(cursor.next());
+        return true;
+      }
+
+      // Splitting would buffer an ever growing number of documents, which is what streaming is meant to avoid
+      @Override
+      public Spliterator<JsonNode> trySplit() {
+        return null;
       }
-    } finally {
-      cursor.close();
+    };
+    return StreamSupport.stream(spliterator, false).onClose(cursor::close);
+  }
+
+  /**
+   * Find the elements that match all the filters. The filters are evaluated by the server, on the stored form of the
+   * field paths and of the linked data IDs, so only the matching elements are transferred.
+   *
+   * @param filters The filters, all of which must match
+   * @return The matching elements, and the index expected to serve the query
+   * @throws IllegalArgumentException If a filter cannot be translated to a MongoDB filter
+   * @throws IOException              If an error occurs during retrieval
+   */
+  @Override
+  @NonNull
+  public QueryResult<JsonNode> query(@NonNull List<FieldFilter> filters, Integer limit, Integer offset,
+                                     List<String> fieldNames, FieldNameInEx includeExclude) throws IOException {
+    return query(filters, null, limit, offset, fieldNames, includeExclude);
+  }
+
+  /**
+   * Find the elements that match all the filters, in a given order. As with
+   * {@link #findAll(Integer, Integer, List, List, FieldNameInEx)}, the order must be supported by an index, taking
+   * into account the fields that the filters constrain to a single value.
+   *
+   * @param filters The filters, all of which must match
+   * @param sort    The sort order, or null for the natural order
+   * @return The matching elements, and the index expected to serve the query
+   * @throws IllegalArgumentException If a filter cannot be translated to a MongoDB filter, or if no index supports the
+   *                                  sort order and unindexed sorts are not allowed
+   * @throws IOException              If an error occurs during retrieval
+   */
+  @Override
+  @NonNull
+  public QueryResult<JsonNode> query(@NonNull List<FieldFilter> filters, List<SortSpec> sort, Integer limit,
+                                     Integer offset, List<String> fieldNames, FieldNameInEx includeExclude)
+      throws IOException {
+    Bson filter = MongoFilterBuilder.toBson(filters, linkedDataIdMapper);
+    FindIterable<JsonNode> findIterable = buildFindIterable(filter, buildSort(filters, sort), limit, offset,
+        fieldNames, includeExclude);
+    String indexName = findIndexFor(filters);
+    if (indexName == null && sort != null && !sort.isEmpty()) {
+      // The index that provides the order also limits the documents read when there is a limit
+      indexName = findIndexForSort(filters, sort);
+    }
+    try (Stream<JsonNode> stream = stream(findIterable)) {
+      return new QueryResult<>(stream.collect(Collectors.toList()), indexName);
     }
-    return docs;
   }
 
   /**
-   * Find an element using its linked data ID  (@id in JSON-LD)
+   * Find the index expected to serve a query, based on the definitions of the indexes of the collection. Useful to
+   * check a query before running it on a large collection.
+   *
+   * @param filters The filters of the query
+   * @return The name of the index, or null if the query would scan the whole collection
+   */
+  public String findIndexFor(@NonNull List<FieldFilter> filters) {
+    Set<String> equalityPaths = new HashSet<>();
+    Set<String> rangePaths = new HashSet<>();
+    for (FieldFilter filter : filters) {
+      String path = MongoKeyEscaper.escapePath(filter.getPath());
+      if (filter.isEquality()) {
+        equalityPaths.add(path);
+      } else {
+        rangePaths.add(path);
+      }
+    }
+    return indexManager.findIndexFor(equalityPaths, rangePaths);
+  }
+
+  /**
+   * Find an index that returns the elements matching the filters in the given order
+   *
+   * @param filters The filters of the query, or null if there are none
+   * @param sort    The sort order
+   * @return The name of the index, or null if the elements would have to be sorted in memory
+   */
+  public String findIndexForSort(List<FieldFilter> filters, @NonNull List<SortSpec> sort) {
+    return indexManager.findIndexForSort(singleValuePaths(filters), toSortKeys(sort));
+  }
+
+  public boolean isUnindexedSortAllowed() {
+    return unindexedSortAllowed;
+  }
+
+  /**
+   * Allow or forbid sorts that no index supports. MongoDB sorts such results in memory after reading all the matching
+   * documents, and fails if they exceed its memory limit, so they should only be allowed for small collections.
+   */
+  public void setUnindexedSortAllowed(boolean unindexedSortAllowed) {
+    this.unindexedSortAllowed = unindexedSortAllowed;
+  }
+
+  /**
+   * @return The sort document for the given order, or null if there is no order
+   * @throws IllegalArgumentException If no index supports the sort order and unindexed sorts are not allowed
+   */
+  private Bson buildSort(List<FieldFilter> filters, List<SortSpec> sort) {
+    if (sort == null || sort.isEmpty()) {
+      return null;
+    }
+    Map<String, Integer> sortKeys = toSortKeys(sort);
+    if (!unindexedSortAllowed && indexManager.findIndexForSort(singleValuePaths(filters), sortKeys) == null) {
+      throw new IllegalArgumentException("No index supports sorting on " + sort);
+    }
+    return new Document(new LinkedHashMap<>(sortKeys));
+  }
+
+  private static Map<String, Integer> toSortKeys(List<SortSpec> sort) {
+    Map<String, Integer> sortKeys = new LinkedHashMap<>();
+    for (SortSpec spec : sort) {
+      String path = MongoKeyEscaper.escapePath(spec.getPath());
+      if (sortKeys.put(path, spec.getDirection() == SortSpec.Direction.ASCENDING ? 1 : -1) != null) {
+        throw new IllegalArgumentException("Duplicated sort field: " + spec.getPath());
+      }
+    }
+    return sortKeys;
+  }
+
+  private static Set<String> singleValuePaths(List<FieldFilter> filters) {
+    Set<String> paths = new HashSet<>();
+    if (filters != null) {
+      for (FieldFilter filter : filters) {
+        if (filter.getOperator() == FieldFilter.Operator.EQ) {
+          paths.add(MongoKeyEscaper.escapePath(filter.getPath()));
+        }
+      }
+    }
+    return paths;
+  }
+
+  /**
+   * Find an element using its linked data ID  (@id in JSON-LD). If a cache is configured for the collection the element
+   * is served from it when possible, and concurrent lookups of the same ID share a single query unless request
+   * coalescing is disabled. Callers always get their own copy, which they are free to modify.
    *
    * @param id The linked data ID of the element
    * @return A JSON representation of the element or null if the element was not found
@@ -152,16 +843,100 @@ public class GenericLDDaoMongoDB implements GenericDao<String, JsonNode> {
     if ((id == null) || (id.length() == 0)) {
       throw new IllegalArgumentException();
     }
-    Document doc = entityCollection.find(eq("@id", id)).first();
-    if (doc == null) {
-      return null;
+    if (cache != null) {
+      // Cached elements are shared with the following readers
+      JsonNode element = cache.get(id, this::coalescedLoad);
+      return (element == null) ? null : element.deepCopy();
+    }
+    return coalescedLoad(id);
+  }
+
+  /**
+   * Find several elements using their linked data IDs (@id in JSON-LD) with a single query. Elements found in the
+   * cache, if one is configured, are not queried again.
+   *
+   * @param ids The linked data IDs of the elements
+   * @return The elements by ID, in the order of the supplied IDs and without duplicates. IDs of elements that were
+   * not found are mapped to null.
+   * @throws IllegalArgumentException If an ID is not valid
+   * @throws IOException              If an error occurs during retrieval
+   */
+  @Override
+  @NonNull
+  public Map<String, JsonNode> findByIds(@NonNull Collection<String> ids) throws IOException {
+    Map<String, JsonNode> elements = new LinkedHashMap<>();
+    List<String> pending = new ArrayList<>();
+    for (String id : ids) {
+      if ((id == null) || (id.length() == 0)) {
+        throw new IllegalArgumentException();
+      }
+      if (!elements.containsKey(id)) {
+        JsonNode cached = (cache == null) ? null : cache.getIfPresent(id);
+        if (cached == null) {
+          elements.put(id, null);
+          pending.add(id);
+        } else {
+          elements.put(id, cached.deepCopy());
+        }
+      }
+    }
+    if (!pending.isEmpty()) {
+      try (MongoCursor<JsonNode> cursor = jsonEntityCollection.find(linkedDataIdMapper.filter(pending)).iterator()) {
+        while (cursor.hasNext()) {
+          JsonNode element = cursor.next();
+          // Replacing the value of an existing key keeps the order of the IDs
+          elements.put(element.get("@id").textValue(), element);
+        }
+      }
     }
-    ObjectMapper mapper = new ObjectMapper();
-    return jsonUtils.fixMongoDB(mapper.readTree(doc.toJson()), FixMongoDirection.READ_FROM_MONGO);
+    return elements;
+  }
+
+  private JsonNode coalescedLoad(String id) throws IOException {
+    RequestCoalescer<String, JsonNode> currentCoalescer = coalescer;
+    return (currentCoalescer == null) ? load(id) : currentCoalescer.load(id, this::load);
+  }
+
+  private JsonNode load(String id) {
+    return jsonEntityCollection.find(linkedDataIdMapper.filter(id)).first();
+  }
+
+  public boolean isRequestCoalescing() {
+    return coalescer != null;
   }
 
   /**
-   * Update an element using its linked data ID  (@id in JSON-LD)
+   * Enable or disable the coalescing of concurrent lookups of the same ID in {@link #find(String)}
+   */
+  public void setRequestCoalescing(boolean requestCoalescing) {
+    coalescer = requestCoalescing ? new RequestCoalescer<>(JsonNode::deepCopy) : null;
+  }
+
+  /**
+   * @return The number of lookups that were served by a query already in flight for the same ID
+   */
+  public long getCoalescedRequestCount() {
+    RequestCoalescer<String, JsonNode> currentCoalescer = coalescer;
+    return (currentCoalescer == null) ? 0 : currentCoalescer.getCoalescedCount();
+  }
+
+  public DocumentCache<String, JsonNode> getCache() {
+    return cache;
+  }
+
+  /**
+   * Set the cache used by {@link #find(String)}. Updates and deletions done through this DAO invalidate it, so it
+   * should only be used for collections that are not modified by other means.
+   *
+   * @param cache A cache, or null to disable caching
+   */
+  public void setCache(DocumentCache<String, JsonNode> cache) {
+    this.cache = cache;
+  }
+
+  /**
+   * Update an element using its linked data ID  (@id in JSON-LD). The update is applied and the updated element is
+   * returned atomically, in a single round trip.
    *
    * @param id            The linked data ID of the element to update
    * @param modifications The update
@@ -177,19 +952,14 @@ public class GenericLDDaoMongoDB implements GenericDao<String, JsonNode> {
     if ((id == null) || (id.length() == 0)) {
       throw new IllegalArgumentException();
     }
-    if (!exists(id)) {
+    // The codec adapts all keys not accepted by MongoDB while writing
+    JsonNode updated = jsonEntityCollection.findOneAndUpdate(linkedDataIdMapper.filter(id),
+        new Document("$set", modifications), new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER));
+    invalidate(id);
+    if (updated == null) {
       throw new InstanceNotFoundException();
     }
-    // Adapts all keys not accepted by MongoDB
-    modifications = jsonUtils.fixMongoDB(modifications, FixMongoDirection.WRITE_TO_MONGO);
-    ObjectMapper mapper = new ObjectMapper();
-    Map modificationsMap = mapper.convertValue(modifications, Map.class);
-    UpdateResult updateResult = entityCollection.updateOne(eq("@id", id), new Document("$set", modificationsMap));
-    if (updateResult.getMatchedCount() == 1) {
-      return find(id);
-    } else {
-      throw new InternalError();
-    }
+    return updated;
   }
 
   /**
@@ -205,17 +975,16 @@ public class GenericLDDaoMongoDB implements GenericDao<String, JsonNode> {
     if ((id == null) || (id.length() == 0)) {
       throw new IllegalArgumentException();
     }
-    if (!exists(id)) {
+    DeleteResult deleteResult = entityCollection.deleteOne(linkedDataIdMapper.filter(id));
+    invalidate(id);
+    if (deleteResult.getDeletedCount() == 0) {
       throw new InstanceNotFoundException();
     }
-    DeleteResult deleteResult = entityCollection.deleteOne(eq("@id", id));
-    if (deleteResult.getDeletedCount() != 1) {
-      throw new InternalError();
-    }
   }
 
   /**
-   * Check if an element exists using its linked data ID  (@id in JSON-LD)
+   * Check if an element exists using its linked data ID  (@id in JSON-LD). Only the @id is projected, so the check
+   * is answered from the @id index without fetching or decoding the document.
    *
    * @param id The linked data ID of the element
    * @return True if an element with the supplied linked data ID  exists or False otherwise
@@ -223,7 +992,13 @@ public class GenericLDDaoMongoDB implements GenericDao<String, JsonNode> {
    */
   @Override
   public boolean exists(@NonNull String id) throws IOException {
-    return (find(id) != null);
+    if ((id == null) || (id.length() == 0)) {
+      throw new IllegalArgumentException();
+    }
+    return entityCollection.find(linkedDataIdMapper.filter(id))
+        .projection(Projections.fields(Projections.include("@id"), Projections.excludeId()))
+        .limit(1)
+        .first() != null;
   }
 
   /**
@@ -232,6 +1007,21 @@ public class GenericLDDaoMongoDB implements GenericDao<String, JsonNode> {
   @Override
   public void deleteAll() {
     entityCollection.drop();
+    // Dropping the collection also drops its indexes
+    ensureIndexes();
+    if (cache != null) {
+      cache.invalidateAll();
+    }
+  }
+
+  private void invalidate(String id) {
+    RequestCoalescer<String, JsonNode> currentCoalescer = coalescer;
+    if (currentCoalescer != null) {
+      currentCoalescer.forget(id);
+    }
+    if (cache != null) {
+      cache.invalidate(id);
+    }
   }
 
   @Override
@@ -0,0 +1,370 @@
+package org.metadatacenter.server.dao.mongodb;
+
+import checkers.nullness.quals.NonNull;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.BinaryNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.bson.BsonBinary;
+import org.bson.BsonDbPointer;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentWriter;
+import org.bson.BsonObjectId;
+import org.bson.BsonReader;
+import org.bson.BsonRegularExpression;
+import org.bson.BsonTimestamp;
+import org.bson.BsonType;
+import org.bson.BsonValue;
+import org.bson.BsonWriter;
+import org.bson.codecs.CollectibleCodec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Codec that converts between BSON documents and Jackson trees. Keys are adapted for MongoDB while the document is
+ * encoded and restored while it is decoded (see {@link MongoKeyEscaper}), which replaces the
+ * Document.toJson() / ObjectMapper.readTree() / JsonUtils.fixMongoDB() round trips with a single pass in each
+ * direction and no intermediate JSON string or Map.
+ * <p>
+ * BSON types that have no JSON counterpart are represented the same way as in the strict extended JSON produced by
+ * Document.toJson(), e.g. {"$oid": "..."} for the MongoDB "_id" or {"$date": ...} for dates. The only difference is
+ * that 64-bit integers are decoded as plain JSON numbers instead of {"$numberLong": "..."} objects. On the way in,
+ * ObjectIds, dates and binary values in that form are written back with their BSON type, so that documents that are
+ * read, modified and written back keep them.
+ * <p>
+ * If a {@link LinkedDataIdMapper} is given, the root "@id" is written in the form chosen by the mapper, and stored
+ * binary UUIDs are read back as full IDs.
+ */
+public class JsonNodeCodec implements CollectibleCodec<JsonNode> {
+
+  private static final String MONGO_ID = "_id";
+  private static final String OBJECT_ID_KEY = "$oid";
+  private static final String DATE_KEY = "$date";
+  private static final String BINARY_KEY = "$binary";
+  private static final String BINARY_TYPE_KEY = "$type";
+
+  @NonNull
+  private final JsonNodeFactory nodeFactory;
+  private final LinkedDataIdMapper linkedDataIdMapper;
+
+  public JsonNodeCodec() {
+    this(JsonNodeFactory.instance);
+  }
+
+  public JsonNodeCodec(@NonNull JsonNodeFactory nodeFactory) {
+    this(nodeFactory, null);
+  }
+
+  /**
+   * @param linkedDataIdMapper Maps the root "@id" to its stored form, or null to store it as is
+   */
+  public JsonNodeCodec(@NonNull JsonNodeFactory nodeFactory, LinkedDataIdMapper linkedDataIdMapper) {
+    this.nodeFactory = nodeFactory;
+    this.linkedDataIdMapper = linkedDataIdMapper;
+  }
+
+  @Override
+  public JsonNode decode(BsonReader reader, DecoderContext decoderContext) {
+    return readDocument(reader, true);
+  }
+
+  @Override
+  public void encode(BsonWriter writer, JsonNode value, EncoderContext encoderContext) {
+    if (!value.isObject()) {
+      throw new IllegalArgumentException("Only JSON objects can be stored as MongoDB documents");
+    }
+    writer.writeStartDocument();
+    // MongoDB keeps the _id as the first field of the document, so write it first to spare the server a reordering
+    JsonNode mongoId = value.get(MONGO_ID);
+    if (mongoId != null) {
+      writer.writeName(MONGO_ID);
+      writeValue(writer, mongoId);
+    }
+    Iterator<Map.Entry<String, JsonNode>> it = value.fields();
+    while (it.hasNext()) {
+      Map.Entry<String, JsonNode> field = it.next();
+      if (MONGO_ID.equals(field.getKey())) {
+        continue;
+      }
+      writer.writeName(MongoKeyEscaper.escapeKey(field.getKey()));
+      if (linkedDataIdMapper != null && LinkedDataIdMapper.LINKED_DATA_ID.equals(field.getKey())
+          && field.getValue().isTextual()) {
+        BsonValue storedId = linkedDataIdMapper.toStored(field.getValue().textValue());
+        if (storedId.isBinary()) {
+          writer.writeBinaryData(storedId.asBinary());
+        } else {
+          writer.writeString(storedId.asString().getValue());
+        }
+      } else {
+        writeValue(writer, field.getValue());
+      }
+    }
+    writer.writeEndDocument();
+  }
+
+  @Override
+  public Class<JsonNode> getEncoderClass() {
+    return JsonNode.class;
+  }
+
+  @Override
+  public JsonNode generateIdIfAbsentFromDocument(JsonNode document) {
+    if (!documentHasId(document)) {
+      ObjectNode mongoId = nodeFactory.objectNode();
+      mongoId.put(OBJECT_ID_KEY, new ObjectId().toHexString());
+      ((ObjectNode) document).set(MONGO_ID, mongoId);
+    }
+    return document;
+  }
+
+  @Override
+  public boolean documentHasId(JsonNode document) {
+    return document.has(MONGO_ID);
+  }
+
+  @Override
+  public BsonValue getDocumentId(JsonNode document) {
+    JsonNode mongoId = document.get(MONGO_ID);
+    if (mongoId == null) {
+      throw new IllegalStateException("The document does not contain an _id");
+    }
+    if (isObjectId(mongoId)) {
+      return new BsonObjectId(new ObjectId(mongoId.get(OBJECT_ID_KEY).textValue()));
+    }
+    BsonDocument holder = new BsonDocument();
+    BsonDocumentWriter writer = new BsonDocumentWriter(holder);
+    writer.writeStartDocument();
+    writer.writeName(MONGO_ID);
+    writeValue(writer, mongoId);
+    writer.writeEndDocument();
+    return holder.get(MONGO_ID);
+  }
+
+  private static boolean isObjectId(JsonNode node) {
+    return node.isObject() && node.size() == 1 && node.path(OBJECT_ID_KEY).isTextual()
+        && ObjectId.isValid(node.get(OBJECT_ID_KEY).textValue());
+  }
+
+  private void writeDocument(BsonWriter writer, JsonNode node) {
+    writer.writeStartDocument();
+    Iterator<Map.Entry<String, JsonNode>> it = node.fields();
+    while (it.hasNext()) {
+      Map.Entry<String, JsonNode> field = it.next();
+      writer.writeName(MongoKeyEscaper.escapeKey(field.getKey()));
+      writeValue(writer, field.getValue());
+    }
+    writer.writeEndDocument();
+  }
+
+  private void writeArray(BsonWriter writer, JsonNode node) {
+    writer.writeStartArray();
+    for (JsonNode element : node) {
+      writeValue(writer, element);
+    }
+    writer.writeEndArray();
+  }
+
+  private void writeValue(BsonWriter writer, JsonNode node) {
+    switch (node.getNodeType()) {
+      case OBJECT:
+        if (!writeExtendedValue(writer, node)) {
+          writeDocument(writer, node);
+        }
+        break;
+      case ARRAY:
+        writeArray(writer, node);
+        break;
+      case STRING:
+        writer.writeString(node.textValue());
+        break;
+      case NUMBER:
+        writeNumber(writer, node);
+        break;
+      case BOOLEAN:
+        writer.writeBoolean(node.booleanValue());
+        break;
+      case BINARY:
+        writer.writeBinaryData(new BsonBinary(((BinaryNode) node).binaryValue()));
+        break;
+      case NULL:
+      case MISSING:
+        writer.writeNull();
+        break;
+      default:
+        throw new IllegalArgumentException("Unsupported JSON node type: " + node.getNodeType());
+    }
+  }
+
+  /**
+   * Write an object that represents a BSON value in extended JSON, as produced by the decoder
+   *
+   * @return False if the object is not such a value
+   */
+  private static boolean writeExtendedValue(BsonWriter writer, JsonNode node) {
+    if (isObjectId(node)) {
+      writer.writeObjectId(new ObjectId(node.get(OBJECT_ID_KEY).textValue()));
+      return true;
+    }
+    if (node.size() == 1 && node.path(DATE_KEY).isIntegralNumber() && node.get(DATE_KEY).canConvertToLong()) {
+      writer.writeDateTime(node.get(DATE_KEY).longValue());
+      return true;
+    }
+    if (node.size() == 2 && node.path(BINARY_KEY).isTextual() && node.path(BINARY_TYPE_KEY).isTextual()) {
+      try {
+        int type = Integer.parseInt(node.get(BINARY_TYPE_KEY).textValue(), 16);
+        byte[] data = Base64.getDecoder().decode(node.get(BINARY_KEY).textValue());
+        if (type >= 0 && type <= 0xFF) {
+          writer.writeBinaryData(new BsonBinary((byte) type, data));
+          return true;
+        }
+      } catch (IllegalArgumentException e) {
+        // Not a binary value, written as a plain object
+      }
+    }
+    return false;
+  }
+
+  private void writeNumber(BsonWriter writer, JsonNode node) {
+    switch (node.numberType()) {
+      case INT:
+        writer.writeInt32(node.intValue());
+        break;
+      case LONG:
+        writer.writeInt64(node.longValue());
+        break;
+      case BIG_INTEGER:
+        if (!node.canConvertToLong()) {
+          throw new IllegalArgumentException("Integer value out of the range supported by MongoDB: " + node);
+        }
+        writer.writeInt64(node.longValue());
+        break;
+      default:
+        writer.writeDouble(node.doubleValue());
+        break;
+    }
+  }
+
+  private ObjectNode readDocument(BsonReader reader, boolean root) {
+    ObjectNode node = nodeFactory.objectNode();
+    reader.readStartDocument();
+    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+      String key = MongoKeyEscaper.unescapeKey(reader.readName());
+      if (root && linkedDataIdMapper != null && reader.getCurrentBsonType() == BsonType.BINARY
+          && LinkedDataIdMapper.LINKED_DATA_ID.equals(key)) {
+        BsonBinary binary = reader.readBinaryData();
+        String id = linkedDataIdMapper.fromStored(binary);
+        node.set(key, (id != null) ? nodeFactory.textNode(id) : binaryNode(binary));
+      } else {
+        node.set(key, readValue(reader));
+      }
+    }
+    reader.readEndDocument();
+    return node;
+  }
+
+  private ArrayNode readArray(BsonReader reader) {
+    ArrayNode node = nodeFactory.arrayNode();
+    reader.readStartArray();
+    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+      node.add(readValue(reader));
+    }
+    reader.readEndArray();
+    return node;
+  }
+
+  private JsonNode readValue(BsonReader reader) {
+    ObjectNode node;
+    switch (reader.getCurrentBsonType()) {
+      case DOCUMENT:
+        return readDocument(reader, false);
+      case ARRAY:
+        return readArray(reader);
+      case STRING:
+        return nodeFactory.textNode(reader.readString());
+      case INT32:
+        return nodeFactory.numberNode(reader.readInt32());
+      case INT64:
+        return nodeFactory.numberNode(reader.readInt64());
+      case DOUBLE:
+        return nodeFactory.numberNode(reader.readDouble());
+      case BOOLEAN:
+        return nodeFactory.booleanNode(reader.readBoolean());
+      case NULL:
+        reader.readNull();
+        return nodeFactory.nullNode();
+      case OBJECT_ID:
+        node = nodeFactory.objectNode();
+        node.put(OBJECT_ID_KEY, reader.readObjectId().toHexString());
+        return node;
+      case DATE_TIME:
+        node = nodeFactory.objectNode();
+        node.put(DATE_KEY, reader.readDateTime());
+        return node;
+      case BINARY:
+        return binaryNode(reader.readBinaryData());
+      case REGULAR_EXPRESSION:
+        BsonRegularExpression regex = reader.readRegularExpression();
+        node = nodeFactory.objectNode();
+        node.put("$regex", regex.getPattern());
+        node.put("$options", regex.getOptions());
+        return node;
+      case TIMESTAMP:
+        BsonTimestamp timestamp = reader.readTimestamp();
+        ObjectNode timestampValue = nodeFactory.objectNode();
+        timestampValue.put("t", timestamp.getTime());
+        timestampValue.put("i", timestamp.getInc());
+        node = nodeFactory.objectNode();
+        node.set("$timestamp", timestampValue);
+        return node;
+      case SYMBOL:
+        node = nodeFactory.objectNode();
+        node.put("$symbol", reader.readSymbol());
+        return node;
+      case JAVASCRIPT:
+        node = nodeFactory.objectNode();
+        node.put("$code", reader.readJavaScript());
+        return node;
+      case JAVASCRIPT_WITH_SCOPE:
+        node = nodeFactory.objectNode();
+        node.put("$code", reader.readJavaScriptWithScope());
+        node.set("$scope", readDocument(reader, false));
+        return node;
+      case DB_POINTER:
+        BsonDbPointer pointer = reader.readDBPointer();
+        node = nodeFactory.objectNode();
+        node.put("$ref", pointer.getNamespace());
+        node.put("$id", pointer.getId().toHexString());
+        return node;
+      case MIN_KEY:
+        reader.readMinKey();
+        node = nodeFactory.objectNode();
+        node.put("$minKey", 1);
+        return node;
+      case MAX_KEY:
+        reader.readMaxKey();
+        node = nodeFactory.objectNode();
+        node.put("$maxKey", 1);
+        return node;
+      case UNDEFINED:
+        reader.readUndefined();
+        node = nodeFactory.objectNode();
+        node.put("$undefined", true);
+        return node;
+      default:
+        throw new IllegalStateException("Unexpected BSON type: " + reader.getCurrentBsonType());
+    }
+  }
+
+  private ObjectNode binaryNode(BsonBinary binary) {
+    ObjectNode node = nodeFactory.objectNode();
+    node.put(BINARY_KEY, Base64.getEncoder().encodeToString(binary.getData()));
+    node.put(BINARY_TYPE_KEY, Integer.toHexString(binary.getType() & 0xFF));
+    return node;
+  }
+}
@@ -0,0 +1,30 @@
+package org.metadatacenter.server.dao.mongodb;
+
+import checkers.nullness.quals.NonNull;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.bson.codecs.Codec;
+import org.bson.codecs.configuration.CodecProvider;
+import org.bson.codecs.configuration.CodecRegistry;
+
+/**
+ * Provides a {@link JsonNodeCodec} for JsonNode and all its subclasses, so that trees can also be embedded in other
+ * documents, e.g. as the value of a $set update.
+ */
+public class JsonNodeCodecProvider implements CodecProvider {
+
+  @NonNull
+  private final JsonNodeCodec codec;
+
+  public JsonNodeCodecProvider(@NonNull JsonNodeCodec codec) {
+    this.codec = codec;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> Codec<T> get(Class<T> clazz, CodecRegistry registry) {
+    if (JsonNode.class.isAssignableFrom(clazz)) {
+      return (Codec<T>) codec;
+    }
+    return null;
+  }
+}
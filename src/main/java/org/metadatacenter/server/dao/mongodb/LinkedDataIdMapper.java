@@ -0,0 +1,161 @@
+package org.metadatacenter.server.dao.mongodb;
+
+import checkers.nullness.quals.NonNull;
+import com.mongodb.client.model.Filters;
+import org.bson.BsonBinary;
+import org.bson.BsonBinarySubType;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.conversions.Bson;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Maps the linked data IDs (@id in JSON-LD) of the elements of a collection to their stored form. By default IDs are
+ * stored as strings. In compact mode, IDs made of the base path of the collection followed by a UUID are stored as
+ * the 16 bytes of the UUID (BSON binary of subtype 4), which makes documents and @id index entries much smaller;
+ * the full IRI is rebuilt when the element is read. Other IDs are still stored as strings.
+ * <p>
+ * Since collections may contain both forms while they are migrated (see
+ * {@link GenericLDDaoMongoDB#migrateLinkedDataIdsToBinary()}), lookups in compact mode match either form, and stored
+ * UUIDs are always read back as IRIs, even after leaving compact mode.
+ */
+public class LinkedDataIdMapper {
+
+  static final String LINKED_DATA_ID = "@id";
+  private static final int UUID_STRING_LENGTH = 36;
+  private static final String UUID_REGEX = "[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}";
+
+  private final String basePath;
+  private volatile boolean compact;
+
+  public LinkedDataIdMapper(String basePath) {
+    this.basePath = basePath;
+  }
+
+  public String getBasePath() {
+    return basePath;
+  }
+
+  public boolean isCompact() {
+    return compact;
+  }
+
+  /**
+   * @param compact True to store the IDs under the base path as binary UUIDs
+   * @throws IllegalStateException If compact mode is requested and there is no base path
+   */
+  public void setCompact(boolean compact) {
+    if (compact && basePath == null) {
+      throw new IllegalStateException("Compact linked data IDs require a base path");
+    }
+    this.compact = compact;
+  }
+
+  /**
+   * @param id A linked data ID
+   * @return The form in which the ID is stored
+   */
+  @NonNull
+  public BsonValue toStored(@NonNull String id) {
+    if (compact) {
+      UUID uuid = parseLocalUuid(id);
+      if (uuid != null) {
+        return toBinary(uuid);
+      }
+    }
+    return new BsonString(id);
+  }
+
+  /**
+   * @param stored A stored binary UUID
+   * @return The linked data ID, or null if the value is not a UUID
+   */
+  public String fromStored(@NonNull BsonBinary stored) {
+    if (stored.getType() != BsonBinarySubType.UUID_STANDARD.getValue() || stored.getData().length != 16) {
+      return null;
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(stored.getData());
+    return (basePath == null ? "" : basePath) + new UUID(buffer.getLong(), buffer.getLong()).toString();
+  }
+
+  /**
+   * @param id A linked data ID
+   * @return A filter matching the element with the ID, in any of the forms in which it can be stored
+   */
+  @NonNull
+  public Bson filter(@NonNull String id) {
+    List<BsonValue> forms = storedForms(id);
+    return (forms.size() == 1) ? Filters.eq(LINKED_DATA_ID, forms.get(0)) : Filters.in(LINKED_DATA_ID, forms);
+  }
+
+  /**
+   * @param ids Linked data IDs
+   * @return A filter matching the elements with any of the IDs, in any of the forms in which they can be stored
+   */
+  @NonNull
+  public Bson filter(@NonNull Collection<String> ids) {
+    List<BsonValue> forms = new ArrayList<>(compact ? 2 * ids.size() : ids.size());
+    for (String id : ids) {
+      forms.addAll(storedForms(id));
+    }
+    return Filters.in(LINKED_DATA_ID, forms);
+  }
+
+  /**
+   * @return The forms in which the ID can be stored, the string form first
+   */
+  @NonNull
+  List<BsonValue> storedForms(@NonNull String id) {
+    List<BsonValue> forms = new ArrayList<>(2);
+    forms.add(new BsonString(id));
+    if (compact) {
+      UUID uuid = parseLocalUuid(id);
+      if (uuid != null) {
+        forms.add(toBinary(uuid));
+      }
+    }
+    return forms;
+  }
+
+  /**
+   * @return A regular expression matching exactly the IDs that are stored as binary UUIDs in compact mode
+   * @throws IllegalStateException If there is no base path
+   */
+  @NonNull
+  String compactIdRegex() {
+    if (basePath == null) {
+      throw new IllegalStateException("Compact linked data IDs require a base path");
+    }
+    return "^" + Pattern.quote(basePath) + UUID_REGEX + "$";
+  }
+
+  /**
+   * @return The UUID that follows the base path in the ID, or null if the ID is not of that form. Only the canonical
+   * lower-case form is accepted, so that the ID rebuilt on read is identical.
+   */
+  private UUID parseLocalUuid(String id) {
+    if (basePath == null || id.length() != basePath.length() + UUID_STRING_LENGTH || !id.startsWith(basePath)) {
+      return null;
+    }
+    String local = id.substring(basePath.length());
+    try {
+      UUID uuid = UUID.fromString(local);
+      return uuid.toString().equals(local) ? uuid : null;
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  private static BsonBinary toBinary(UUID uuid) {
+    ByteBuffer buffer = ByteBuffer.allocate(16);
+    buffer.putLong(uuid.getMostSignificantBits());
+    buffer.putLong(uuid.getLeastSignificantBits());
+    return new BsonBinary(BsonBinarySubType.UUID_STANDARD, buffer.array());
+  }
+}
@@ -0,0 +1,206 @@
+package org.metadatacenter.server.dao.mongodb;
+
+import checkers.nullness.quals.NonNull;
+import com.mongodb.MongoClientOptions;
+
+import java.util.Properties;
+
+/**
+ * Connection pool and lifecycle settings of a {@link MongoClientManager}. The defaults suit a single application
+ * server; deployments tune them through properties (see {@link #fromProperties(Properties, String)}).
+ */
+public class MongoClientConfig {
+
+  public static final String DEFAULT_PROPERTY_PREFIX = "mongodb.";
+
+  private int minConnectionsPerHost = 10;
+  private int connectionsPerHost = 100;
+  private int threadsAllowedToBlockForConnectionMultiplier = 5;
+  private int maxWaitTimeMillis = 10000;
+  private int connectTimeoutMillis = 10000;
+  private int socketTimeoutMillis = 0;
+  private int serverSelectionTimeoutMillis = 30000;
+  private int maxConnectionIdleTimeMillis = 0;
+  private int maxConnectionLifeTimeMillis = 0;
+  private int warmUpConnections = 10;
+  private long statisticsIntervalMillis = 10000;
+  private long drainTimeoutMillis = 30000;
+
+  /**
+   * Reads the settings from properties named after them, such as {@code mongodb.connectionsPerHost}. Missing
+   * properties keep their default value.
+   *
+   * @param properties The properties of the deployment
+   * @param prefix     The prefix of the property names
+   * @return The settings
+   * @throws IllegalArgumentException If a property is not a valid number
+   */
+  @NonNull
+  public static MongoClientConfig fromProperties(@NonNull Properties properties, @NonNull String prefix) {
+    MongoClientConfig config = new MongoClientConfig();
+    config.minConnectionsPerHost = intProperty(properties, prefix, "minConnectionsPerHost",
+        config.minConnectionsPerHost);
+    config.connectionsPerHost = intProperty(properties, prefix, "connectionsPerHost", config.connectionsPerHost);
+    config.threadsAllowedToBlockForConnectionMultiplier = intProperty(properties, prefix,
+        "threadsAllowedToBlockForConnectionMultiplier", config.threadsAllowedToBlockForConnectionMultiplier);
+    config.maxWaitTimeMillis = intProperty(properties, prefix, "maxWaitTimeMillis", config.maxWaitTimeMillis);
+    config.connectTimeoutMillis = intProperty(properties, prefix, "connectTimeoutMillis", config.connectTimeoutMillis);
+    config.socketTimeoutMillis = intProperty(properties, prefix, "socketTimeoutMillis", config.socketTimeoutMillis);
+    config.serverSelectionTimeoutMillis = intProperty(properties, prefix, "serverSelectionTimeoutMillis",
+        config.serverSelectionTimeoutMillis);
+    config.maxConnectionIdleTimeMillis = intProperty(properties, prefix, "maxConnectionIdleTimeMillis",
+        config.maxConnectionIdleTimeMillis);
+    config.maxConnectionLifeTimeMillis = intProperty(properties, prefix, "maxConnectionLifeTimeMillis",
+        config.maxConnectionLifeTimeMillis);
+    config.warmUpConnections = intProperty(properties, prefix, "warmUpConnections", config.warmUpConnections);
+    config.statisticsIntervalMillis = longProperty(properties, prefix, "statisticsIntervalMillis",
+        config.statisticsIntervalMillis);
+    config.drainTimeoutMillis = longProperty(properties, prefix, "drainTimeoutMillis", config.drainTimeoutMillis);
+    return config;
+  }
+
+  /**
+   * @return The driver options for these settings. The pools publish their statistics through JMX, which is where
+   * {@link MongoClientManager} reads them.
+   */
+  @NonNull
+  public MongoClientOptions toClientOptions() {
+    return MongoClientOptions.builder()
+        .minConnectionsPerHost(minConnectionsPerHost)
+        .connectionsPerHost(connectionsPerHost)
+        .threadsAllowedToBlockForConnectionMultiplier(threadsAllowedToBlockForConnectionMultiplier)
+        .maxWaitTime(maxWaitTimeMillis)
+        .connectTimeout(connectTimeoutMillis)
+        .socketTimeout(socketTimeoutMillis)
+        .serverSelectionTimeout(serverSelectionTimeoutMillis)
+        .maxConnectionIdleTime(maxConnectionIdleTimeMillis)
+        .maxConnectionLifeTime(maxConnectionLifeTimeMillis)
+        .build();
+  }
+
+  public int getMinConnectionsPerHost() {
+    return minConnectionsPerHost;
+  }
+
+  public void setMinConnectionsPerHost(int minConnectionsPerHost) {
+    this.minConnectionsPerHost = minConnectionsPerHost;
+  }
+
+  public int getConnectionsPerHost() {
+    return connectionsPerHost;
+  }
+
+  public void setConnectionsPerHost(int connectionsPerHost) {
+    this.connectionsPerHost = connectionsPerHost;
+  }
+
+  /**
+   * @return The number of threads that may wait for a connection, as a multiple of the connections per host
+   */
+  public int getThreadsAllowedToBlockForConnectionMultiplier() {
+    return threadsAllowedToBlockForConnectionMultiplier;
+  }
+
+  public void setThreadsAllowedToBlockForConnectionMultiplier(int threadsAllowedToBlockForConnectionMultiplier) {
+    this.threadsAllowedToBlockForConnectionMultiplier = threadsAllowedToBlockForConnectionMultiplier;
+  }
+
+  public int getMaxWaitTimeMillis() {
+    return maxWaitTimeMillis;
+  }
+
+  public void setMaxWaitTimeMillis(int maxWaitTimeMillis) {
+    this.maxWaitTimeMillis = maxWaitTimeMillis;
+  }
+
+  public int getConnectTimeoutMillis() {
+    return connectTimeoutMillis;
+  }
+
+  public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+    this.connectTimeoutMillis = connectTimeoutMillis;
+  }
+
+  public int getSocketTimeoutMillis() {
+    return socketTimeoutMillis;
+  }
+
+  public void setSocketTimeoutMillis(int socketTimeoutMillis) {
+    this.socketTimeoutMillis = socketTimeoutMillis;
+  }
+
+  public int getServerSelectionTimeoutMillis() {
+    return serverSelectionTimeoutMillis;
+  }
+
+  public void setServerSelectionTimeoutMillis(int serverSelectionTimeoutMillis) {
+    this.serverSelectionTimeoutMillis = serverSelectionTimeoutMillis;
+  }
+
+  public int getMaxConnectionIdleTimeMillis() {
+    return maxConnectionIdleTimeMillis;
+  }
+
+  public void setMaxConnectionIdleTimeMillis(int maxConnectionIdleTimeMillis) {
+    this.maxConnectionIdleTimeMillis = maxConnectionIdleTimeMillis;
+  }
+
+  public int getMaxConnectionLifeTimeMillis() {
+    return maxConnectionLifeTimeMillis;
+  }
+
+  public void setMaxConnectionLifeTimeMillis(int maxConnectionLifeTimeMillis) {
+    this.maxConnectionLifeTimeMillis = maxConnectionLifeTimeMillis;
+  }
+
+  /**
+   * @return The number of connections opened concurrently when the client starts, or 0 to open them on demand
+   */
+  public int getWarmUpConnections() {
+    return warmUpConnections;
+  }
+
+  public void setWarmUpConnections(int warmUpConnections) {
+    this.warmUpConnections = warmUpConnections;
+  }
+
+  /**
+   * @return The interval at which pool statistics are published to listeners
+   */
+  public long getStatisticsIntervalMillis() {
+    return statisticsIntervalMillis;
+  }
+
+  public void setStatisticsIntervalMillis(long statisticsIntervalMillis) {
+    this.statisticsIntervalMillis = statisticsIntervalMillis;
+  }
+
+  /**
+   * @return How long closing the client waits for the connections in use to be returned
+   */
+  public long getDrainTimeoutMillis() {
+    return drainTimeoutMillis;
+  }
+
+  public void setDrainTimeoutMillis(long drainTimeoutMillis) {
+    this.drainTimeoutMillis = drainTimeoutMillis;
+  }
+
+  private static int intProperty(Properties properties, String prefix, String name, int defaultValue) {
+    String value = properties.getProperty(prefix + name);
+    try {
+      return (value == null) ? defaultValue : Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid value of " + prefix + name + ": " + value);
+    }
+  }
+
+  private static long longProperty(Properties properties, String prefix, String name, long defaultValue) {
+    String value = properties.getProperty(prefix + name);
+    try {
+      return (value == null) ? defaultValue : Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid value of " + prefix + name + ": " + value);
+    }
+  }
+}
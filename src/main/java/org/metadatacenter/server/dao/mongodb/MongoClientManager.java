@@ -0,0 +1,226 @@
+package org.metadatacenter.server.dao.mongodb;
+
+import checkers.nullness.quals.NonNull;
+import com.mongodb.BasicDBObject;
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientOptions;
+import com.mongodb.ServerAddress;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Owns the MongoDB client shared by the DAOs and services of an application, from its creation to its shutdown. The
+ * client is created with the pool settings of a {@link MongoClientConfig} and warmed up by opening connections
+ * before the first request needs them. While it runs, the state of its connection pools is published to listeners at
+ * a fixed interval. Closing the manager waits for the connections in use to be returned, up to a timeout, before
+ * closing the client.
+ * <p>
+ * The pool statistics are read from the MBeans that the driver registers for each of its pools, since the driver does
+ * not offer pool listeners in its options.
+ */
+public class MongoClientManager implements Closeable {
+
+  private static final String POOL_MBEAN_PATTERN = "org.mongodb.driver:type=ConnectionPool,description=%s,*";
+  private static final long DRAIN_POLL_INTERVAL_MILLIS = 100;
+  private static final AtomicInteger clientCount = new AtomicInteger();
+
+  private enum State {NEW, RUNNING, CLOSED}
+
+  @NonNull
+  private final List<ServerAddress> serverAddresses;
+  @NonNull
+  private final MongoClientConfig config;
+  // Identifies the MBeans of the pools of this client among those of the other clients of the JVM
+  @NonNull
+  private final String description;
+  private final List<PoolStatisticsListener> listeners = new CopyOnWriteArrayList<>();
+  private volatile State state = State.NEW;
+  private volatile MongoClient mongoClient;
+  private ScheduledExecutorService statisticsScheduler;
+
+  public MongoClientManager(@NonNull ServerAddress serverAddress, @NonNull MongoClientConfig config) {
+    this(Collections.singletonList(serverAddress), config);
+  }
+
+  public MongoClientManager(@NonNull List<ServerAddress> serverAddresses, @NonNull MongoClientConfig config) {
+    if (serverAddresses.isEmpty()) {
+      throw new IllegalArgumentException("At least one server address is required");
+    }
+    this.serverAddresses = new ArrayList<>(serverAddresses);
+    this.config = config;
+    this.description = "cedar-client-" + clientCount.incrementAndGet();
+  }
+
+  /**
+   * Creates the client and opens the warm-up connections. Fails if the servers cannot be reached within the server
+   * selection timeout.
+   *
+   * @throws IllegalStateException If the manager has already been started
+   */
+  public synchronized void start() {
+    if (state != State.NEW) {
+      throw new IllegalStateException("The MongoDB client has already been started");
+    }
+    MongoClientOptions options = MongoClientOptions.builder(config.toClientOptions()).description(description).build();
+    MongoClient client = new MongoClient(serverAddresses, options);
+    try {
+      warmUp(client);
+    } catch (RuntimeException e) {
+      client.close();
+      state = State.CLOSED;
+      throw e;
+    }
+    mongoClient = client;
+    state = State.RUNNING;
+    if (config.getStatisticsIntervalMillis() > 0) {
+      statisticsScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, description + "-statistics");
+        thread.setDaemon(true);
+        return thread;
+      });
+      statisticsScheduler.scheduleAtFixedRate(this::publishStatistics, config.getStatisticsIntervalMillis(),
+          config.getStatisticsIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * @return The shared client
+   * @throws IllegalStateException If the manager is not running
+   */
+  @NonNull
+  public MongoClient getClient() {
+    MongoClient client = mongoClient;
+    if (state != State.RUNNING || client == null) {
+      throw new IllegalStateException("The MongoDB client is not running");
+    }
+    return client;
+  }
+
+  public boolean isRunning() {
+    return state == State.RUNNING;
+  }
+
+  public void addPoolStatisticsListener(@NonNull PoolStatisticsListener listener) {
+    listeners.add(listener);
+  }
+
+  public void removePoolStatisticsListener(@NonNull PoolStatisticsListener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * @return The current state of the connection pools of the client, one per server it is connected to
+   */
+  @NonNull
+  public List<PoolStatistics> getPoolStatistics() {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    List<PoolStatistics> statistics = new ArrayList<>();
+    try {
+      for (ObjectName name : server.queryNames(new ObjectName(String.format(POOL_MBEAN_PATTERN, description)), null)) {
+        statistics.add(new PoolStatistics((String) server.getAttribute(name, "Host"),
+            (Integer) server.getAttribute(name, "Port"), (Integer) server.getAttribute(name, "MinSize"),
+            (Integer) server.getAttribute(name, "MaxSize"), (Integer) server.getAttribute(name, "Size"),
+            (Integer) server.getAttribute(name, "CheckedOutCount"),
+            (Integer) server.getAttribute(name, "WaitQueueSize")));
+      }
+    } catch (JMException e) {
+      // A pool closed while it was read, which only happens when the client is closed or a server is removed
+    }
+    return statistics;
+  }
+
+  /**
+   * Stops handing out the client, waits for the connections in use to be returned to the pools, up to the drain
+   * timeout, and closes the client. Operations still running when the timeout expires fail.
+   */
+  @Override
+  public synchronized void close() {
+    if (state == State.CLOSED) {
+      return;
+    }
+    boolean started = state == State.RUNNING;
+    state = State.CLOSED;
+    if (statisticsScheduler != null) {
+      statisticsScheduler.shutdownNow();
+    }
+    if (started) {
+      awaitDrained();
+      mongoClient.close();
+      mongoClient = null;
+    }
+  }
+
+  private void warmUp(MongoClient client) {
+    int connections = Math.min(config.getWarmUpConnections(), config.getConnectionsPerHost());
+    if (connections <= 0) {
+      return;
+    }
+    // Concurrent commands make the pool open as many connections, which stay open for later requests
+    ExecutorService executor = Executors.newFixedThreadPool(connections);
+    try {
+      List<CompletableFuture<Void>> pings = new ArrayList<>(connections);
+      for (int i = 0; i < connections; i++) {
+        pings.add(CompletableFuture.runAsync(
+            () -> client.getDatabase("admin").runCommand(new BasicDBObject("ping", 1)), executor));
+      }
+      CompletableFuture.allOf(pings.toArray(new CompletableFuture<?>[pings.size()])).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while warming up the MongoDB client", e);
+    } catch (ExecutionException e) {
+      throw (e.getCause() instanceof RuntimeException) ? (RuntimeException) e.getCause() :
+          new IllegalStateException(e.getCause());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private void awaitDrained() {
+    long deadline = System.currentTimeMillis() + config.getDrainTimeoutMillis();
+    while (System.currentTimeMillis() < deadline && checkedOutCount() > 0) {
+      try {
+        Thread.sleep(DRAIN_POLL_INTERVAL_MILLIS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  private int checkedOutCount() {
+    int count = 0;
+    for (PoolStatistics statistics : getPoolStatistics()) {
+      count += statistics.getCheckedOutCount();
+    }
+    return count;
+  }
+
+  private void publishStatistics() {
+    if (listeners.isEmpty()) {
+      return;
+    }
+    List<PoolStatistics> statistics = Collections.unmodifiableList(getPoolStatistics());
+    for (PoolStatisticsListener listener : listeners) {
+      try {
+        listener.statisticsUpdated(statistics);
+      } catch (RuntimeException e) {
+        // A failing listener must not cancel the publication to the others, nor the next ones
+      }
+    }
+  }
+}
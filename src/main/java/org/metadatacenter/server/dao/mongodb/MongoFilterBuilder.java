@@ -0,0 +1,112 @@
+package org.metadatacenter.server.dao.mongodb;
+
+import checkers.nullness.quals.NonNull;
+import com.mongodb.client.model.Filters;
+import org.bson.BsonDocument;
+import org.bson.conversions.Bson;
+import org.metadatacenter.server.service.FieldFilter;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Translates {@link FieldFilter}s to MongoDB filters. Paths are mapped to the stored form of the keys (see
+ * {@link MongoKeyEscaper#escapePath(String)}), and the filters are combined with a logical AND.
+ * <p>
+ * Given the {@link LinkedDataIdMapper} of the collection, filters on the root "@id" match the IDs in any of the forms
+ * in which they can be stored, as lookups by ID do.
+ */
+public final class MongoFilterBuilder {
+
+  private MongoFilterBuilder() {
+  }
+
+  /**
+   * @param filters The filters, all of which must match
+   * @return The MongoDB filter, which matches all documents if there are no filters
+   */
+  @NonNull
+  public static Bson toBson(List<FieldFilter> filters) {
+    return toBson(filters, null);
+  }
+
+  /**
+   * @param filters            The filters, all of which must match
+   * @param linkedDataIdMapper The mapper of the linked data IDs of the collection, or null if they are stored as is
+   * @return The MongoDB filter, which matches all documents if there are no filters
+   * @throws IllegalArgumentException If a filter cannot be translated, e.g. a range on compact linked data IDs
+   */
+  @NonNull
+  public static Bson toBson(List<FieldFilter> filters, LinkedDataIdMapper linkedDataIdMapper) {
+    if (filters == null || filters.isEmpty()) {
+      return new BsonDocument();
+    }
+    List<Bson> conditions = new ArrayList<>(filters.size());
+    for (FieldFilter filter : filters) {
+      conditions.add(toBson(filter, linkedDataIdMapper));
+    }
+    return (conditions.size() == 1) ? conditions.get(0) : Filters.and(conditions);
+  }
+
+  @NonNull
+  private static Bson toBson(@NonNull FieldFilter filter, LinkedDataIdMapper linkedDataIdMapper) {
+    String path = MongoKeyEscaper.escapePath(filter.getPath());
+    boolean linkedDataId = linkedDataIdMapper != null && LinkedDataIdMapper.LINKED_DATA_ID.equals(path);
+    // Binary IDs do not compare with strings, so a range would silently miss them
+    if (linkedDataId && linkedDataIdMapper.isCompact() && !filter.isEquality()
+        && filter.getOperator() != FieldFilter.Operator.EXISTS) {
+      throw new IllegalArgumentException("Range filters on " + LinkedDataIdMapper.LINKED_DATA_ID
+          + " are not supported with compact linked data IDs");
+    }
+    switch (filter.getOperator()) {
+      case EQ:
+        if (linkedDataId && filter.getValue() instanceof String) {
+          return linkedDataIdMapper.filter((String) filter.getValue());
+        }
+        return Filters.eq(path, toStoredValue(filter.getValue()));
+      case IN:
+        List<Object> values = new ArrayList<>(filter.getValues().size());
+        for (Object value : filter.getValues()) {
+          if (linkedDataId && value instanceof String) {
+            values.addAll(linkedDataIdMapper.storedForms((String) value));
+          } else {
+            values.add(toStoredValue(value));
+          }
+        }
+        return Filters.in(path, values);
+      case GT:
+        return Filters.gt(path, toStoredValue(filter.getValue()));
+      case GTE:
+        return Filters.gte(path, toStoredValue(filter.getValue()));
+      case LT:
+        return Filters.lt(path, toStoredValue(filter.getValue()));
+      case LTE:
+        return Filters.lte(path, toStoredValue(filter.getValue()));
+      case EXISTS:
+        return Filters.exists(path, (Boolean) filter.getValue());
+      default:
+        throw new IllegalArgumentException("Unsupported filter operator: " + filter.getOperator());
+    }
+  }
+
+  /**
+   * Convert numbers to the types stored by {@link JsonNodeCodec}, so that they can be encoded and compared with the
+   * stored values
+   */
+  private static Object toStoredValue(Object value) {
+    if (value instanceof Byte || value instanceof Short) {
+      return ((Number) value).intValue();
+    } else if (value instanceof BigInteger) {
+      BigInteger integer = (BigInteger) value;
+      if (integer.bitLength() >= Long.SIZE) {
+        throw new IllegalArgumentException("Integer value out of the range supported by MongoDB: " + integer);
+      }
+      return integer.longValue();
+    } else if (value instanceof Number && !(value instanceof Integer) && !(value instanceof Long)
+        && !(value instanceof Double)) {
+      return ((Number) value).doubleValue();
+    }
+    return value;
+  }
+}
@@ -0,0 +1,197 @@
+package org.metadatacenter.server.dao.mongodb;
+
+import checkers.nullness.quals.NonNull;
+import com.mongodb.ErrorCategory;
+import com.mongodb.WriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.IndexOptions;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Manages the indexes of a collection. Indexes are created when the DAO is built; creating an index that already
+ * exists with the same keys and options is a no-op in MongoDB, so this is safe to do on every startup.
+ * <p>
+ * The definitions of the indexes are cached to plan queries without a round trip. The cache is refreshed when an
+ * index is created through this manager; indexes created by other means are only seen after {@link #refresh()}.
+ */
+public class MongoIndexManager {
+
+  @NonNull
+  private final MongoCollection<Document> collection;
+  private volatile List<Document> indexes;
+
+  public MongoIndexManager(@NonNull MongoCollection<Document> collection) {
+    this.collection = collection;
+  }
+
+  /**
+   * Ensure that an index exists
+   *
+   * @param keys    The keys of the index
+   * @param options The options of the index
+   * @return The name of the index
+   */
+  @NonNull
+  public String ensureIndex(@NonNull Bson keys, @NonNull IndexOptions options) {
+    String indexName = collection.createIndex(keys, options);
+    refresh();
+    return indexName;
+  }
+
+  /**
+   * Ensure that a unique ascending index exists on a field
+   *
+   * @param fieldName The indexed field
+   * @return The name of the index
+   * @throws com.mongodb.MongoCommandException If the collection already contains duplicated values for the field
+   */
+  @NonNull
+  public String ensureUniqueIndex(@NonNull String fieldName) {
+    return ensureIndex(new Document(fieldName, 1), new IndexOptions().unique(true));
+  }
+
+  /**
+   * @return The definitions of the indexes of the collection, as returned by listIndexes
+   */
+  @NonNull
+  public List<Document> getIndexes() {
+    List<Document> current = indexes;
+    if (current == null) {
+      current = Collections.unmodifiableList(collection.listIndexes().into(new ArrayList<>()));
+      indexes = current;
+    }
+    return current;
+  }
+
+  /**
+   * Discard the cached index definitions, e.g. after the indexes were changed by other means
+   */
+  public void refresh() {
+    indexes = null;
+  }
+
+  /**
+   * Find the index that serves a query best. An index can serve a query if the query constrains the first key of the
+   * index; each following key can be used as well as long as the previous ones are constrained to single values.
+   * Partial and sparse indexes, and indexes with special key types (e.g. text or geospatial) are not considered.
+   *
+   * @param equalityPaths The stored paths constrained to one or several values
+   * @param rangePaths    The stored paths constrained in any other way
+   * @return The name of the index that uses the most keys of the query, or null if no index can serve it
+   */
+  public String findIndexFor(@NonNull Collection<String> equalityPaths, @NonNull Collection<String> rangePaths) {
+    String bestName = null;
+    int bestScore = 0;
+    int bestSize = 0;
+    for (Document index : getIndexes()) {
+      if (index.containsKey("partialFilterExpression") || Boolean.TRUE.equals(index.get("sparse"))) {
+        continue;
+      }
+      Object keySpec = index.get("key");
+      if (!(keySpec instanceof Map) || !isPlainIndex((Map<?, ?>) keySpec)) {
+        continue;
+      }
+      Map<?, ?> keys = (Map<?, ?>) keySpec;
+      int score = 0;
+      for (Object key : keys.keySet()) {
+        if (equalityPaths.contains(key)) {
+          score++;
+        } else {
+          if (rangePaths.contains(key)) {
+            score++;
+          }
+          break;
+        }
+      }
+      if (score > bestScore || (score == bestScore && score > 0 && keys.size() < bestSize)) {
+        bestName = index.getString("name");
+        bestScore = score;
+        bestSize = keys.size();
+      }
+    }
+    return bestName;
+  }
+
+  /**
+   * Find an index that returns documents in a given order, so that the server does not have to sort them in memory.
+   * The sort keys must follow each other in the index, with the same directions or all of them reversed. They may be
+   * preceded or interleaved by index keys that the query constrains to a single value.
+   *
+   * @param singleValuePaths The stored paths constrained to a single value
+   * @param sortKeys         The stored paths to sort on, in order, with 1 for ascending and -1 for descending
+   * @return The name of an index that supports the order (any index if the order has no effect), or null if there is
+   * none
+   */
+  public String findIndexForSort(@NonNull Collection<String> singleValuePaths,
+                                 @NonNull Map<String, Integer> sortKeys) {
+    List<String> sortPaths = new ArrayList<>();
+    for (String path : sortKeys.keySet()) {
+      // Sorting on a field with a single value has no effect
+      if (!singleValuePaths.contains(path)) {
+        sortPaths.add(path);
+      }
+    }
+    for (Document index : getIndexes()) {
+      if (index.containsKey("partialFilterExpression") || Boolean.TRUE.equals(index.get("sparse"))) {
+        continue;
+      }
+      Object keySpec = index.get("key");
+      if (!(keySpec instanceof Map) || !isPlainIndex((Map<?, ?>) keySpec)) {
+        continue;
+      }
+      int matched = 0;
+      int orientation = 0;
+      for (Map.Entry<?, ?> key : ((Map<?, ?>) keySpec).entrySet()) {
+        if (matched == sortPaths.size()) {
+          break;
+        }
+        if (key.getKey().equals(sortPaths.get(matched))) {
+          int keyOrientation = Integer.signum(((Number) key.getValue()).intValue())
+              * Integer.signum(sortKeys.get(sortPaths.get(matched)));
+          if (orientation != 0 && orientation != keyOrientation) {
+            break;
+          }
+          orientation = keyOrientation;
+          matched++;
+        } else if (!singleValuePaths.contains(key.getKey())) {
+          break;
+        }
+      }
+      if (matched == sortPaths.size()) {
+        return index.getString("name");
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return True if all the keys of the index are ascending or descending
+   */
+  static boolean isPlainIndex(@NonNull Map<?, ?> keys) {
+    for (Object direction : keys.values()) {
+      if (!(direction instanceof Number)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Check if a write failed because it would have duplicated a key of a unique index
+   *
+   * @param error     The error reported by MongoDB
+   * @param indexName The name of the unique index
+   * @return True if the error is a duplicate key error on the given index
+   */
+  public static boolean isDuplicateKey(@NonNull WriteError error, @NonNull String indexName) {
+    return error.getCategory() == ErrorCategory.DUPLICATE_KEY && error.getMessage() != null
+        && error.getMessage().contains(indexName);
+  }
+}
@@ -0,0 +1,186 @@
+package org.metadatacenter.server.dao.mongodb;
+
+import checkers.nullness.quals.NonNull;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.metadatacenter.util.FixMongoDirection;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Per-key form of the key adaptation done by {@code JsonUtils.fixMongoDB}. MongoDB does not accept field names that
+ * start with '$' (e.g. "$schema" in JSON Schema documents), so they are stored with a '_' prefix ("_$schema") and
+ * restored when read back. Keys that already start with '_' followed by '$' ("_$schema", "__$x") get one more '_',
+ * so that every key is restored as it was written; {@code JsonUtils.fixMongoDB} leaves them as they are and reads
+ * "_$schema" back as "$schema". This is the only difference between the two.
+ * <p>
+ * Having the rule available for a single key lets the codecs apply it while the document is being decoded or
+ * encoded, instead of rewriting the whole tree in a separate pass.
+ * <p>
+ * For code that still works on whole trees, {@link #fixMongoDB(JsonNode, FixMongoDirection)} applies the rule to a
+ * tree without copying the parts that do not change.
+ */
+public final class MongoKeyEscaper {
+
+  private static final char RESERVED_PREFIX = '$';
+  private static final char ESCAPE_PREFIX = '_';
+  private static final char PATH_SEPARATOR = '.';
+  // The keys of JSON Schema and JSON-LD documents that start with '$', in both forms, so that the keys found in
+  // nearly every document are adapted without building a new string
+  private static final String[] RESERVED_KEYS = {"$schema", "$ref", "$id", "$comment"};
+  private static final Map<String, String> ESCAPED_KEYS = new HashMap<>();
+  private static final Map<String, String> UNESCAPED_KEYS = new HashMap<>();
+
+  static {
+    for (String key : RESERVED_KEYS) {
+      ESCAPED_KEYS.put(key, ESCAPE_PREFIX + key);
+      UNESCAPED_KEYS.put(ESCAPE_PREFIX + key, key);
+    }
+  }
+
+  private MongoKeyEscaper() {
+  }
+
+  /**
+   * Adapt a key so that it can be stored in MongoDB
+   *
+   * @param key A key as it appears in the JSON representation
+   * @return The key as stored in MongoDB
+   */
+  @NonNull
+  public static String escapeKey(@NonNull String key) {
+    if (key.length() > 0 && key.charAt(0) == RESERVED_PREFIX) {
+      String escaped = ESCAPED_KEYS.get(key);
+      return (escaped != null) ? escaped : ESCAPE_PREFIX + key;
+    }
+    if (key.length() > 1 && key.charAt(0) == ESCAPE_PREFIX && isEscapedForm(key)) {
+      return ESCAPE_PREFIX + key;
+    }
+    return key;
+  }
+
+  /**
+   * Adapt a dotted path (e.g. "properties.$schema") so that it refers to the stored document, by adapting each of its
+   * keys. Array positions and keys that need no adaptation are left as they are.
+   *
+   * @param path A path as it appears in the JSON representation
+   * @return The path as stored in MongoDB
+   */
+  @NonNull
+  public static String escapePath(@NonNull String path) {
+    if (path.indexOf(RESERVED_PREFIX) < 0) {
+      return path;
+    }
+    StringBuilder escaped = new StringBuilder(path.length() + 4);
+    int start = 0;
+    while (true) {
+      int end = path.indexOf(PATH_SEPARATOR, start);
+      escaped.append(escapeKey(path.substring(start, end < 0 ? path.length() : end)));
+      if (end < 0) {
+        return escaped.toString();
+      }
+      escaped.append(PATH_SEPARATOR);
+      start = end + 1;
+    }
+  }
+
+  /**
+   * Restore a key read from MongoDB
+   *
+   * @param key A key as stored in MongoDB
+   * @return The key as it appears in the JSON representation
+   */
+  @NonNull
+  public static String unescapeKey(@NonNull String key) {
+    if (key.length() > 1 && key.charAt(0) == ESCAPE_PREFIX && isEscapedForm(key)) {
+      String unescaped = UNESCAPED_KEYS.get(key);
+      return (unescaped != null) ? unescaped : key.substring(1);
+    }
+    return key;
+  }
+
+  /**
+   * @return True if the key is made of one or more '_' followed by '$', the form of an escaped key
+   */
+  private static boolean isEscapedForm(String key) {
+    int i = 0;
+    while (i < key.length() && key.charAt(i) == ESCAPE_PREFIX) {
+      i++;
+    }
+    return i > 0 && i < key.length() && key.charAt(i) == RESERVED_PREFIX;
+  }
+
+  /**
+   * Adapt all the keys of a tree, with the same result as {@code JsonUtils.fixMongoDB} apart from the keys that start
+   * with '_' followed by '$' (see the class description). The tree is not modified:
+   * when some keys change, only the objects and arrays on the way to them are copied and the rest is shared with the
+   * original tree; when no key changes, the tree itself is returned.
+   *
+   * @param node      A tree
+   * @param direction {@link FixMongoDirection#WRITE_TO_MONGO} to escape the keys, or
+   *                  {@link FixMongoDirection#READ_FROM_MONGO} to restore them
+   * @return The tree with adapted keys
+   */
+  @NonNull
+  public static JsonNode fixMongoDB(@NonNull JsonNode node, @NonNull FixMongoDirection direction) {
+    return fixKeys(node, direction == FixMongoDirection.WRITE_TO_MONGO);
+  }
+
+  private static JsonNode fixKeys(JsonNode node, boolean escape) {
+    if (node.isObject()) {
+      return fixObjectKeys((ObjectNode) node, escape);
+    } else if (node.isArray()) {
+      return fixArrayKeys((ArrayNode) node, escape);
+    }
+    return node;
+  }
+
+  private static JsonNode fixObjectKeys(ObjectNode node, boolean escape) {
+    ObjectNode copy = null;
+    int position = 0;
+    Iterator<Map.Entry<String, JsonNode>> it = node.fields();
+    while (it.hasNext()) {
+      Map.Entry<String, JsonNode> field = it.next();
+      String key = field.getKey();
+      String fixedKey = escape ? escapeKey(key) : unescapeKey(key);
+      JsonNode value = field.getValue();
+      JsonNode fixedValue = value.isContainerNode() ? fixKeys(value, escape) : value;
+      // The adapted key and value are the same instances when they do not change
+      if (copy == null && (fixedKey != key || fixedValue != value)) {
+        // First change: the fields before this one are unchanged and are shared with the original
+        copy = node.objectNode();
+        Iterator<Map.Entry<String, JsonNode>> previous = node.fields();
+        for (int i = 0; i < position; i++) {
+          Map.Entry<String, JsonNode> previousField = previous.next();
+          copy.set(previousField.getKey(), previousField.getValue());
+        }
+      }
+      if (copy != null) {
+        copy.set(fixedKey, fixedValue);
+      }
+      position++;
+    }
+    return (copy != null) ? copy : node;
+  }
+
+  private static JsonNode fixArrayKeys(ArrayNode node, boolean escape) {
+    ArrayNode copy = null;
+    for (int i = 0; i < node.size(); i++) {
+      JsonNode element = node.get(i);
+      JsonNode fixedElement = element.isContainerNode() ? fixKeys(element, escape) : element;
+      if (copy == null && fixedElement != element) {
+        copy = node.arrayNode();
+        for (int j = 0; j < i; j++) {
+          copy.add(node.get(j));
+        }
+      }
+      if (copy != null) {
+        copy.add(fixedElement);
+      }
+    }
+    return (copy != null) ? copy : node;
+  }
+}
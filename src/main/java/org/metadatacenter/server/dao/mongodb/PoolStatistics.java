@@ -0,0 +1,69 @@
+package org.metadatacenter.server.dao.mongodb;
+
+/**
+ * Snapshot of the connection pool of a MongoDB client to one server
+ */
+public class PoolStatistics {
+
+  private final String host;
+  private final int port;
+  private final int minSize;
+  private final int maxSize;
+  private final int size;
+  private final int checkedOutCount;
+  private final int waitQueueSize;
+
+  public PoolStatistics(String host, int port, int minSize, int maxSize, int size, int checkedOutCount, int
+      waitQueueSize) {
+    this.host = host;
+    this.port = port;
+    this.minSize = minSize;
+    this.maxSize = maxSize;
+    this.size = size;
+    this.checkedOutCount = checkedOutCount;
+    this.waitQueueSize = waitQueueSize;
+  }
+
+  public String getHost() {
+    return host;
+  }
+
+  public int getPort() {
+    return port;
+  }
+
+  public int getMinSize() {
+    return minSize;
+  }
+
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * @return The number of open connections, in use or idle
+   */
+  public int getSize() {
+    return size;
+  }
+
+  /**
+   * @return The number of connections in use
+   */
+  public int getCheckedOutCount() {
+    return checkedOutCount;
+  }
+
+  /**
+   * @return The number of threads waiting for a connection
+   */
+  public int getWaitQueueSize() {
+    return waitQueueSize;
+  }
+
+  @Override
+  public String toString() {
+    return host + ":" + port + " size=" + size + "/" + maxSize + " checkedOut=" + checkedOutCount + " waiting=" +
+        waitQueueSize;
+  }
+}
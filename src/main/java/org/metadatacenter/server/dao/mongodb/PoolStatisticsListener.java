@@ -0,0 +1,10 @@
+package org.metadatacenter.server.dao.mongodb;
+
+import checkers.nullness.quals.NonNull;
+
+import java.util.List;
+
+public interface PoolStatisticsListener {
+
+  void statisticsUpdated(@NonNull List<PoolStatistics> statistics);
+}
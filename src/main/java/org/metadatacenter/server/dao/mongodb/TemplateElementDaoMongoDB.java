@@ -1,6 +1,7 @@
 package org.metadatacenter.server.dao.mongodb;
 
 import checkers.nullness.quals.NonNull;
+import com.mongodb.MongoClient;
 
 public class TemplateElementDaoMongoDB extends GenericLDDaoMongoDB {
 
@@ -8,4 +9,9 @@ public class TemplateElementDaoMongoDB extends GenericLDDaoMongoDB {
       linkedDataIdBasePath) {
     super(dbName, collectionName, linkedDataIdBasePath);
   }
+
+  public TemplateElementDaoMongoDB(@NonNull MongoClient mongoClient, @NonNull String dbName, @NonNull String
+      collectionName, String linkedDataIdBasePath) {
+    super(mongoClient, dbName, collectionName, linkedDataIdBasePath);
+  }
 }
@@ -1,6 +1,7 @@
 package org.metadatacenter.server.dao.mongodb;
 
 import checkers.nullness.quals.NonNull;
+import com.mongodb.MongoClient;
 
 public class TemplateFieldDaoMongoDB extends GenericLDDaoMongoDB {
 
@@ -8,4 +9,9 @@ public class TemplateFieldDaoMongoDB extends GenericLDDaoMongoDB {
       linkedDataIdBasePath) {
     super(dbName, collectionName, linkedDataIdBasePath);
   }
+
+  public TemplateFieldDaoMongoDB(@NonNull MongoClient mongoClient, @NonNull String dbName, @NonNull String
+      collectionName, String linkedDataIdBasePath) {
+    super(mongoClient, dbName, collectionName, linkedDataIdBasePath);
+  }
 }
@@ -1,11 +1,77 @@
 package org.metadatacenter.server.dao.mongodb;
 
 import checkers.nullness.quals.NonNull;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mongodb.MongoClient;
+import com.mongodb.client.model.IndexOptions;
+import org.bson.Document;
+import org.metadatacenter.server.service.FieldNameInEx;
+import org.metadatacenter.server.service.Page;
+
+import java.io.IOException;
+import java.util.List;
+
+import static com.mongodb.client.model.Filters.eq;
 
 public class TemplateInstanceDaoMongoDB extends GenericLDDaoMongoDB {
 
+  /**
+   * The field of an instance that holds the linked data ID of its template
+   */
+  public static final String TEMPLATE_ID_FIELD = "_templateId";
+
   public TemplateInstanceDaoMongoDB(@NonNull String dbName, @NonNull String collectionName, String
       linkedDataIdBasePath) {
     super(dbName, collectionName, linkedDataIdBasePath);
   }
+
+  public TemplateInstanceDaoMongoDB(@NonNull MongoClient mongoClient, @NonNull String dbName, @NonNull String
+      collectionName, String linkedDataIdBasePath) {
+    super(mongoClient, dbName, collectionName, linkedDataIdBasePath);
+  }
+
+  /**
+   * Besides the indexes of every collection, instances are indexed by template. The index also includes the MongoDB
+   * _id, the key of keyset pagination, so that a page of the instances of a template is read from the index in
+   * order and the instances of a template are counted from the index alone.
+   */
+  @Override
+  protected void ensureIndexes() {
+    super.ensureIndexes();
+    indexManager.ensureIndex(new Document(TEMPLATE_ID_FIELD, 1).append("_id", 1), new IndexOptions());
+  }
+
+  /**
+   * Find a page of the instances of a template, using keyset pagination (see
+   * {@link #findPage(int, String, List, FieldNameInEx)})
+   *
+   * @param templateId        The linked data ID of the template
+   * @param limit             The maximum number of instances in the page
+   * @param continuationToken The token returned with the previous page, or null to get the first page
+   * @return A page of instances, with the token for the following page if there are more instances
+   * @throws IllegalArgumentException If the template ID, the limit or the continuation token are not valid
+   * @throws IOException              If an error occurs during retrieval
+   */
+  @NonNull
+  public Page<JsonNode> findByTemplate(@NonNull String templateId, int limit, String continuationToken,
+                                       List<String> fieldNames, FieldNameInEx includeExclude) throws IOException {
+    if ((templateId == null) || (templateId.length() == 0)) {
+      throw new IllegalArgumentException();
+    }
+    return findPage(eq(TEMPLATE_ID_FIELD, templateId), limit, continuationToken, fieldNames, includeExclude);
+  }
+
+  /**
+   * Count the instances of a template
+   *
+   * @param templateId The linked data ID of the template
+   * @return The number of instances of the template
+   * @throws IllegalArgumentException If the template ID is not valid
+   */
+  public long countByTemplate(@NonNull String templateId) {
+    if ((templateId == null) || (templateId.length() == 0)) {
+      throw new IllegalArgumentException();
+    }
+    return entityCollection.count(eq(TEMPLATE_ID_FIELD, templateId));
+  }
 }
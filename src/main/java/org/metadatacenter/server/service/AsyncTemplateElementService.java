@@ -0,0 +1,45 @@
+package org.metadatacenter.server.service;
+
+import checkers.nullness.quals.NonNull;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+public interface AsyncTemplateElementService<K, T> {
+
+  @NonNull
+  public CompletableFuture<T> createTemplateElement(@NonNull T templateElement);
+
+  @NonNull
+  public CompletableFuture<List<T>> findAllTemplateElements();
+
+  @NonNull
+  public CompletableFuture<List<T>> findAllTemplateElements(List<String> fieldNames, FieldNameInEx includeExclude);
+
+  @NonNull
+  public CompletableFuture<List<T>> findAllTemplateElements(Integer limit, Integer offset, List<String> fieldNames,
+      FieldNameInEx includeExclude);
+
+  @NonNull
+  public CompletableFuture<T> findTemplateElement(@NonNull K templateElementId);
+
+  @NonNull
+  public CompletableFuture<Map<K, T>> findTemplateElements(@NonNull Collection<K> templateElementIds);
+
+  @NonNull
+  public CompletableFuture<T> updateTemplateElement(@NonNull K templateElementId, @NonNull T modifications);
+
+  @NonNull
+  public CompletableFuture<Void> deleteTemplateElement(@NonNull K templateElementId);
+
+  @NonNull
+  public CompletableFuture<Boolean> existsTemplateElement(@NonNull K templateElementId);
+
+  @NonNull
+  public CompletableFuture<Void> deleteAllTemplateElements();
+
+  @NonNull
+  public CompletableFuture<Long> count();
+}
@@ -0,0 +1,27 @@
+package org.metadatacenter.server.service;
+
+import checkers.nullness.quals.NonNull;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+public interface AsyncTemplateFieldService<K, T> {
+
+  @NonNull
+  public CompletableFuture<List<T>> findAllTemplateFields(Integer limit, Integer offset, List<String> fieldNames,
+      FieldNameInEx includeExclude);
+
+  @NonNull
+  public CompletableFuture<T> findTemplateField(@NonNull K templateFieldId);
+
+  @NonNull
+  public CompletableFuture<Map<K, T>> findTemplateFields(@NonNull Collection<K> templateFieldIds);
+
+  @NonNull
+  public CompletableFuture<Long> count();
+
+  @NonNull
+  public CompletableFuture<Void> saveNewFieldsAndReplaceIds(T genericInstance);
+}
@@ -0,0 +1,34 @@
+package org.metadatacenter.server.service;
+
+import checkers.nullness.quals.NonNull;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public interface AsyncTemplateInstanceService<K, T> {
+
+  @NonNull
+  public CompletableFuture<T> createTemplateInstance(@NonNull T templateInstance);
+
+  @NonNull
+  public CompletableFuture<List<T>> findAllTemplateInstances();
+
+  @NonNull
+  public CompletableFuture<List<T>> findAllTemplateInstances(List<String> fieldNames, FieldNameInEx includeExclude);
+
+  @NonNull
+  public CompletableFuture<List<T>> findAllTemplateInstances(Integer limit, Integer offset, List<String> fieldNames,
+      FieldNameInEx includeExclude);
+
+  @NonNull
+  public CompletableFuture<T> findTemplateInstance(@NonNull K templateInstanceId);
+
+  @NonNull
+  public CompletableFuture<T> updateTemplateInstance(@NonNull K templateInstanceId, @NonNull T modifications);
+
+  @NonNull
+  public CompletableFuture<Void> deleteTemplateInstance(@NonNull K templateInstanceId);
+
+  @NonNull
+  public CompletableFuture<Long> count();
+}
@@ -0,0 +1,40 @@
+package org.metadatacenter.server.service;
+
+import checkers.nullness.quals.NonNull;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public interface AsyncTemplateService<K, T> {
+
+  @NonNull
+  public CompletableFuture<T> createTemplate(@NonNull T template);
+
+  @NonNull
+  public CompletableFuture<List<T>> findAllTemplates();
+
+  @NonNull
+  public CompletableFuture<List<T>> findAllTemplates(List<String> fieldNames, FieldNameInEx includeExclude);
+
+  @NonNull
+  public CompletableFuture<List<T>> findAllTemplates(Integer limit, Integer offset, List<String> fieldNames,
+      FieldNameInEx includeExclude);
+
+  @NonNull
+  public CompletableFuture<T> findTemplate(@NonNull K templateId);
+
+  @NonNull
+  public CompletableFuture<T> updateTemplate(@NonNull K templateId, @NonNull T modifications);
+
+  @NonNull
+  public CompletableFuture<Void> deleteTemplate(@NonNull K templateId);
+
+  @NonNull
+  public CompletableFuture<Boolean> existsTemplate(@NonNull K templateId);
+
+  @NonNull
+  public CompletableFuture<Void> deleteAllTemplates();
+
+  @NonNull
+  public CompletableFuture<Long> count();
+}
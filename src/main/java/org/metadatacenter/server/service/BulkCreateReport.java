@@ -0,0 +1,54 @@
+package org.metadatacenter.server.service;
+
+import checkers.nullness.quals.NonNull;
+
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Outcome of a bulk creation. Created elements and failures are both keyed by the position of the element in the
+ * list that was submitted.
+ */
+public class BulkCreateReport<T> {
+
+  /**
+   * Failure of the elements that follow a failure in an ordered bulk creation
+   */
+  public static final String NOT_ATTEMPTED = "Not attempted because of a previous failure";
+
+  @NonNull
+  private final SortedMap<Integer, T> created = new TreeMap<>();
+  @NonNull
+  private final SortedMap<Integer, String> failures = new TreeMap<>();
+
+  public void addCreated(int index, @NonNull T element) {
+    created.put(index, element);
+  }
+
+  public void addFailure(int index, @NonNull String message) {
+    failures.put(index, message);
+  }
+
+  @NonNull
+  public SortedMap<Integer, T> getCreated() {
+    return Collections.unmodifiableSortedMap(created);
+  }
+
+  @NonNull
+  public SortedMap<Integer, String> getFailures() {
+    return Collections.unmodifiableSortedMap(failures);
+  }
+
+  public int getCreatedCount() {
+    return created.size();
+  }
+
+  public int getFailedCount() {
+    return failures.size();
+  }
+
+  public boolean isSuccess() {
+    return failures.isEmpty();
+  }
+}
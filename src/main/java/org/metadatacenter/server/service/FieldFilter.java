@@ -0,0 +1,139 @@
+package org.metadatacenter.server.service;
+
+import checkers.nullness.quals.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A condition on a field of the stored documents. Fields are referred to by their path in the JSON representation,
+ * using dots to reach into nested objects (e.g. "properties.title"). Values are restricted to JSON scalars, so that a
+ * filter built from request parameters can never carry query operators of its own.
+ */
+public class FieldFilter {
+
+  public enum Operator {
+    EQ, IN, GT, GTE, LT, LTE, EXISTS
+  }
+
+  @NonNull
+  private final String path;
+  @NonNull
+  private final Operator operator;
+  private final Object value;
+  @NonNull
+  private final List<Object> values;
+
+  private FieldFilter(@NonNull String path, @NonNull Operator operator, Object value, @NonNull List<Object> values) {
+    if ((path == null) || (path.length() == 0) || path.startsWith(".") || path.endsWith(".") || path.contains("..")) {
+      throw new IllegalArgumentException("Invalid field path: " + path);
+    }
+    this.path = path;
+    this.operator = operator;
+    this.value = value;
+    this.values = values;
+  }
+
+  /**
+   * The field is equal to the value. A null value also matches documents without the field.
+   */
+  @NonNull
+  public static FieldFilter eq(@NonNull String path, Object value) {
+    return new FieldFilter(path, Operator.EQ, checkValue(value), Collections.emptyList());
+  }
+
+  /**
+   * The field is equal to one of the values
+   */
+  @NonNull
+  public static FieldFilter in(@NonNull String path, @NonNull Collection<?> values) {
+    List<Object> checked = new ArrayList<>(values.size());
+    for (Object value : values) {
+      checked.add(checkValue(value));
+    }
+    return new FieldFilter(path, Operator.IN, null, Collections.unmodifiableList(checked));
+  }
+
+  @NonNull
+  public static FieldFilter gt(@NonNull String path, @NonNull Object value) {
+    return new FieldFilter(path, Operator.GT, checkBound(value), Collections.emptyList());
+  }
+
+  @NonNull
+  public static FieldFilter gte(@NonNull String path, @NonNull Object value) {
+    return new FieldFilter(path, Operator.GTE, checkBound(value), Collections.emptyList());
+  }
+
+  @NonNull
+  public static FieldFilter lt(@NonNull String path, @NonNull Object value) {
+    return new FieldFilter(path, Operator.LT, checkBound(value), Collections.emptyList());
+  }
+
+  @NonNull
+  public static FieldFilter lte(@NonNull String path, @NonNull Object value) {
+    return new FieldFilter(path, Operator.LTE, checkBound(value), Collections.emptyList());
+  }
+
+  /**
+   * The field is present (with any value, including null) or absent
+   */
+  @NonNull
+  public static FieldFilter exists(@NonNull String path, boolean exists) {
+    return new FieldFilter(path, Operator.EXISTS, exists, Collections.emptyList());
+  }
+
+  private static Object checkValue(Object value) {
+    if ((value != null) && !(value instanceof String) && !(value instanceof Number) && !(value instanceof Boolean)) {
+      throw new IllegalArgumentException("Filter values must be strings, numbers, booleans or null");
+    }
+    return value;
+  }
+
+  private static Object checkBound(Object value) {
+    if (value == null) {
+      throw new IllegalArgumentException("Range bounds must not be null");
+    }
+    return checkValue(value);
+  }
+
+  @NonNull
+  public String getPath() {
+    return path;
+  }
+
+  @NonNull
+  public Operator getOperator() {
+    return operator;
+  }
+
+  /**
+   * @return The value compared with the field, or the expected presence of the field for EXISTS filters. Not used by
+   * IN filters.
+   */
+  public Object getValue() {
+    return value;
+  }
+
+  /**
+   * @return The values of an IN filter
+   */
+  @NonNull
+  public List<Object> getValues() {
+    return values;
+  }
+
+  /**
+   * @return True if the filter selects a single value of the field, which lets the following keys of a compound index
+   * be used as well
+   */
+  public boolean isEquality() {
+    return operator == Operator.EQ || operator == Operator.IN;
+  }
+
+  @Override
+  public String toString() {
+    return path + " " + operator + " " + (operator == Operator.IN ? values : value);
+  }
+}
@@ -0,0 +1,34 @@
+package org.metadatacenter.server.service;
+
+import checkers.nullness.quals.NonNull;
+
+import java.util.List;
+
+/**
+ * A page of results from a keyset paginated query. The continuation token is opaque to callers: it is passed back
+ * as is to fetch the following page, and is null when there are no more results.
+ */
+public class Page<T> {
+
+  @NonNull
+  private final List<T> items;
+  private final String continuationToken;
+
+  public Page(@NonNull List<T> items, String continuationToken) {
+    this.items = items;
+    this.continuationToken = continuationToken;
+  }
+
+  @NonNull
+  public List<T> getItems() {
+    return items;
+  }
+
+  public String getContinuationToken() {
+    return continuationToken;
+  }
+
+  public boolean hasMore() {
+    return continuationToken != null;
+  }
+}
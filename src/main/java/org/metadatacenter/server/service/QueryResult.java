@@ -0,0 +1,37 @@
+package org.metadatacenter.server.service;
+
+import checkers.nullness.quals.NonNull;
+
+import java.util.List;
+
+/**
+ * The results of a filtered query, together with the index expected to serve it. A query without an index has to
+ * scan the whole collection, which is acceptable for small collections but is worth reporting for large ones.
+ */
+public class QueryResult<T> {
+
+  @NonNull
+  private final List<T> items;
+  private final String indexName;
+
+  public QueryResult(@NonNull List<T> items, String indexName) {
+    this.items = items;
+    this.indexName = indexName;
+  }
+
+  @NonNull
+  public List<T> getItems() {
+    return items;
+  }
+
+  /**
+   * @return The name of the index expected to serve the query, or null if the query scans the collection
+   */
+  public String getIndexName() {
+    return indexName;
+  }
+
+  public boolean isIndexed() {
+    return indexName != null;
+  }
+}
@@ -0,0 +1,69 @@
+package org.metadatacenter.server.service;
+
+import checkers.nullness.quals.NonNull;
+
+/**
+ * The sort order on a field of the stored documents, referred to by its path in the JSON representation (e.g.
+ * "properties.title"). Sorting is done by the database, and only on fields that an index can return in order.
+ */
+public class SortSpec {
+
+  public enum Direction {
+    ASCENDING, DESCENDING
+  }
+
+  private static final char DESCENDING_PREFIX = '-';
+
+  @NonNull
+  private final String path;
+  @NonNull
+  private final Direction direction;
+
+  public SortSpec(@NonNull String path, @NonNull Direction direction) {
+    if ((path == null) || (path.length() == 0) || path.startsWith(".") || path.endsWith(".") || path.contains("..")) {
+      throw new IllegalArgumentException("Invalid field path: " + path);
+    }
+    if (direction == null) {
+      throw new IllegalArgumentException("The sort direction must not be null");
+    }
+    this.path = path;
+    this.direction = direction;
+  }
+
+  @NonNull
+  public static SortSpec ascending(@NonNull String path) {
+    return new SortSpec(path, Direction.ASCENDING);
+  }
+
+  @NonNull
+  public static SortSpec descending(@NonNull String path) {
+    return new SortSpec(path, Direction.DESCENDING);
+  }
+
+  /**
+   * Parse a sort specification in the usual query parameter form, i.e. the path of the field for an ascending sort
+   * or the path preceded by '-' for a descending one (e.g. "-properties.title")
+   */
+  @NonNull
+  public static SortSpec parse(@NonNull String spec) {
+    if (spec != null && spec.length() > 0 && spec.charAt(0) == DESCENDING_PREFIX) {
+      return descending(spec.substring(1));
+    }
+    return ascending(spec);
+  }
+
+  @NonNull
+  public String getPath() {
+    return path;
+  }
+
+  @NonNull
+  public Direction getDirection() {
+    return direction;
+  }
+
+  @Override
+  public String toString() {
+    return (direction == Direction.DESCENDING) ? DESCENDING_PREFIX + path : path;
+  }
+}
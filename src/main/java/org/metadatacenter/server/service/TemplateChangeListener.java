@@ -0,0 +1,13 @@
+package org.metadatacenter.server.service;
+
+import checkers.nullness.quals.NonNull;
+
+/**
+ * Notified when templates are modified or deleted, so that what was derived from them can be discarded
+ */
+public interface TemplateChangeListener<K> {
+
+  void templateChanged(@NonNull K templateId);
+
+  void allTemplatesChanged();
+}
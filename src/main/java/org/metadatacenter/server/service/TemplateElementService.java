@@ -5,13 +5,19 @@ import com.github.fge.jsonschema.core.exceptions.ProcessingException;
 
 import javax.management.InstanceNotFoundException;
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 public interface TemplateElementService<K, T> {
 
   @NonNull
   public T createTemplateElement(@NonNull T templateElement) throws IOException;
 
+  @NonNull
+  public BulkCreateReport<T> createAllTemplateElements(@NonNull List<T> templateElements) throws IOException;
+
   @NonNull
   public List<T> findAllTemplateElements() throws IOException;
 
@@ -22,8 +28,29 @@ public interface TemplateElementService<K, T> {
   public List<T> findAllTemplateElements(Integer limit, Integer offset, List<String> fieldName, FieldNameInEx
       includeExclude) throws IOException;
 
+  @NonNull
+  public List<T> findAllTemplateElements(Integer limit, Integer offset, List<SortSpec> sort, List<String> fieldName,
+      FieldNameInEx includeExclude) throws IOException;
+
+  @NonNull
+  public Stream<T> streamAllTemplateElements();
+
+  @NonNull
+  public Stream<T> streamAllTemplateElements(List<String> fieldName, FieldNameInEx includeExclude);
+
+  @NonNull
+  public Stream<T> streamAllTemplateElements(Integer limit, Integer offset, List<String> fieldName, FieldNameInEx
+      includeExclude);
+
+  @NonNull
+  public Page<T> findTemplateElementsPage(int limit, String continuationToken, List<String> fieldNames, FieldNameInEx
+      includeExclude) throws IOException;
+
   public T findTemplateElement(@NonNull K templateElementId) throws IOException, ProcessingException;
 
+  @NonNull
+  public Map<K, T> findTemplateElements(@NonNull Collection<K> templateElementIds) throws IOException;
+
   @NonNull
   public T updateTemplateElement(@NonNull K templateElementId, @NonNull T modifications) throws
       InstanceNotFoundException, IOException;
@@ -5,7 +5,10 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.github.fge.jsonschema.core.exceptions.ProcessingException;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 public interface TemplateFieldService<K, T> {
 
@@ -13,8 +16,23 @@ public interface TemplateFieldService<K, T> {
   public List<T> findAllTemplateFields(Integer limit, Integer offset, List<String> fieldName, FieldNameInEx
       includeExclude) throws IOException;
 
+  @NonNull
+  public List<T> findAllTemplateFields(Integer limit, Integer offset, List<SortSpec> sort, List<String> fieldName,
+      FieldNameInEx includeExclude) throws IOException;
+
+  @NonNull
+  public Stream<T> streamAllTemplateFields(Integer limit, Integer offset, List<String> fieldName, FieldNameInEx
+      includeExclude);
+
+  @NonNull
+  public Page<T> findTemplateFieldsPage(int limit, String continuationToken, List<String> fieldNames, FieldNameInEx
+      includeExclude) throws IOException;
+
   public T findTemplateField(@NonNull String templateFieldId) throws IOException, ProcessingException;
 
+  @NonNull
+  public Map<K, T> findTemplateFields(@NonNull Collection<K> templateFieldIds) throws IOException;
+
   public long count();
 
   public void saveNewFieldsAndReplaceIds(T genericInstance) throws IOException;
@@ -5,12 +5,16 @@ import checkers.nullness.quals.NonNull;
 import javax.management.InstanceNotFoundException;
 import java.io.IOException;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface TemplateInstanceService<K, T> {
 
   @NonNull
   public T createTemplateInstance(@NonNull T templateInstance) throws IOException;
 
+  @NonNull
+  public BulkCreateReport<T> createAllTemplateInstances(@NonNull List<T> templateInstances) throws IOException;
+
   @NonNull
   public List<T> findAllTemplateInstances() throws IOException;
 
@@ -21,8 +25,32 @@ public interface TemplateInstanceService<K, T> {
   public List<T> findAllTemplateInstances(Integer limit, Integer offset, List<String> fieldNames, FieldNameInEx
       includeExclude) throws IOException;
 
+  @NonNull
+  public List<T> findAllTemplateInstances(Integer limit, Integer offset, List<SortSpec> sort, List<String> fieldNames,
+      FieldNameInEx includeExclude) throws IOException;
+
+  @NonNull
+  public Stream<T> streamAllTemplateInstances();
+
+  @NonNull
+  public Stream<T> streamAllTemplateInstances(List<String> fieldNames, FieldNameInEx includeExclude);
+
+  @NonNull
+  public Stream<T> streamAllTemplateInstances(Integer limit, Integer offset, List<String> fieldNames, FieldNameInEx
+      includeExclude);
+
+  @NonNull
+  public Page<T> findTemplateInstancesPage(int limit, String continuationToken, List<String> fieldNames, FieldNameInEx
+      includeExclude) throws IOException;
+
   public T findTemplateInstance(@NonNull K templateInstanceId) throws IOException;
 
+  @NonNull
+  public Page<T> findInstancesByTemplate(@NonNull K templateId, int limit, String continuationToken, List<String>
+      fieldNames, FieldNameInEx includeExclude) throws IOException;
+
+  public long countInstancesByTemplate(@NonNull K templateId);
+
   @NonNull
   public T updateTemplateInstance(@NonNull K templateInstanceId, @NonNull T modifications) throws
       InstanceNotFoundException, IOException;
@@ -6,12 +6,16 @@ import com.github.fge.jsonschema.core.exceptions.ProcessingException;
 import javax.management.InstanceNotFoundException;
 import java.io.IOException;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface TemplateService<K, T> {
 
   @NonNull
   public T createTemplate(@NonNull T template) throws IOException;
 
+  @NonNull
+  public BulkCreateReport<T> createAllTemplates(@NonNull List<T> templates) throws IOException;
+
   @NonNull
   public List<T> findAllTemplates() throws IOException;
 
@@ -22,6 +26,24 @@ public interface TemplateService<K, T> {
   public List<T> findAllTemplates(Integer limit, Integer offset, List<String> fieldNames, FieldNameInEx
       includeExclude) throws IOException;
 
+  @NonNull
+  public List<T> findAllTemplates(Integer limit, Integer offset, List<SortSpec> sort, List<String> fieldNames,
+      FieldNameInEx includeExclude) throws IOException;
+
+  @NonNull
+  public Stream<T> streamAllTemplates();
+
+  @NonNull
+  public Stream<T> streamAllTemplates(List<String> fieldNames, FieldNameInEx includeExclude);
+
+  @NonNull
+  public Stream<T> streamAllTemplates(Integer limit, Integer offset, List<String> fieldNames, FieldNameInEx
+      includeExclude);
+
+  @NonNull
+  public Page<T> findTemplatesPage(int limit, String continuationToken, List<String> fieldNames, FieldNameInEx
+      includeExclude) throws IOException;
+
   public T findTemplate(@NonNull K templateId) throws IOException, ProcessingException;
 
   @NonNull
@@ -36,4 +58,11 @@ public interface TemplateService<K, T> {
   public void deleteAllTemplates();
 
   public long count();
+
+  /**
+   * Register a listener notified after each update or deletion of templates through this service
+   */
+  public void addTemplateChangeListener(@NonNull TemplateChangeListener<K> listener);
+
+  public void removeTemplateChangeListener(@NonNull TemplateChangeListener<K> listener);
 }
@@ -0,0 +1,95 @@
+package org.metadatacenter.server.service.mongodb;
+
+import checkers.nullness.quals.NonNull;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mongodb.async.client.MongoClient;
+import org.metadatacenter.server.dao.mongodb.AsyncGenericLDDaoMongoDB;
+import org.metadatacenter.server.service.AsyncTemplateElementService;
+import org.metadatacenter.server.service.FieldNameInEx;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+public class AsyncTemplateElementServiceMongoDB extends GenericTemplateServiceMongoDB<String, JsonNode> implements
+    AsyncTemplateElementService<String, JsonNode> {
+
+  @NonNull
+  private final AsyncGenericLDDaoMongoDB templateElementDao;
+
+  public AsyncTemplateElementServiceMongoDB(@NonNull MongoClient mongoClient, @NonNull String db,
+                                            @NonNull String templateElementsCollection, String linkedDataIdBasePath) {
+    this.templateElementDao = new AsyncGenericLDDaoMongoDB(mongoClient, db, templateElementsCollection,
+        linkedDataIdBasePath);
+  }
+
+  @Override
+  @NonNull
+  public CompletableFuture<JsonNode> createTemplateElement(@NonNull JsonNode templateElement) {
+    return templateElementDao.create(templateElement);
+  }
+
+  @Override
+  @NonNull
+  public CompletableFuture<List<JsonNode>> findAllTemplateElements() {
+    return templateElementDao.findAll();
+  }
+
+  @Override
+  @NonNull
+  public CompletableFuture<List<JsonNode>> findAllTemplateElements(List<String> fieldNames,
+      FieldNameInEx includeExclude) {
+    return templateElementDao.findAll(fieldNames, includeExclude);
+  }
+
+  @Override
+  @NonNull
+  public CompletableFuture<List<JsonNode>> findAllTemplateElements(Integer limit, Integer offset, List<String>
+      fieldNames, FieldNameInEx includeExclude) {
+    return templateElementDao.findAll(limit, offset, fieldNames, includeExclude);
+  }
+
+  @Override
+  @NonNull
+  public CompletableFuture<JsonNode> findTemplateElement(@NonNull String templateElementId) {
+    return templateElementDao.find(templateElementId);
+  }
+
+  @Override
+  @NonNull
+  public CompletableFuture<Map<String, JsonNode>> findTemplateElements(@NonNull Collection<String> templateElementIds) {
+    return templateElementDao.findByIds(templateElementIds);
+  }
+
+  @Override
+  @NonNull
+  public CompletableFuture<JsonNode> updateTemplateElement(@NonNull String templateElementId,
+      @NonNull JsonNode modifications) {
+    return templateElementDao.update(templateElementId, modifications);
+  }
+
+  @Override
+  @NonNull
+  public CompletableFuture<Void> deleteTemplateElement(@NonNull String templateElementId) {
+    return templateElementDao.delete(templateElementId);
+  }
+
+  @Override
+  @NonNull
+  public CompletableFuture<Boolean> existsTemplateElement(@NonNull String templateElementId) {
+    return templateElementDao.exists(templateElementId);
+  }
+
+  @Override
+  @NonNull
+  public CompletableFuture<Void> deleteAllTemplateElements() {
+    return templateElementDao.deleteAll();
+  }
+
+  @Override
+  @NonNull
+  public CompletableFuture<Long> count() {
+    return templateElementDao.count();
+  }
+}
@@ -0,0 +1,85 @@
+package org.metadatacenter.server.service.mongodb;
+
+import checkers.nullness.quals.NonNull;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mongodb.async.client.MongoClient;
+import org.metadatacenter.constant.CedarConstants;
+import org.metadatacenter.server.dao.mongodb.AsyncGenericLDDaoMongoDB;
+import org.metadatacenter.server.service.AsyncTemplateFieldService;
+import org.metadatacenter.server.service.FieldNameInEx;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+public class AsyncTemplateFieldServiceMongoDB extends GenericTemplateServiceMongoDB<String, JsonNode> implements
+    AsyncTemplateFieldService<String, JsonNode> {
+
+  @NonNull
+  private final AsyncGenericLDDaoMongoDB templateFieldDao;
+
+  public AsyncTemplateFieldServiceMongoDB(@NonNull MongoClient mongoClient, @NonNull String db,
+                                          @NonNull String templateFieldsCollection, String linkedDataIdBasePath) {
+    this.templateFieldDao = new AsyncGenericLDDaoMongoDB(mongoClient, db, templateFieldsCollection,
+        linkedDataIdBasePath);
+  }
+
+  @Override
+  @NonNull
+  public CompletableFuture<List<JsonNode>> findAllTemplateFields(Integer limit, Integer offset, List<String>
+      fieldNames, FieldNameInEx includeExclude) {
+    return templateFieldDao.findAll(limit, offset, fieldNames, includeExclude);
+  }
+
+  @Override
+  @NonNull
+  public CompletableFuture<JsonNode> findTemplateField(@NonNull String templateFieldId) {
+    return templateFieldDao.find(templateFieldId);
+  }
+
+  @Override
+  @NonNull
+  public CompletableFuture<Map<String, JsonNode>> findTemplateFields(@NonNull Collection<String> templateFieldIds) {
+    return templateFieldDao.findByIds(templateFieldIds);
+  }
+
+  @Override
+  @NonNull
+  public CompletableFuture<Long> count() {
+    return templateFieldDao.count();
+  }
+
+  /**
+   * Same as {@link TemplateFieldServiceMongoDB#saveNewFieldsAndReplaceIds(JsonNode)}, but the new fields are created
+   * concurrently
+   */
+  @Override
+  @NonNull
+  public CompletableFuture<Void> saveNewFieldsAndReplaceIds(JsonNode genericInstance) {
+    List<CompletableFuture<JsonNode>> creations = new ArrayList<>();
+    JsonNode properties = genericInstance.get("properties");
+    if (properties != null) {
+      Iterator<Map.Entry<String, JsonNode>> it = properties.fields();
+      while (it.hasNext()) {
+        Map.Entry<String, JsonNode> entry = it.next();
+        JsonNode fieldCandidate = entry.getValue();
+        // If the entry is an object
+        if (fieldCandidate.isObject()) {
+          if (fieldCandidate.get("@id") != null) {
+            String id = fieldCandidate.get("@id").asText();
+            if (id != null && id.indexOf(CedarConstants.TEMP_ID_PREFIX) == 0) {
+              ((ObjectNode) fieldCandidate).remove("@id");
+              creations.add(templateFieldDao.create(fieldCandidate));
+            }
+          }
+        }
+      }
+    }
+    return CompletableFuture.allOf(creations.toArray(new CompletableFuture<?>[creations.size()]));
+  }
+
+}
@@ -0,0 +1,75 @@
+package org.metadatacenter.server.service.mongodb;
+
+import checkers.nullness.quals.NonNull;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mongodb.async.client.MongoClient;
+import org.metadatacenter.server.dao.mongodb.AsyncGenericLDDaoMongoDB;
+import org.metadatacenter.server.service.AsyncTemplateInstanceService;
+import org.metadatacenter.server.service.FieldNameInEx;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class AsyncTemplateInstanceServiceMongoDB extends GenericTemplateServiceMongoDB<String, JsonNode> implements
+    AsyncTemplateInstanceService<String, JsonNode> {
+
+  @NonNull
+  private final AsyncGenericLDDaoMongoDB templateInstanceDao;
+
+  public AsyncTemplateInstanceServiceMongoDB(@NonNull MongoClient mongoClient, @NonNull String db,
+                                             @NonNull String templateInstancesCollection, String linkedDataIdBasePath) {
+    this.templateInstanceDao = new AsyncGenericLDDaoMongoDB(mongoClient, db, templateInstancesCollection,
+        linkedDataIdBasePath);
+  }
+
+  @Override
+  @NonNull
+  public CompletableFuture<JsonNode> createTemplateInstance(@NonNull JsonNode templateInstance) {
+    return templateInstanceDao.create(templateInstance);
+  }
+
+  @Override
+  @NonNull
+  public CompletableFuture<List<JsonNode>> findAllTemplateInstances() {
+    return templateInstanceDao.findAll();
+  }
+
+  @Override
+  @NonNull
+  public CompletableFuture<List<JsonNode>> findAllTemplateInstances(List<String> fieldNames,
+      FieldNameInEx includeExclude) {
+    return templateInstanceDao.findAll(fieldNames, includeExclude);
+  }
+
+  @Override
+  @NonNull
+  public CompletableFuture<List<JsonNode>> findAllTemplateInstances(Integer limit, Integer offset, List<String>
+      fieldNames, FieldNameInEx includeExclude) {
+    return templateInstanceDao.findAll(limit, offset, fieldNames, includeExclude);
+  }
+
+  @Override
+  @NonNull
+  public CompletableFuture<JsonNode> findTemplateInstance(@NonNull String templateInstanceId) {
+    return templateInstanceDao.find(templateInstanceId);
+  }
+
+  @Override
+  @NonNull
+  public CompletableFuture<JsonNode> updateTemplateInstance(@NonNull String templateInstanceId,
+      @NonNull JsonNode modifications) {
+    return templateInstanceDao.update(templateInstanceId, modifications);
+  }
+
+  @Override
+  @NonNull
+  public CompletableFuture<Void> deleteTemplateInstance(@NonNull String templateInstanceId) {
+    return templateInstanceDao.delete(templateInstanceId);
+  }
+
+  @Override
+  @NonNull
+  public CompletableFuture<Long> count() {
+    return templateInstanceDao.count();
+  }
+}
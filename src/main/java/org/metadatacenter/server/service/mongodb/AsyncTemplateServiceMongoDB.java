@@ -0,0 +1,85 @@
+package org.metadatacenter.server.service.mongodb;
+
+import checkers.nullness.quals.NonNull;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mongodb.async.client.MongoClient;
+import org.metadatacenter.server.dao.mongodb.AsyncGenericLDDaoMongoDB;
+import org.metadatacenter.server.service.AsyncTemplateService;
+import org.metadatacenter.server.service.FieldNameInEx;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class AsyncTemplateServiceMongoDB extends GenericTemplateServiceMongoDB<String, JsonNode> implements
+    AsyncTemplateService<String, JsonNode> {
+
+  @NonNull
+  private final AsyncGenericLDDaoMongoDB templateDao;
+
+  public AsyncTemplateServiceMongoDB(@NonNull MongoClient mongoClient, @NonNull String db,
+                                     @NonNull String templatesCollection, String linkedDataIdBasePath) {
+    this.templateDao = new AsyncGenericLDDaoMongoDB(mongoClient, db, templatesCollection,
+        linkedDataIdBasePath);
+  }
+
+  @Override
+  @NonNull
+  public CompletableFuture<JsonNode> createTemplate(@NonNull JsonNode template) {
+    return templateDao.create(template);
+  }
+
+  @Override
+  @NonNull
+  public CompletableFuture<List<JsonNode>> findAllTemplates() {
+    return templateDao.findAll();
+  }
+
+  @Override
+  @NonNull
+  public CompletableFuture<List<JsonNode>> findAllTemplates(List<String> fieldNames, FieldNameInEx includeExclude) {
+    return templateDao.findAll(fieldNames, includeExclude);
+  }
+
+  @Override
+  @NonNull
+  public CompletableFuture<List<JsonNode>> findAllTemplates(Integer limit, Integer offset, List<String> fieldNames,
+      FieldNameInEx includeExclude) {
+    return templateDao.findAll(limit, offset, fieldNames, includeExclude);
+  }
+
+  @Override
+  @NonNull
+  public CompletableFuture<JsonNode> findTemplate(@NonNull String templateId) {
+    return templateDao.find(templateId);
+  }
+
+  @Override
+  @NonNull
+  public CompletableFuture<JsonNode> updateTemplate(@NonNull String templateId, @NonNull JsonNode modifications) {
+    return templateDao.update(templateId, modifications);
+  }
+
+  @Override
+  @NonNull
+  public CompletableFuture<Void> deleteTemplate(@NonNull String templateId) {
+    return templateDao.delete(templateId);
+  }
+
+  @Override
+  @NonNull
+  public CompletableFuture<Boolean> existsTemplate(@NonNull String templateId) {
+    return templateDao.exists(templateId);
+  }
+
+  @Override
+  @NonNull
+  public CompletableFuture<Void> deleteAllTemplates() {
+    return templateDao.deleteAll();
+  }
+
+  @Override
+  @NonNull
+  public CompletableFuture<Long> count() {
+    return templateDao.count();
+  }
+}
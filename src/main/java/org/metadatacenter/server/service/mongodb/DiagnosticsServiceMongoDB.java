@@ -2,12 +2,15 @@ package org.metadatacenter.server.service.mongodb;
 
 import checkers.nullness.quals.NonNull;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.mongodb.BasicDBObject;
 import com.mongodb.MongoClient;
 import com.mongodb.client.MongoDatabase;
 import org.bson.conversions.Bson;
+import org.metadatacenter.server.dao.mongodb.MongoClientManager;
+import org.metadatacenter.server.dao.mongodb.PoolStatistics;
 import org.metadatacenter.server.service.DiagnosticsService;
 import org.metadatacenter.util.MongoFactory;
 
@@ -17,12 +20,28 @@ public class DiagnosticsServiceMongoDB implements DiagnosticsService<JsonNode> {
 
   private MongoClient mongoClient = null;
   private MongoDatabase database = null;
+  private MongoClientManager mongoClientManager = null;
 
   public DiagnosticsServiceMongoDB(@NonNull String dbName) {
-    mongoClient = MongoFactory.getClient();
+    this(MongoFactory.getClient(), dbName);
+  }
+
+  /**
+   * @param mongoClient A client shared with the other services, whose lifecycle is managed by the caller
+   */
+  public DiagnosticsServiceMongoDB(@NonNull MongoClient mongoClient, @NonNull String dbName) {
+    this.mongoClient = mongoClient;
     database = mongoClient.getDatabase(dbName);
   }
 
+  /**
+   * Reports the state of the connection pools of the client of the manager in the heartbeat
+   */
+  public DiagnosticsServiceMongoDB(@NonNull MongoClientManager mongoClientManager, @NonNull String dbName) {
+    this(mongoClientManager.getClient(), dbName);
+    this.mongoClientManager = mongoClientManager;
+  }
+
   @NonNull
   public JsonNode heartbeat() {
     ObjectNode json = JsonNodeFactory.instance.objectNode();
@@ -36,6 +55,17 @@ public class DiagnosticsServiceMongoDB implements DiagnosticsService<JsonNode> {
       json.put("storageServerException", ex.getMessage());
     }
     json.put("storageServerConnection", connected);
+    if (mongoClientManager != null) {
+      ArrayNode pools = json.putArray("storageServerConnectionPools");
+      for (PoolStatistics statistics : mongoClientManager.getPoolStatistics()) {
+        ObjectNode pool = pools.addObject();
+        pool.put("host", statistics.getHost() + ":" + statistics.getPort());
+        pool.put("size", statistics.getSize());
+        pool.put("maxSize", statistics.getMaxSize());
+        pool.put("checkedOut", statistics.getCheckedOutCount());
+        pool.put("waitQueueSize", statistics.getWaitQueueSize());
+      }
+    }
     return json;
   }
 
@@ -3,13 +3,87 @@ package org.metadatacenter.server.service.mongodb;
 import checkers.nullness.quals.NonNull;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.github.fge.jsonschema.core.exceptions.ProcessingException;
-import org.metadatacenter.util.json.JsonUtils;
+import org.metadatacenter.server.dao.cache.CacheStatistics;
+import org.metadatacenter.server.dao.cache.DocumentCache;
+import org.metadatacenter.server.dao.cache.JsonNodeSizeEstimator;
+import org.metadatacenter.server.dao.cache.LruDocumentCache;
+import org.metadatacenter.server.validation.BatchValidator;
+import org.metadatacenter.server.validation.JsonSchemaCache;
+import org.metadatacenter.server.validation.ValidationResult;
+
+import java.util.List;
 
 public class GenericTemplateServiceMongoDB<K, T> {
 
+  public static final int DEFAULT_CACHE_MAX_ENTRIES = 1000;
+  public static final long DEFAULT_CACHE_MAX_BYTES = 64L * 1024 * 1024;
+
+  // Compiled schemas are shared by all the services, which validate against the same template schemas
+  private static final JsonSchemaCache sharedSchemaCache = new JsonSchemaCache();
+  // As are the workers of batch validations, so that concurrent batches do not use more threads than there are cores
+  private static final BatchValidator sharedBatchValidator = new BatchValidator();
+
+  @NonNull
+  private JsonSchemaCache schemaCache = sharedSchemaCache;
+  @NonNull
+  private BatchValidator batchValidator = sharedBatchValidator;
+
+  /**
+   * Create a cache for the collections that are read much more often than they are modified. Caching is opt-in: the
+   * cache is local to the process and only sees the modifications made through the service that uses it, so it should
+   * only be given to a service whose process is the only writer of the collection.
+   */
+  @NonNull
+  public static DocumentCache<String, JsonNode> newDefaultCache() {
+    return new LruDocumentCache<>(DEFAULT_CACHE_MAX_ENTRIES, DEFAULT_CACHE_MAX_BYTES, JsonNodeSizeEstimator::estimate);
+  }
+
   // Validation against JSON schema
   public void validate(@NonNull JsonNode schema, @NonNull JsonNode instance) throws ProcessingException {
-    JsonUtils jsonUtils = new JsonUtils();
-    jsonUtils.validate(schema, instance);
+    schemaCache.validate(schema, instance);
+  }
+
+  /**
+   * Validate instances against a schema in parallel (see {@link BatchValidator})
+   *
+   * @param schema    A JSON schema
+   * @param instances The instances to validate
+   * @return The results of the validations, in the order of the instances
+   * @throws ProcessingException If the schema cannot be compiled
+   */
+  @NonNull
+  public List<ValidationResult> validateAll(@NonNull JsonNode schema, @NonNull List<JsonNode> instances)
+      throws ProcessingException {
+    return batchValidator.validateAll(schemaCache.getSchema(schema), instances);
+  }
+
+  /**
+   * @return The cache of the compiled schemas used by {@link #validate(JsonNode, JsonNode)}, shared by all the
+   * services unless one was set
+   */
+  @NonNull
+  public JsonSchemaCache getSchemaCache() {
+    return schemaCache;
+  }
+
+  public void setSchemaCache(@NonNull JsonSchemaCache schemaCache) {
+    this.schemaCache = schemaCache;
+  }
+
+  /**
+   * @return The workers of the batch validations, shared by all the services unless one was set
+   */
+  @NonNull
+  public BatchValidator getBatchValidator() {
+    return batchValidator;
+  }
+
+  public void setBatchValidator(@NonNull BatchValidator batchValidator) {
+    this.batchValidator = batchValidator;
+  }
+
+  @NonNull
+  public CacheStatistics getSchemaCacheStatistics() {
+    return schemaCache.getStatistics();
   }
 }
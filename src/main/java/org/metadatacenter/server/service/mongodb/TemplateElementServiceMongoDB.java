@@ -3,13 +3,23 @@ package org.metadatacenter.server.service.mongodb;
 import checkers.nullness.quals.NonNull;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.github.fge.jsonschema.core.exceptions.ProcessingException;
+import com.mongodb.MongoClient;
+import org.metadatacenter.server.dao.cache.CacheStatistics;
+import org.metadatacenter.server.dao.cache.DocumentCache;
 import org.metadatacenter.server.dao.mongodb.TemplateElementDaoMongoDB;
+import org.metadatacenter.server.service.BulkCreateReport;
 import org.metadatacenter.server.service.FieldNameInEx;
+import org.metadatacenter.server.service.Page;
+import org.metadatacenter.server.service.SortSpec;
 import org.metadatacenter.server.service.TemplateElementService;
+import org.metadatacenter.util.MongoFactory;
 
 import javax.management.InstanceNotFoundException;
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 public class TemplateElementServiceMongoDB extends GenericTemplateServiceMongoDB<String, JsonNode> implements
     TemplateElementService<String, JsonNode> {
@@ -19,7 +29,33 @@ public class TemplateElementServiceMongoDB extends GenericTemplateServiceMongoDB
 
   public TemplateElementServiceMongoDB(@NonNull String db, @NonNull String templateElementsCollection, String
       linkedDataIdBasePath) {
-    this.templateElementDao = new TemplateElementDaoMongoDB(db, templateElementsCollection, linkedDataIdBasePath);
+    this(db, templateElementsCollection, linkedDataIdBasePath, null);
+  }
+
+  /**
+   * @param templateElementCache The cache for template elements (see {@link #newDefaultCache()}), or null to disable
+   *                             caching
+   */
+  public TemplateElementServiceMongoDB(@NonNull String db, @NonNull String templateElementsCollection, String
+      linkedDataIdBasePath, DocumentCache<String, JsonNode> templateElementCache) {
+    this(MongoFactory.getClient(), db, templateElementsCollection, linkedDataIdBasePath, templateElementCache);
+  }
+
+  public TemplateElementServiceMongoDB(@NonNull MongoClient mongoClient, @NonNull String db, @NonNull String
+      templateElementsCollection, String linkedDataIdBasePath) {
+    this(mongoClient, db, templateElementsCollection, linkedDataIdBasePath, null);
+  }
+
+  /**
+   * @param mongoClient          A client shared with the other services, whose lifecycle is managed by the caller
+   * @param templateElementCache The cache for template elements (see {@link #newDefaultCache()}), or null to disable
+   *                             caching
+   */
+  public TemplateElementServiceMongoDB(@NonNull MongoClient mongoClient, @NonNull String db, @NonNull String
+      templateElementsCollection, String linkedDataIdBasePath, DocumentCache<String, JsonNode> templateElementCache) {
+    this.templateElementDao = new TemplateElementDaoMongoDB(mongoClient, db, templateElementsCollection,
+        linkedDataIdBasePath);
+    this.templateElementDao.setCache(templateElementCache);
   }
 
   @Override
@@ -28,6 +64,13 @@ public class TemplateElementServiceMongoDB extends GenericTemplateServiceMongoDB
     return templateElementDao.create(templateElement);
   }
 
+  @Override
+  @NonNull
+  public BulkCreateReport<JsonNode> createAllTemplateElements(@NonNull List<JsonNode> templateElements)
+      throws IOException {
+    return templateElementDao.createAll(templateElements);
+  }
+
   @Override
   @NonNull
   public List<JsonNode> findAllTemplateElements() throws IOException {
@@ -48,11 +91,51 @@ public class TemplateElementServiceMongoDB extends GenericTemplateServiceMongoDB
     return templateElementDao.findAll(limit, offset, fieldNames, includeExclude);
   }
 
+  @Override
+  @NonNull
+  public List<JsonNode> findAllTemplateElements(Integer limit, Integer offset, List<SortSpec> sort, List<String>
+      fieldNames, FieldNameInEx includeExclude) throws IOException {
+    return templateElementDao.findAll(limit, offset, sort, fieldNames, includeExclude);
+  }
+
+  @Override
+  @NonNull
+  public Stream<JsonNode> streamAllTemplateElements() {
+    return templateElementDao.streamAll();
+  }
+
+  @Override
+  @NonNull
+  public Stream<JsonNode> streamAllTemplateElements(List<String> fieldNames, FieldNameInEx includeExclude) {
+    return templateElementDao.streamAll(fieldNames, includeExclude);
+  }
+
+  @Override
+  @NonNull
+  public Stream<JsonNode> streamAllTemplateElements(Integer limit, Integer offset, List<String> fieldNames,
+                                                    FieldNameInEx includeExclude) {
+    return templateElementDao.streamAll(limit, offset, fieldNames, includeExclude);
+  }
+
+  @Override
+  @NonNull
+  public Page<JsonNode> findTemplateElementsPage(int limit, String continuationToken, List<String> fieldNames,
+                                                 FieldNameInEx includeExclude) throws IOException {
+    return templateElementDao.findPage(limit, continuationToken, fieldNames, includeExclude);
+  }
+
   @Override
   public JsonNode findTemplateElement(@NonNull String templateElementId) throws IOException, ProcessingException {
     return templateElementDao.find(templateElementId);
   }
 
+  @Override
+  @NonNull
+  public Map<String, JsonNode> findTemplateElements(@NonNull Collection<String> templateElementIds)
+      throws IOException {
+    return templateElementDao.findByIds(templateElementIds);
+  }
+
   @Override
   @NonNull
   public JsonNode updateTemplateElement(@NonNull String templateElementId, @NonNull JsonNode modifications)
@@ -80,4 +163,12 @@ public class TemplateElementServiceMongoDB extends GenericTemplateServiceMongoDB
     return templateElementDao.count();
   }
 
+  /**
+   * @return The statistics of the cache, or null if caching is disabled
+   */
+  public CacheStatistics getCacheStatistics() {
+    DocumentCache<String, JsonNode> cache = templateElementDao.getCache();
+    return (cache == null) ? null : cache.getStatistics();
+  }
+
 }
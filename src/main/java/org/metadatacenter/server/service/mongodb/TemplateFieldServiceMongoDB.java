@@ -4,15 +4,21 @@ import checkers.nullness.quals.NonNull;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.github.fge.jsonschema.core.exceptions.ProcessingException;
+import com.mongodb.MongoClient;
 import org.metadatacenter.constant.CedarConstants;
 import org.metadatacenter.server.dao.mongodb.TemplateFieldDaoMongoDB;
 import org.metadatacenter.server.service.FieldNameInEx;
+import org.metadatacenter.server.service.Page;
+import org.metadatacenter.server.service.SortSpec;
 import org.metadatacenter.server.service.TemplateFieldService;
+import org.metadatacenter.util.MongoFactory;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 public class TemplateFieldServiceMongoDB extends GenericTemplateServiceMongoDB<String, JsonNode> implements
     TemplateFieldService<String, JsonNode> {
@@ -22,7 +28,16 @@ public class TemplateFieldServiceMongoDB extends GenericTemplateServiceMongoDB<S
 
   public TemplateFieldServiceMongoDB(@NonNull String db, @NonNull String templateFieldsCollection, String
       linkedDataIdBasePath) {
-    this.templateFieldDao = new TemplateFieldDaoMongoDB(db, templateFieldsCollection, linkedDataIdBasePath);
+    this(MongoFactory.getClient(), db, templateFieldsCollection, linkedDataIdBasePath);
+  }
+
+  /**
+   * @param mongoClient A client shared with the other services, whose lifecycle is managed by the caller
+   */
+  public TemplateFieldServiceMongoDB(@NonNull MongoClient mongoClient, @NonNull String db, @NonNull String
+      templateFieldsCollection, String linkedDataIdBasePath) {
+    this.templateFieldDao = new TemplateFieldDaoMongoDB(mongoClient, db, templateFieldsCollection,
+        linkedDataIdBasePath);
   }
 
   @Override
@@ -32,12 +47,39 @@ public class TemplateFieldServiceMongoDB extends GenericTemplateServiceMongoDB<S
     return templateFieldDao.findAll(limit, offset, fieldNames, includeExclude);
   }
 
+  @Override
+  @NonNull
+  public List<JsonNode> findAllTemplateFields(Integer limit, Integer offset, List<SortSpec> sort, List<String>
+      fieldNames, FieldNameInEx includeExclude) throws IOException {
+    return templateFieldDao.findAll(limit, offset, sort, fieldNames, includeExclude);
+  }
+
+  @Override
+  @NonNull
+  public Stream<JsonNode> streamAllTemplateFields(Integer limit, Integer offset, List<String> fieldNames, FieldNameInEx
+      includeExclude) {
+    return templateFieldDao.streamAll(limit, offset, fieldNames, includeExclude);
+  }
+
+  @Override
+  @NonNull
+  public Page<JsonNode> findTemplateFieldsPage(int limit, String continuationToken, List<String> fieldNames,
+                                               FieldNameInEx includeExclude) throws IOException {
+    return templateFieldDao.findPage(limit, continuationToken, fieldNames, includeExclude);
+  }
+
   @Override
   public JsonNode findTemplateField(@NonNull String templateFieldId) throws IOException,
       ProcessingException {
     return templateFieldDao.find(templateFieldId);
   }
 
+  @Override
+  @NonNull
+  public Map<String, JsonNode> findTemplateFields(@NonNull Collection<String> templateFieldIds) throws IOException {
+    return templateFieldDao.findByIds(templateFieldIds);
+  }
+
   @Override
   public long count() {
     return templateFieldDao.count();
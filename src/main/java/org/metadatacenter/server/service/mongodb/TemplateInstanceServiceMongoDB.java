@@ -2,31 +2,150 @@ package org.metadatacenter.server.service.mongodb;
 
 import checkers.nullness.quals.NonNull;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.github.fge.jsonschema.core.exceptions.ProcessingException;
+import com.github.fge.jsonschema.core.report.ProcessingReport;
+import com.mongodb.MongoClient;
+import org.metadatacenter.server.dao.cache.CacheStatistics;
 import org.metadatacenter.server.dao.mongodb.TemplateInstanceDaoMongoDB;
+import org.metadatacenter.server.service.BulkCreateReport;
 import org.metadatacenter.server.service.FieldNameInEx;
+import org.metadatacenter.server.service.Page;
+import org.metadatacenter.server.service.SortSpec;
 import org.metadatacenter.server.service.TemplateInstanceService;
+import org.metadatacenter.server.service.TemplateService;
+import org.metadatacenter.server.validation.TemplateValidatorCache;
+import org.metadatacenter.server.validation.ValidationResult;
+import org.metadatacenter.util.MongoFactory;
 
 import javax.management.InstanceNotFoundException;
+import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 public class TemplateInstanceServiceMongoDB extends GenericTemplateServiceMongoDB<String, JsonNode> implements
-    TemplateInstanceService<String, JsonNode> {
+    TemplateInstanceService<String, JsonNode>, Closeable {
 
   @NonNull
   private final TemplateInstanceDaoMongoDB templateInstanceDao;
+  private final TemplateService<String, JsonNode> templateService;
+  private final TemplateValidatorCache templateValidatorCache;
 
   public TemplateInstanceServiceMongoDB(@NonNull String db, @NonNull String templateInstancesCollection, String
       linkedDataIdBasePath) {
-    this.templateInstanceDao = new TemplateInstanceDaoMongoDB(db, templateInstancesCollection, linkedDataIdBasePath);
+    this(MongoFactory.getClient(), db, templateInstancesCollection, linkedDataIdBasePath);
   }
 
+  public TemplateInstanceServiceMongoDB(@NonNull String db, @NonNull String templateInstancesCollection, String
+      linkedDataIdBasePath, TemplateService<String, JsonNode> templateService) {
+    this(MongoFactory.getClient(), db, templateInstancesCollection, linkedDataIdBasePath, templateService);
+  }
+
+  /**
+   * @param mongoClient A client shared with the other services, whose lifecycle is managed by the caller
+   */
+  public TemplateInstanceServiceMongoDB(@NonNull MongoClient mongoClient, @NonNull String db, @NonNull String
+      templateInstancesCollection, String linkedDataIdBasePath) {
+    this(mongoClient, db, templateInstancesCollection, linkedDataIdBasePath, null);
+  }
+
+  /**
+   * @param mongoClient     A client shared with the other services, whose lifecycle is managed by the caller
+   * @param templateService The service of the templates of the instances, or null to create instances without
+   *                        validating them. Instances are validated against their template with compiled validators
+   *                        that are discarded when the template is updated or deleted through the service. The
+   *                        service listens to the changes of the templates until it is closed.
+   */
+  public TemplateInstanceServiceMongoDB(@NonNull MongoClient mongoClient, @NonNull String db, @NonNull String
+      templateInstancesCollection, String linkedDataIdBasePath, TemplateService<String, JsonNode> templateService) {
+    this.templateInstanceDao = new TemplateInstanceDaoMongoDB(mongoClient, db, templateInstancesCollection,
+        linkedDataIdBasePath);
+    this.templateService = templateService;
+    if (templateService != null) {
+      this.templateValidatorCache = new TemplateValidatorCache(templateService);
+      templateService.addTemplateChangeListener(templateValidatorCache);
+    } else {
+      this.templateValidatorCache = null;
+    }
+  }
+
+  /**
+   * Create an instance, after validating it against its template if the service validates instances
+   *
+   * @throws IllegalArgumentException If the instance does not refer to an existing template or is not valid
+   * @throws IOException              If the template cannot be read or compiled, or the instance cannot be created
+   */
   @Override
   @NonNull
   public JsonNode createTemplateInstance(@NonNull JsonNode templateInstance) throws IOException {
+    if (templateValidatorCache != null) {
+      validateAgainstTemplate(templateInstance);
+    }
     return templateInstanceDao.create(templateInstance);
   }
 
+  @Override
+  @NonNull
+  public BulkCreateReport<JsonNode> createAllTemplateInstances(@NonNull List<JsonNode> templateInstances)
+      throws IOException {
+    if (templateValidatorCache == null) {
+      return templateInstanceDao.createAll(templateInstances);
+    }
+    List<ValidationResult> results = validateTemplateInstances(templateInstances);
+    BulkCreateReport<JsonNode> report = new BulkCreateReport<>();
+    // Only the valid instances are created; their positions in the submitted list are kept for the report
+    List<JsonNode> validInstances = new ArrayList<>(templateInstances.size());
+    List<Integer> validIndexes = new ArrayList<>(templateInstances.size());
+    int i = 0;
+    for (; i < results.size(); i++) {
+      ValidationResult result = results.get(i);
+      if (result.isSuccess()) {
+        validInstances.add(templateInstances.get(i));
+        validIndexes.add(i);
+      } else {
+        report.addFailure(i, result.getMessage());
+        if (templateInstanceDao.isBulkInsertOrdered()) {
+          break;
+        }
+      }
+    }
+    for (int j = i + 1; j < results.size(); j++) {
+      report.addFailure(j, BulkCreateReport.NOT_ATTEMPTED);
+    }
+    if (!validInstances.isEmpty()) {
+      BulkCreateReport<JsonNode> daoReport = templateInstanceDao.createAll(validInstances);
+      for (Map.Entry<Integer, JsonNode> created : daoReport.getCreated().entrySet()) {
+        report.addCreated(validIndexes.get(created.getKey()), created.getValue());
+      }
+      for (Map.Entry<Integer, String> failure : daoReport.getFailures().entrySet()) {
+        report.addFailure(validIndexes.get(failure.getKey()), failure.getValue());
+      }
+    }
+    return report;
+  }
+
+  /**
+   * Validate instances against their templates in parallel (see
+   * {@link GenericTemplateServiceMongoDB#getBatchValidator()}). The validators of the templates come from the cache of
+   * the service: the validations that need a template that is not cached yet share a single fetch and compilation of
+   * it. A template that is evicted, expires or changes during the batch is compiled again.
+   *
+   * @param templateInstances The instances to validate
+   * @return The results of the validations, in the order of the instances. Instances that do not refer to an existing
+   * template fail.
+   * @throws IllegalStateException If the service does not validate instances
+   */
+  @NonNull
+  public List<ValidationResult> validateTemplateInstances(@NonNull List<JsonNode> templateInstances) {
+    if (templateValidatorCache == null) {
+      throw new IllegalStateException("The service was created without a template service to validate instances");
+    }
+    return getBatchValidator().validateAll(templateInstances,
+        templateInstance -> templateValidatorCache.validate(getTemplateId(templateInstance), templateInstance));
+  }
+
   @Override
   @NonNull
   public List<JsonNode> findAllTemplateInstances() throws IOException {
@@ -47,12 +166,58 @@ public class TemplateInstanceServiceMongoDB extends GenericTemplateServiceMongoD
     return templateInstanceDao.findAll(limit, offset, fieldNames, includeExclude);
   }
 
+  @Override
+  @NonNull
+  public List<JsonNode> findAllTemplateInstances(Integer limit, Integer offset, List<SortSpec> sort, List<String>
+      fieldNames, FieldNameInEx includeExclude) throws IOException {
+    return templateInstanceDao.findAll(limit, offset, sort, fieldNames, includeExclude);
+  }
+
+  @Override
+  @NonNull
+  public Stream<JsonNode> streamAllTemplateInstances() {
+    return templateInstanceDao.streamAll();
+  }
+
+  @Override
+  @NonNull
+  public Stream<JsonNode> streamAllTemplateInstances(List<String> fieldNames, FieldNameInEx includeExclude) {
+    return templateInstanceDao.streamAll(fieldNames, includeExclude);
+  }
+
+  @Override
+  @NonNull
+  public Stream<JsonNode> streamAllTemplateInstances(Integer limit, Integer offset, List<String> fieldNames,
+                                                     FieldNameInEx includeExclude) {
+    return templateInstanceDao.streamAll(limit, offset, fieldNames, includeExclude);
+  }
+
+  @Override
+  @NonNull
+  public Page<JsonNode> findTemplateInstancesPage(int limit, String continuationToken, List<String> fieldNames,
+                                                  FieldNameInEx includeExclude) throws IOException {
+    return templateInstanceDao.findPage(limit, continuationToken, fieldNames, includeExclude);
+  }
+
   @Override
   public JsonNode findTemplateInstance(@NonNull String templateInstanceId)
       throws IOException {
     return templateInstanceDao.find(templateInstanceId);
   }
 
+  @Override
+  @NonNull
+  public Page<JsonNode> findInstancesByTemplate(@NonNull String templateId, int limit, String continuationToken,
+                                                List<String> fieldNames, FieldNameInEx includeExclude)
+      throws IOException {
+    return templateInstanceDao.findByTemplate(templateId, limit, continuationToken, fieldNames, includeExclude);
+  }
+
+  @Override
+  public long countInstancesByTemplate(@NonNull String templateId) {
+    return templateInstanceDao.countByTemplate(templateId);
+  }
+
   @Override
   @NonNull
   public JsonNode updateTemplateInstance(@NonNull String templateInstanceId, @NonNull JsonNode modifications)
@@ -70,4 +235,49 @@ public class TemplateInstanceServiceMongoDB extends GenericTemplateServiceMongoD
     return templateInstanceDao.count();
   }
 
+  /**
+   * @return The statistics of the cache of compiled template validators, or null if instances are not validated
+   */
+  public CacheStatistics getTemplateValidatorStatistics() {
+    return (templateValidatorCache == null) ? null : templateValidatorCache.getStatistics();
+  }
+
+  /**
+   * Stop listening to the changes of the templates, so that the service is no longer referenced by the template
+   * service. The MongoDB client is not closed, since it is shared. The service must not create instances afterwards.
+   */
+  @Override
+  public void close() {
+    if (templateValidatorCache != null) {
+      templateService.removeTemplateChangeListener(templateValidatorCache);
+      templateValidatorCache.allTemplatesChanged();
+    }
+  }
+
+  /**
+   * @throws IllegalArgumentException If the instance does not refer to an existing template or is not valid
+   * @throws IOException              If the template cannot be read or compiled, or the validation cannot be performed
+   */
+  private void validateAgainstTemplate(JsonNode templateInstance) throws IOException {
+    String templateId = getTemplateId(templateInstance);
+    ProcessingReport report;
+    try {
+      report = templateValidatorCache.validate(templateId, templateInstance);
+    } catch (ProcessingException e) {
+      throw new IOException("The instance could not be validated against the template " + templateId, e);
+    }
+    if (!report.isSuccess()) {
+      throw new IllegalArgumentException("The instance is not valid against the template " + templateId + ": "
+          + report);
+    }
+  }
+
+  private static String getTemplateId(JsonNode templateInstance) {
+    JsonNode templateId = templateInstance.get(TemplateInstanceDaoMongoDB.TEMPLATE_ID_FIELD);
+    if (templateId == null || !templateId.isTextual()) {
+      throw new IllegalArgumentException("The template of the instance must be given in "
+          + TemplateInstanceDaoMongoDB.TEMPLATE_ID_FIELD);
+    }
+    return templateId.textValue();
+  }
 }
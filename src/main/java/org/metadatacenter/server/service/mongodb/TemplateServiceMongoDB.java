@@ -3,14 +3,24 @@ package org.metadatacenter.server.service.mongodb;
 import checkers.nullness.quals.NonNull;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.github.fge.jsonschema.core.exceptions.ProcessingException;
+import com.mongodb.MongoClient;
+import org.metadatacenter.server.dao.cache.CacheStatistics;
+import org.metadatacenter.server.dao.cache.DocumentCache;
 import org.metadatacenter.server.dao.mongodb.TemplateDaoMongoDB;
+import org.metadatacenter.server.service.BulkCreateReport;
 import org.metadatacenter.server.service.FieldNameInEx;
+import org.metadatacenter.server.service.Page;
+import org.metadatacenter.server.service.SortSpec;
+import org.metadatacenter.server.service.TemplateChangeListener;
 import org.metadatacenter.server.service.TemplateElementService;
 import org.metadatacenter.server.service.TemplateService;
+import org.metadatacenter.util.MongoFactory;
 
 import javax.management.InstanceNotFoundException;
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
 
 public class TemplateServiceMongoDB extends GenericTemplateServiceMongoDB<String, JsonNode> implements
     TemplateService<String, JsonNode> {
@@ -19,12 +29,42 @@ public class TemplateServiceMongoDB extends GenericTemplateServiceMongoDB<String
   private final TemplateDaoMongoDB templateDao;
 
   @NonNull
-  private final TemplateElementService templateElementService;
+  private final TemplateElementService<String, JsonNode> templateElementService;
 
+  private final List<TemplateChangeListener<String>> changeListeners = new CopyOnWriteArrayList<>();
 
+
+  public TemplateServiceMongoDB(@NonNull String db, @NonNull String templatesCollection, String linkedDataIdBasePath,
+                                TemplateElementService<String, JsonNode> templateElementService) {
+    this(db, templatesCollection, linkedDataIdBasePath, templateElementService, null);
+  }
+
+  /**
+   * @param templateCache The cache for templates (see {@link #newDefaultCache()}), or null to disable caching
+   */
   public TemplateServiceMongoDB(@NonNull String db, @NonNull String templatesCollection, String linkedDataIdBasePath,
-                                TemplateElementService templateElementService) {
-    this.templateDao = new TemplateDaoMongoDB(db, templatesCollection, linkedDataIdBasePath);
+                                TemplateElementService<String, JsonNode> templateElementService,
+                                DocumentCache<String, JsonNode> templateCache) {
+    this(MongoFactory.getClient(), db, templatesCollection, linkedDataIdBasePath, templateElementService,
+        templateCache);
+  }
+
+  public TemplateServiceMongoDB(@NonNull MongoClient mongoClient, @NonNull String db, @NonNull String
+      templatesCollection, String linkedDataIdBasePath,
+                                TemplateElementService<String, JsonNode> templateElementService) {
+    this(mongoClient, db, templatesCollection, linkedDataIdBasePath, templateElementService, null);
+  }
+
+  /**
+   * @param mongoClient   A client shared with the other services, whose lifecycle is managed by the caller
+   * @param templateCache The cache for templates (see {@link #newDefaultCache()}), or null to disable caching
+   */
+  public TemplateServiceMongoDB(@NonNull MongoClient mongoClient, @NonNull String db, @NonNull String
+      templatesCollection, String linkedDataIdBasePath,
+                                TemplateElementService<String, JsonNode> templateElementService,
+                                DocumentCache<String, JsonNode> templateCache) {
+    this.templateDao = new TemplateDaoMongoDB(mongoClient, db, templatesCollection, linkedDataIdBasePath);
+    this.templateDao.setCache(templateCache);
     this.templateElementService = templateElementService;
   }
 
@@ -34,6 +74,12 @@ public class TemplateServiceMongoDB extends GenericTemplateServiceMongoDB<String
     return templateDao.create(template);
   }
 
+  @Override
+  @NonNull
+  public BulkCreateReport<JsonNode> createAllTemplates(@NonNull List<JsonNode> templates) throws IOException {
+    return templateDao.createAll(templates);
+  }
+
   @Override
   @NonNull
   public List<JsonNode> findAllTemplates() throws IOException {
@@ -53,6 +99,39 @@ public class TemplateServiceMongoDB extends GenericTemplateServiceMongoDB<String
     return templateDao.findAll(limit, offset, fieldNames, includeExclude);
   }
 
+  @Override
+  @NonNull
+  public List<JsonNode> findAllTemplates(Integer limit, Integer offset, List<SortSpec> sort, List<String> fieldNames,
+                                         FieldNameInEx includeExclude) throws IOException {
+    return templateDao.findAll(limit, offset, sort, fieldNames, includeExclude);
+  }
+
+  @Override
+  @NonNull
+  public Stream<JsonNode> streamAllTemplates() {
+    return templateDao.streamAll();
+  }
+
+  @Override
+  @NonNull
+  public Stream<JsonNode> streamAllTemplates(List<String> fieldNames, FieldNameInEx includeExclude) {
+    return templateDao.streamAll(fieldNames, includeExclude);
+  }
+
+  @Override
+  @NonNull
+  public Stream<JsonNode> streamAllTemplates(Integer limit, Integer offset, List<String> fieldNames, FieldNameInEx
+      includeExclude) {
+    return templateDao.streamAll(limit, offset, fieldNames, includeExclude);
+  }
+
+  @Override
+  @NonNull
+  public Page<JsonNode> findTemplatesPage(int limit, String continuationToken, List<String> fieldNames,
+                                          FieldNameInEx includeExclude) throws IOException {
+    return templateDao.findPage(limit, continuationToken, fieldNames, includeExclude);
+  }
+
   @Override
   public JsonNode findTemplate(@NonNull String templateId)
       throws IOException, ProcessingException {
@@ -63,12 +142,21 @@ public class TemplateServiceMongoDB extends GenericTemplateServiceMongoDB<String
   @NonNull
   public JsonNode updateTemplate(@NonNull String templateId, @NonNull JsonNode modifications)
       throws InstanceNotFoundException, IOException {
-    return templateDao.update(templateId, modifications);
+    try {
+      return templateDao.update(templateId, modifications);
+    } finally {
+      // Also notified on failure, since the template may have been changed by other means
+      notifyTemplateChanged(templateId);
+    }
   }
 
   @Override
   public void deleteTemplate(@NonNull String templateId) throws InstanceNotFoundException, IOException {
-    templateDao.delete(templateId);
+    try {
+      templateDao.delete(templateId);
+    } finally {
+      notifyTemplateChanged(templateId);
+    }
   }
 
   @Override
@@ -79,6 +167,9 @@ public class TemplateServiceMongoDB extends GenericTemplateServiceMongoDB<String
   @Override
   public void deleteAllTemplates() {
     templateDao.deleteAll();
+    for (TemplateChangeListener<String> listener : changeListeners) {
+      listener.allTemplatesChanged();
+    }
   }
 
   @Override
@@ -86,5 +177,29 @@ public class TemplateServiceMongoDB extends GenericTemplateServiceMongoDB<String
     return templateDao.count();
   }
 
+  /**
+   * @return The statistics of the cache, or null if caching is disabled
+   */
+  public CacheStatistics getCacheStatistics() {
+    DocumentCache<String, JsonNode> cache = templateDao.getCache();
+    return (cache == null) ? null : cache.getStatistics();
+  }
+
+  @Override
+  public void addTemplateChangeListener(@NonNull TemplateChangeListener<String> listener) {
+    changeListeners.add(listener);
+  }
+
+  @Override
+  public void removeTemplateChangeListener(@NonNull TemplateChangeListener<String> listener) {
+    changeListeners.remove(listener);
+  }
+
+  private void notifyTemplateChanged(String templateId) {
+    for (TemplateChangeListener<String> listener : changeListeners) {
+      listener.templateChanged(templateId);
+    }
+  }
+
 
 }
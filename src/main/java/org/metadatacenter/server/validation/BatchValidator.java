@@ -0,0 +1,147 @@
+package org.metadatacenter.server.validation;
+
+import checkers.nullness.quals.NonNull;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.fge.jsonschema.core.exceptions.ProcessingException;
+import com.github.fge.jsonschema.main.JsonSchema;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Validates batches of documents in parallel on a bounded fork/join pool. Validations are independent and CPU-bound,
+ * so a batch is split into ranges that the workers share by work stealing, and a batch completes in about the time
+ * of its share per core. The results are returned in the order of the documents.
+ * <p>
+ * The validators are called concurrently, so they must be thread-safe; compiled schemas (see {@link JsonSchemaCache}
+ * and {@link TemplateValidatorCache}) are, and are best shared by all the validations.
+ */
+public class BatchValidator implements Closeable {
+
+  // Ranges per worker: enough for the workers to balance uneven documents, few enough to keep the splitting cheap
+  private static final int RANGES_PER_WORKER = 4;
+  private static final AtomicInteger poolCount = new AtomicInteger();
+
+  @NonNull
+  private final ForkJoinPool pool;
+
+  /**
+   * Validator with one worker per available processor
+   */
+  public BatchValidator() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * @param parallelism The maximum number of documents validated at the same time
+   */
+  public BatchValidator(int parallelism) {
+    if (parallelism <= 0) {
+      throw new IllegalArgumentException("The parallelism must be positive");
+    }
+    String namePrefix = "batch-validator-" + poolCount.incrementAndGet() + "-";
+    AtomicInteger threadCount = new AtomicInteger();
+    this.pool = new ForkJoinPool(parallelism, forkJoinPool -> {
+      ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+      thread.setName(namePrefix + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }, null, false);
+  }
+
+  public int getParallelism() {
+    return pool.getParallelism();
+  }
+
+  /**
+   * Validate documents against a schema
+   *
+   * @param schema    The compiled schema
+   * @param documents The documents to validate
+   * @return The results of the validations, in the order of the documents
+   */
+  @NonNull
+  public List<ValidationResult> validateAll(@NonNull JsonSchema schema, @NonNull List<JsonNode> documents) {
+    return validateAll(documents, schema::validate);
+  }
+
+  /**
+   * Validate documents, each with the schema chosen by a validator
+   *
+   * @param documents The documents to validate
+   * @param validator Validates one document; called concurrently
+   * @return The results of the validations, in the order of the documents. The failure of a validation is reported
+   * in its result and does not affect the others.
+   */
+  @NonNull
+  public List<ValidationResult> validateAll(@NonNull List<JsonNode> documents, @NonNull DocumentValidator validator) {
+    if (documents.isEmpty()) {
+      return Collections.emptyList();
+    }
+    // Random access to the documents from all the workers
+    List<JsonNode> batch = new ArrayList<>(documents);
+    ValidationResult[] results = new ValidationResult[batch.size()];
+    int rangeSize = Math.max(1, batch.size() / (pool.getParallelism() * RANGES_PER_WORKER));
+    pool.invoke(new ValidationTask(batch, validator, results, 0, batch.size(), rangeSize));
+    return Arrays.asList(results);
+  }
+
+  /**
+   * Stop the workers. Batches that are being validated are completed.
+   */
+  @Override
+  public void close() {
+    pool.shutdown();
+  }
+
+  private static ValidationResult validate(DocumentValidator validator, JsonNode document) {
+    try {
+      return ValidationResult.of(validator.validate(document));
+    } catch (IOException | ProcessingException | RuntimeException e) {
+      return ValidationResult.failed(e);
+    }
+  }
+
+  private static final class ValidationTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<JsonNode> documents;
+    private final DocumentValidator validator;
+    private final ValidationResult[] results;
+    private final int from;
+    private final int to;
+    private final int rangeSize;
+
+    private ValidationTask(List<JsonNode> documents, DocumentValidator validator, ValidationResult[] results, int from,
+                           int to, int rangeSize) {
+      this.documents = documents;
+      this.validator = validator;
+      this.results = results;
+      this.from = from;
+      this.to = to;
+      this.rangeSize = rangeSize;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= rangeSize) {
+        for (int i = from; i < to; i++) {
+          results[i] = validate(validator, documents.get(i));
+        }
+      } else {
+        int middle = (from + to) >>> 1;
+        invokeAll(new ValidationTask(documents, validator, results, from, middle, rangeSize),
+            new ValidationTask(documents, validator, results, middle, to, rangeSize));
+      }
+    }
+  }
+}
@@ -0,0 +1,14 @@
+package org.metadatacenter.server.validation;
+
+import checkers.nullness.quals.NonNull;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.fge.jsonschema.core.exceptions.ProcessingException;
+import com.github.fge.jsonschema.core.report.ProcessingReport;
+
+import java.io.IOException;
+
+public interface DocumentValidator {
+
+  @NonNull
+  ProcessingReport validate(@NonNull JsonNode document) throws IOException, ProcessingException;
+}
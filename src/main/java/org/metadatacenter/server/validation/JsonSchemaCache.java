@@ -0,0 +1,144 @@
+package org.metadatacenter.server.validation;
+
+import checkers.nullness.quals.NonNull;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.fge.jsonschema.core.exceptions.ProcessingException;
+import com.github.fge.jsonschema.core.report.ProcessingReport;
+import com.github.fge.jsonschema.main.JsonSchema;
+import com.github.fge.jsonschema.main.JsonSchemaFactory;
+import org.metadatacenter.server.dao.cache.CacheStatistics;
+import org.metadatacenter.server.dao.cache.DocumentCache;
+import org.metadatacenter.server.dao.cache.LruDocumentCache;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe cache of compiled JSON schemas. Building a {@link JsonSchema} parses the schema and prepares its
+ * validators, which costs much more than validating an instance with it; since instances are validated against the
+ * same few template schemas over and over, each schema is compiled once and reused until it is evicted.
+ * <p>
+ * Schemas are identified by their content, so equal schemas read separately from the database share one entry. The
+ * entry keeps its own copy of the schema, which the caller remains free to modify.
+ */
+public class JsonSchemaCache {
+
+  public static final int DEFAULT_MAX_ENTRIES = 500;
+
+  @NonNull
+  private final JsonSchemaFactory schemaFactory;
+  @NonNull
+  private final DocumentCache<SchemaKey, JsonSchema> cache;
+  // Lookups that missed before the schema was copied into the key to store, counted again by the cache afterwards
+  @NonNull
+  private final AtomicLong lookupMissCount = new AtomicLong();
+
+  public JsonSchemaCache() {
+    this(DEFAULT_MAX_ENTRIES);
+  }
+
+  /**
+   * @param maxEntries The maximum number of compiled schemas; the least recently used ones are evicted first
+   */
+  public JsonSchemaCache(int maxEntries) {
+    this(JsonSchemaFactory.byDefault(), maxEntries);
+  }
+
+  public JsonSchemaCache(@NonNull JsonSchemaFactory schemaFactory, int maxEntries) {
+    this.schemaFactory = schemaFactory;
+    this.cache = new LruDocumentCache<>(maxEntries);
+  }
+
+  /**
+   * Get the compiled form of a schema, compiling it if it is not cached yet
+   *
+   * @param schema A JSON schema
+   * @return The compiled schema
+   * @throws ProcessingException If the schema cannot be compiled
+   */
+  @NonNull
+  public JsonSchema getSchema(@NonNull JsonNode schema) throws ProcessingException {
+    SchemaKey lookupKey = new SchemaKey(schema, schema.hashCode());
+    JsonSchema compiled = cache.getIfPresent(lookupKey);
+    if (compiled != null) {
+      return compiled;
+    }
+    lookupMissCount.incrementAndGet();
+    try {
+      // The stored key must not change with the schema of the caller, so it holds a copy
+      return cache.get(new SchemaKey(schema.deepCopy(), lookupKey.hash), this::compile);
+    } catch (SchemaLoadingException e) {
+      throw e.getProcessingException();
+    } catch (IOException e) {
+      // Only compilations are run by the cache, and their failures are reported above
+      throw new ProcessingException(e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Validate an instance against a schema
+   *
+   * @param schema   A JSON schema
+   * @param instance The instance to validate
+   * @throws ProcessingException If the schema cannot be compiled or the instance is not valid
+   */
+  public void validate(@NonNull JsonNode schema, @NonNull JsonNode instance) throws ProcessingException {
+    ProcessingReport report = getSchema(schema).validate(instance);
+    if (!report.isSuccess()) {
+      throw new ProcessingException(report.toString());
+    }
+  }
+
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  /**
+   * @return The statistics of the cache; misses are compilations
+   */
+  @NonNull
+  public CacheStatistics getStatistics() {
+    CacheStatistics statistics = cache.getStatistics();
+    return new CacheStatistics(statistics.getHitCount(), statistics.getMissCount() - lookupMissCount.get(),
+        statistics.getEvictionCount(), statistics.getEntryCount(), statistics.getWeight());
+  }
+
+  private JsonSchema compile(SchemaKey key) throws IOException {
+    try {
+      return schemaFactory.getJsonSchema(key.schema);
+    } catch (ProcessingException e) {
+      throw new SchemaLoadingException(e);
+    }
+  }
+
+  /**
+   * Key of a schema by content. The hash is computed once, since hashing a schema walks all of it.
+   */
+  private static final class SchemaKey {
+
+    private final JsonNode schema;
+    private final int hash;
+
+    private SchemaKey(JsonNode schema, int hash) {
+      this.schema = schema;
+      this.hash = hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof SchemaKey)) {
+        return false;
+      }
+      SchemaKey other = (SchemaKey) o;
+      return hash == other.hash && (schema == other.schema || schema.equals(other.schema));
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
@@ -0,0 +1,21 @@
+package org.metadatacenter.server.validation;
+
+import com.github.fge.jsonschema.core.exceptions.ProcessingException;
+
+import java.io.IOException;
+
+/**
+ * Carries a schema processing failure through the loader of a document cache, which may only throw IOExceptions
+ */
+class SchemaLoadingException extends IOException {
+
+  private static final long serialVersionUID = 1L;
+
+  SchemaLoadingException(ProcessingException cause) {
+    super(cause);
+  }
+
+  ProcessingException getProcessingException() {
+    return (ProcessingException) getCause();
+  }
+}
@@ -0,0 +1,131 @@
+package org.metadatacenter.server.validation;
+
+import checkers.nullness.quals.NonNull;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.fge.jsonschema.core.exceptions.ProcessingException;
+import com.github.fge.jsonschema.core.report.ProcessingReport;
+import com.github.fge.jsonschema.main.JsonSchema;
+import com.github.fge.jsonschema.main.JsonSchemaFactory;
+import org.metadatacenter.server.dao.cache.CacheStatistics;
+import org.metadatacenter.server.dao.cache.DocumentCache;
+import org.metadatacenter.server.dao.cache.LruDocumentCache;
+import org.metadatacenter.server.dao.cache.RequestCoalescer;
+import org.metadatacenter.server.service.TemplateChangeListener;
+import org.metadatacenter.server.service.TemplateService;
+
+import java.io.IOException;
+import java.util.function.LongSupplier;
+
+/**
+ * Compiled validators of the instances of templates, by template ID. The first validation against a template fetches
+ * it and compiles it; the following ones only evaluate the compiled schema. Concurrent validations against a template
+ * that is not cached yet wait for a single fetch and compilation (see {@link RequestCoalescer}).
+ * <p>
+ * The cache must be registered as a change listener of the template service (see
+ * {@link TemplateService#addTemplateChangeListener(TemplateChangeListener)}), so that the validator of a template is
+ * discarded when the template is updated or deleted. A validator compiled from a version of the template read before
+ * such a change is never cached, so validations always use the current version of the templates once the change has
+ * been notified.
+ * <p>
+ * Templates modified through another service, e.g. by another process, are not notified. Validators therefore expire
+ * after a while, which bounds how long such a modification goes unnoticed.
+ */
+public class TemplateValidatorCache implements TemplateChangeListener<String> {
+
+  public static final int DEFAULT_MAX_ENTRIES = 500;
+  public static final long DEFAULT_EXPIRE_AFTER_WRITE_MILLIS = 5 * 60 * 1000L;
+
+  @NonNull
+  private final TemplateService<String, JsonNode> templateService;
+  @NonNull
+  private final JsonSchemaFactory schemaFactory;
+  @NonNull
+  private final DocumentCache<String, JsonSchema> validators;
+  // Compiled schemas are immutable, so the validators handed to concurrent callers are shared
+  @NonNull
+  private final RequestCoalescer<String, JsonSchema> compilations = new RequestCoalescer<>();
+
+  public TemplateValidatorCache(@NonNull TemplateService<String, JsonNode> templateService) {
+    this(templateService, JsonSchemaFactory.byDefault(), DEFAULT_MAX_ENTRIES, DEFAULT_EXPIRE_AFTER_WRITE_MILLIS,
+        System::currentTimeMillis);
+  }
+
+  /**
+   * @param templateService        The service that provides the templates
+   * @param schemaFactory          The factory that compiles the templates
+   * @param maxEntries             The maximum number of compiled validators; the least recently used ones are evicted
+   *                               first
+   * @param expireAfterWriteMillis The time after which a template is fetched and compiled again
+   * @param clock                  The current time in milliseconds
+   */
+  public TemplateValidatorCache(@NonNull TemplateService<String, JsonNode> templateService,
+                                @NonNull JsonSchemaFactory schemaFactory, int maxEntries, long expireAfterWriteMillis,
+                                @NonNull LongSupplier clock) {
+    this.templateService = templateService;
+    this.schemaFactory = schemaFactory;
+    this.validators = new LruDocumentCache<>(maxEntries, Long.MAX_VALUE, validator -> 0, expireAfterWriteMillis, clock);
+  }
+
+  /**
+   * @param templateId The linked data ID of a template
+   * @return The compiled validator of the instances of the template, or null if the template does not exist
+   * @throws IOException         If the template cannot be read
+   * @throws ProcessingException If the template cannot be compiled
+   */
+  public JsonSchema getValidator(@NonNull String templateId) throws IOException, ProcessingException {
+    try {
+      return validators.get(templateId, id -> compilations.load(id, this::compile));
+    } catch (SchemaLoadingException e) {
+      throw e.getProcessingException();
+    }
+  }
+
+  /**
+   * Validate an instance against its template
+   *
+   * @param templateId The linked data ID of the template of the instance
+   * @param instance   The instance
+   * @return The validation report
+   * @throws IllegalArgumentException If the template does not exist
+   * @throws IOException              If the template cannot be read
+   * @throws ProcessingException      If the template cannot be compiled or the validation cannot be performed
+   */
+  @NonNull
+  public ProcessingReport validate(@NonNull String templateId, @NonNull JsonNode instance) throws IOException,
+      ProcessingException {
+    JsonSchema validator = getValidator(templateId);
+    if (validator == null) {
+      throw new IllegalArgumentException("The template " + templateId + " does not exist");
+    }
+    return validator.validate(instance);
+  }
+
+  @Override
+  public void templateChanged(@NonNull String templateId) {
+    compilations.forget(templateId);
+    validators.invalidate(templateId);
+  }
+
+  @Override
+  public void allTemplatesChanged() {
+    compilations.forgetAll();
+    validators.invalidateAll();
+  }
+
+  /**
+   * @return The statistics of the cache. Misses include the lookups that waited for the compilation of another one.
+   */
+  @NonNull
+  public CacheStatistics getStatistics() {
+    return validators.getStatistics();
+  }
+
+  private JsonSchema compile(String templateId) throws IOException {
+    try {
+      JsonNode template = templateService.findTemplate(templateId);
+      return (template == null) ? null : schemaFactory.getJsonSchema(template);
+    } catch (ProcessingException e) {
+      throw new SchemaLoadingException(e);
+    }
+  }
+}
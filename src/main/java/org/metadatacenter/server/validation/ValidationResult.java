@@ -0,0 +1,60 @@
+package org.metadatacenter.server.validation;
+
+import checkers.nullness.quals.NonNull;
+import com.github.fge.jsonschema.core.report.ProcessingReport;
+
+/**
+ * Outcome of the validation of one document of a batch: either the validation report, or the failure that prevented
+ * the validation (e.g. a template that does not exist or cannot be compiled)
+ */
+public class ValidationResult {
+
+  private final ProcessingReport report;
+  private final Exception failure;
+
+  private ValidationResult(ProcessingReport report, Exception failure) {
+    this.report = report;
+    this.failure = failure;
+  }
+
+  @NonNull
+  public static ValidationResult of(@NonNull ProcessingReport report) {
+    return new ValidationResult(report, null);
+  }
+
+  @NonNull
+  public static ValidationResult failed(@NonNull Exception failure) {
+    return new ValidationResult(null, failure);
+  }
+
+  /**
+   * @return True if the document was validated and is valid
+   */
+  public boolean isSuccess() {
+    return report != null && report.isSuccess();
+  }
+
+  /**
+   * @return The validation report, or null if the document could not be validated
+   */
+  public ProcessingReport getReport() {
+    return report;
+  }
+
+  /**
+   * @return The failure that prevented the validation, or null if the document was validated
+   */
+  public Exception getFailure() {
+    return failure;
+  }
+
+  /**
+   * @return A description of the problems found, or null if the document is valid
+   */
+  public String getMessage() {
+    if (failure != null) {
+      return (failure.getMessage() != null) ? failure.getMessage() : failure.toString();
+    }
+    return report.isSuccess() ? null : report.toString();
+  }
+}
@@ -0,0 +1,260 @@
+package org.metadatacenter.server.dao.cache;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LruDocumentCacheTest {
+
+  private final AtomicInteger loadCount = new AtomicInteger();
+  private final DocumentLoader<String, String> loader = key -> {
+    loadCount.incrementAndGet();
+    return "value of " + key;
+  };
+
+  @Test
+  public void getLoadsOnceThenHits() throws IOException {
+    LruDocumentCache<String, String> cache = new LruDocumentCache<>(10);
+    String first = cache.get("a", loader);
+    String second = cache.get("a", loader);
+    assertEquals("value of a", first);
+    assertSame(first, second);
+    assertEquals(1, loadCount.get());
+    CacheStatistics statistics = cache.getStatistics();
+    assertEquals(1, statistics.getHitCount());
+    assertEquals(1, statistics.getMissCount());
+    assertEquals(1, statistics.getEntryCount());
+  }
+
+  @Test
+  public void missingDocumentsAreNotCached() throws IOException {
+    LruDocumentCache<String, String> cache = new LruDocumentCache<>(10);
+    DocumentLoader<String, String> missing = key -> {
+      loadCount.incrementAndGet();
+      return null;
+    };
+    assertNull(cache.get("a", missing));
+    assertNull(cache.get("a", missing));
+    assertEquals(2, loadCount.get());
+    assertEquals(0, cache.getStatistics().getEntryCount());
+  }
+
+  @Test
+  public void loadFailuresArePropagatedAndNotCached() throws IOException {
+    LruDocumentCache<String, String> cache = new LruDocumentCache<>(10);
+    try {
+      cache.get("a", key -> {
+        throw new IOException("unavailable");
+      });
+      fail("The failure of the loader must be propagated");
+    } catch (IOException e) {
+      assertEquals("unavailable", e.getMessage());
+    }
+    assertEquals("value of a", cache.get("a", loader));
+    assertEquals(1, loadCount.get());
+  }
+
+  @Test
+  public void evictsLeastRecentlyUsedEntryBeyondMaxEntries() throws IOException {
+    LruDocumentCache<String, String> cache = new LruDocumentCache<>(2);
+    cache.get("a", loader);
+    cache.get("b", loader);
+    // Reading a makes b the least recently used entry
+    cache.get("a", loader);
+    cache.get("c", loader);
+    assertEquals("value of a", cache.getIfPresent("a"));
+    assertNull(cache.getIfPresent("b"));
+    assertEquals("value of c", cache.getIfPresent("c"));
+    assertEquals(1, cache.getStatistics().getEvictionCount());
+  }
+
+  @Test
+  public void evictsLeastRecentlyUsedEntriesBeyondMaxWeight() throws IOException {
+    LruDocumentCache<String, String> cache = new LruDocumentCache<>(100, 10, value -> value.length());
+    DocumentLoader<String, String> identity = key -> key;
+    cache.get("aaaa", identity);
+    cache.get("bbb", identity);
+    cache.get("aaaa", identity);
+    assertEquals(7, cache.getStatistics().getWeight());
+    // 7 + 5 exceeds the maximum weight, so the least recently used entry is evicted
+    cache.get("ccccc", identity);
+    assertNull(cache.getIfPresent("bbb"));
+    assertEquals("aaaa", cache.getIfPresent("aaaa"));
+    assertEquals("ccccc", cache.getIfPresent("ccccc"));
+    assertEquals(9, cache.getStatistics().getWeight());
+    // A single entry may evict several smaller ones
+    cache.get("dddddddd", identity);
+    assertEquals(1, cache.getStatistics().getEntryCount());
+    assertEquals(8, cache.getStatistics().getWeight());
+    assertEquals(3, cache.getStatistics().getEvictionCount());
+  }
+
+  @Test
+  public void documentsHeavierThanMaxWeightAreNotCached() throws IOException {
+    LruDocumentCache<String, String> cache = new LruDocumentCache<>(100, 10, value -> value.length());
+    cache.get("small", key -> key);
+    assertEquals("0123456789a", cache.get("0123456789a", key -> key));
+    assertNull(cache.getIfPresent("0123456789a"));
+    assertEquals("small", cache.getIfPresent("small"));
+    assertEquals(5, cache.getStatistics().getWeight());
+  }
+
+  @Test
+  public void invalidateRemovesEntryAndWeight() throws IOException {
+    LruDocumentCache<String, String> cache = new LruDocumentCache<>(100, 100, value -> value.length());
+    cache.get("aaa", key -> key);
+    cache.get("bb", key -> key);
+    cache.invalidate("aaa");
+    assertNull(cache.getIfPresent("aaa"));
+    assertEquals(2, cache.getStatistics().getWeight());
+    cache.invalidateAll();
+    assertEquals(0, cache.getStatistics().getEntryCount());
+    assertEquals(0, cache.getStatistics().getWeight());
+  }
+
+  @Test
+  public void loadRacingAnInvalidationIsNotCached() throws Exception {
+    LruDocumentCache<String, String> cache = new LruDocumentCache<>(10);
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch invalidated = new CountDownLatch(1);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      // The load reads the version before the update, which is invalidated while the load is in progress
+      Future<String> load = executor.submit(() -> cache.get("a", key -> {
+        loading.countDown();
+        await(invalidated);
+        return "previous version";
+      }));
+      await(loading);
+      cache.invalidate("a");
+      invalidated.countDown();
+      assertEquals("previous version", load.get(10, TimeUnit.SECONDS));
+      assertNull(cache.getIfPresent("a"));
+      assertEquals("value of a", cache.get("a", loader));
+      assertEquals("value of a", cache.getIfPresent("a"));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void loadRacingAnInvalidationOfAnotherKeyIsNotCached() throws IOException {
+    LruDocumentCache<String, String> cache = new LruDocumentCache<>(10);
+    // Invalidations do not track keys, so any invalidation during a load discards it
+    cache.get("a", key -> {
+      cache.invalidateAll();
+      return "value of a";
+    });
+    assertNull(cache.getIfPresent("a"));
+  }
+
+  @Test
+  public void documentsAreLoadedAgainAfterTheExpiry() throws IOException {
+    AtomicLong time = new AtomicLong(1000);
+    LruDocumentCache<String, String> cache = new LruDocumentCache<>(10, 100, value -> value.length(), 60,
+        time::get);
+    cache.get("a", loader);
+    time.addAndGet(59);
+    assertEquals("value of a", cache.get("a", loader));
+    assertEquals(1, loadCount.get());
+    time.addAndGet(1);
+    assertNull(cache.getIfPresent("a"));
+    assertEquals(0, cache.getStatistics().getWeight());
+    assertEquals(1, cache.getStatistics().getEvictionCount());
+    assertEquals("value of a", cache.get("a", loader));
+    assertEquals(2, loadCount.get());
+    // The expiry is counted from the new load
+    time.addAndGet(59);
+    assertEquals("value of a", cache.getIfPresent("a"));
+  }
+
+  @Test
+  public void expiryIsCountedFromTheStartOfTheLoad() throws IOException {
+    AtomicLong time = new AtomicLong();
+    LruDocumentCache<String, String> cache = new LruDocumentCache<>(10, 100, value -> value.length(), 60,
+        time::get);
+    cache.get("a", key -> {
+      time.addAndGet(60);
+      return "slow";
+    });
+    assertNull(cache.getIfPresent("a"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsNonPositiveExpiry() {
+    new LruDocumentCache<String, String>(10, 100, value -> 0, 0, System::currentTimeMillis);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsNonPositiveMaxEntries() {
+    new LruDocumentCache<String, String>(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsNonPositiveMaxWeight() {
+    new LruDocumentCache<String, String>(10, 0, value -> 0);
+  }
+
+  @Test
+  public void concurrentReadersSeeConsistentWeight() throws Exception {
+    LruDocumentCache<String, String> cache = new LruDocumentCache<>(50, 200, value -> value.length());
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      Future<?>[] readers = new Future<?>[4];
+      for (int t = 0; t < readers.length; t++) {
+        int seed = t;
+        readers[t] = executor.submit(() -> {
+          for (int i = 0; i < 10000; i++) {
+            String key = "key" + ((i * 31 + seed) % 97);
+            if (i % 100 == 0) {
+              cache.invalidate(key);
+            } else {
+              assertEquals(key, cache.get(key, k -> k));
+            }
+          }
+          return null;
+        });
+      }
+      for (Future<?> reader : readers) {
+        reader.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    CacheStatistics statistics = cache.getStatistics();
+    assertTrue(statistics.getEntryCount() <= 50);
+    assertTrue(statistics.getWeight() <= 200);
+    long weight = 0;
+    for (int i = 0; i < 97; i++) {
+      String value = cache.getIfPresent("key" + i);
+      if (value != null) {
+        weight += value.length();
+      }
+    }
+    assertEquals(weight, statistics.getWeight());
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      if (!latch.await(10, TimeUnit.SECONDS)) {
+        throw new IllegalStateException("Timed out");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,249 @@
+package org.metadatacenter.server.dao.cache;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RequestCoalescerTest {
+
+  private static final int WAITERS = 3;
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final AtomicInteger loadCount = new AtomicInteger();
+  private final CountDownLatch loading = new CountDownLatch(1);
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  @After
+  public void shutDownExecutor() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void loadWithoutConcurrentCallersReturnsLoadedInstance() throws IOException {
+    RequestCoalescer<String, StringBuilder> coalescer = new RequestCoalescer<>(StringBuilder::new);
+    StringBuilder loaded = new StringBuilder("a");
+    assertSame(loaded, coalescer.load("a", key -> loaded));
+    assertEquals(0, coalescer.getCoalescedCount());
+  }
+
+  @Test
+  public void missingDocumentIsNull() throws IOException {
+    RequestCoalescer<String, StringBuilder> coalescer = new RequestCoalescer<>(StringBuilder::new);
+    assertNull(coalescer.load("a", key -> null));
+  }
+
+  @Test
+  public void concurrentCallersShareOneLoadAndGetTheirOwnCopies() throws Exception {
+    RequestCoalescer<String, StringBuilder> coalescer = new RequestCoalescer<>(StringBuilder::new);
+    StringBuilder loaded = new StringBuilder("value");
+    Future<StringBuilder> leader = executor.submit(() -> coalescer.load("a", blockingLoader(loaded)));
+    await(loading);
+    List<Future<StringBuilder>> waiters = startWaiters(coalescer, WAITERS);
+    release.countDown();
+
+    List<StringBuilder> results = new ArrayList<>();
+    results.add(leader.get(10, TimeUnit.SECONDS));
+    for (Future<StringBuilder> waiter : waiters) {
+      results.add(waiter.get(10, TimeUnit.SECONDS));
+    }
+    assertEquals(1, loadCount.get());
+    assertEquals(WAITERS, coalescer.getCoalescedCount());
+    for (int i = 0; i < results.size(); i++) {
+      assertEquals("value", results.get(i).toString());
+      // The loaded instance is read by the copiers, so no caller gets it
+      assertNotSame(loaded, results.get(i));
+      for (int j = 0; j < i; j++) {
+        assertNotSame(results.get(j), results.get(i));
+      }
+    }
+  }
+
+  @Test
+  public void coalescerWithoutCopierSharesTheLoadedInstance() throws Exception {
+    RequestCoalescer<String, StringBuilder> coalescer = new RequestCoalescer<>();
+    StringBuilder loaded = new StringBuilder("value");
+    Future<StringBuilder> leader = executor.submit(() -> coalescer.load("a", blockingLoader(loaded)));
+    await(loading);
+    List<Future<StringBuilder>> waiters = startWaiters(coalescer, WAITERS);
+    release.countDown();
+    assertSame(loaded, leader.get(10, TimeUnit.SECONDS));
+    for (Future<StringBuilder> waiter : waiters) {
+      assertSame(loaded, waiter.get(10, TimeUnit.SECONDS));
+    }
+  }
+
+  @Test
+  public void loadFailureIsPropagatedToWaiters() throws Exception {
+    assertFailureIsPropagated(new IOException("unavailable"));
+  }
+
+  @Test
+  public void runtimeExceptionIsPropagatedToWaiters() throws Exception {
+    assertFailureIsPropagated(new IllegalStateException("broken"));
+  }
+
+  @Test
+  public void errorIsPropagatedToWaiters() throws Exception {
+    assertFailureIsPropagated(new AssertionError("fatal"));
+  }
+
+  @Test
+  public void loadAfterFailureStartsNewLoad() throws IOException {
+    RequestCoalescer<String, StringBuilder> coalescer = new RequestCoalescer<>(StringBuilder::new);
+    try {
+      coalescer.load("a", key -> {
+        throw new IOException("unavailable");
+      });
+      fail("The failure of the loader must be propagated");
+    } catch (IOException e) {
+      assertEquals("unavailable", e.getMessage());
+    }
+    assertEquals("b", coalescer.load("a", key -> new StringBuilder("b")).toString());
+  }
+
+  @Test
+  public void forgottenLoadIsNotJoined() throws Exception {
+    RequestCoalescer<String, StringBuilder> coalescer = new RequestCoalescer<>(StringBuilder::new);
+    Future<StringBuilder> previous = executor.submit(() -> coalescer.load("a",
+        blockingLoader(new StringBuilder("previous"))));
+    await(loading);
+    coalescer.forget("a");
+    assertEquals("current", coalescer.load("a", key -> new StringBuilder("current")).toString());
+    release.countDown();
+    assertEquals("previous", previous.get(10, TimeUnit.SECONDS).toString());
+    assertEquals(0, coalescer.getCoalescedCount());
+  }
+
+  @Test
+  public void loadsForgottenAllAtOnceAreNotJoined() throws Exception {
+    RequestCoalescer<String, StringBuilder> coalescer = new RequestCoalescer<>(StringBuilder::new);
+    Future<StringBuilder> previous = executor.submit(() -> coalescer.load("a",
+        blockingLoader(new StringBuilder("previous"))));
+    await(loading);
+    coalescer.forgetAll();
+    assertEquals("current", coalescer.load("a", key -> new StringBuilder("current")).toString());
+    release.countDown();
+    assertEquals("previous", previous.get(10, TimeUnit.SECONDS).toString());
+    assertEquals(0, coalescer.getCoalescedCount());
+  }
+
+  @Test
+  public void interruptedWaiterFailsWithInterruptedIOException() throws Exception {
+    RequestCoalescer<String, StringBuilder> coalescer = new RequestCoalescer<>(StringBuilder::new);
+    Future<StringBuilder> leader = executor.submit(() -> coalescer.load("a",
+        blockingLoader(new StringBuilder("value"))));
+    await(loading);
+    AtomicInteger interruptedWaiters = new AtomicInteger();
+    Thread waiter = new Thread(() -> {
+      try {
+        coalescer.load("a", key -> new StringBuilder("not coalesced"));
+      } catch (InterruptedIOException e) {
+        if (Thread.currentThread().isInterrupted()) {
+          interruptedWaiters.incrementAndGet();
+        }
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    waiter.start();
+    while (coalescer.getCoalescedCount() == 0) {
+      Thread.sleep(1);
+    }
+    waiter.interrupt();
+    waiter.join(10000);
+    assertEquals(1, interruptedWaiters.get());
+    release.countDown();
+    assertEquals("value", leader.get(10, TimeUnit.SECONDS).toString());
+  }
+
+  private void assertFailureIsPropagated(Throwable failure) throws Exception {
+    RequestCoalescer<String, StringBuilder> coalescer = new RequestCoalescer<>(StringBuilder::new);
+    Future<StringBuilder> leader = executor.submit(() -> coalescer.load("a", key -> {
+      loadCount.incrementAndGet();
+      loading.countDown();
+      await(release);
+      if (failure instanceof IOException) {
+        throw (IOException) failure;
+      } else if (failure instanceof RuntimeException) {
+        throw (RuntimeException) failure;
+      }
+      throw (Error) failure;
+    }));
+    await(loading);
+    List<Future<StringBuilder>> waiters = startWaiters(coalescer, WAITERS);
+    release.countDown();
+    assertSame(failure, failureOf(leader));
+    for (Future<StringBuilder> waiter : waiters) {
+      assertSame(failure, failureOf(waiter));
+    }
+    assertEquals(1, loadCount.get());
+  }
+
+  /**
+   * Start callers of the load in flight, and wait until all of them have joined it
+   */
+  private List<Future<StringBuilder>> startWaiters(RequestCoalescer<String, StringBuilder> coalescer, int count)
+      throws InterruptedException {
+    long coalescedCount = coalescer.getCoalescedCount();
+    List<Future<StringBuilder>> waiters = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      waiters.add(executor.submit(() -> coalescer.load("a", key -> {
+        loadCount.incrementAndGet();
+        return new StringBuilder("not coalesced");
+      })));
+    }
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (coalescer.getCoalescedCount() < coalescedCount + count) {
+      assertTrue("The callers did not join the load in flight", System.nanoTime() < deadline);
+      Thread.sleep(1);
+    }
+    return waiters;
+  }
+
+  private DocumentLoader<String, StringBuilder> blockingLoader(StringBuilder value) {
+    return key -> {
+      loadCount.incrementAndGet();
+      loading.countDown();
+      await(release);
+      return value;
+    };
+  }
+
+  private static Throwable failureOf(Future<?> future) throws Exception {
+    try {
+      future.get(10, TimeUnit.SECONDS);
+    } catch (ExecutionException e) {
+      return e.getCause();
+    }
+    throw new AssertionError("The load did not fail");
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      if (!latch.await(10, TimeUnit.SECONDS)) {
+        throw new IllegalStateException("Timed out");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+  }
+}
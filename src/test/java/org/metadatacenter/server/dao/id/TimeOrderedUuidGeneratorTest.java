@@ -0,0 +1,105 @@
+package org.metadatacenter.server.dao.id;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimeOrderedUuidGeneratorTest {
+
+  private static final long NOW = 1500000000000L;
+
+  private final AtomicLong clock = new AtomicLong(NOW);
+  private final TimeOrderedUuidGenerator generator = new TimeOrderedUuidGenerator(clock::get, new Random(42));
+
+  @Test
+  public void uuidsHaveVersion7LayoutAndTimestamp() {
+    UUID uuid = generator.generateUuid();
+    assertEquals(7, uuid.version());
+    assertEquals(2, uuid.variant());
+    assertEquals(NOW, uuid.getMostSignificantBits() >>> 16);
+  }
+
+  @Test
+  public void idsIncreaseWithTheClock() {
+    String previous = generator.generateId();
+    for (int i = 0; i < 100; i++) {
+      clock.addAndGet(1 + i % 3);
+      previous = assertIncreasing(previous, generator.generateId());
+    }
+  }
+
+  @Test
+  public void idsIncreaseUnderFrozenClock() {
+    String previous = generator.generateId();
+    // More IDs than the counter holds in one millisecond, so that the following milliseconds are borrowed
+    for (int i = 0; i < 10000; i++) {
+      previous = assertIncreasing(previous, generator.generateId());
+    }
+    assertTrue(timestampOf(previous) > NOW);
+  }
+
+  @Test
+  public void idsIncreaseWhenClockGoesBackwards() {
+    String previous = generator.generateId();
+    clock.addAndGet(-5000);
+    for (int i = 0; i < 100; i++) {
+      previous = assertIncreasing(previous, generator.generateId());
+    }
+    assertEquals(NOW, timestampOf(previous));
+    // Once the clock catches up, the timestamps follow it again
+    clock.set(NOW + 10);
+    previous = assertIncreasing(previous, generator.generateId());
+    assertEquals(NOW + 10, timestampOf(previous));
+  }
+
+  @Test
+  public void idsIncreaseAfterBorrowedMillisecondsWhenClockCatchesUp() {
+    String previous = generator.generateId();
+    for (int i = 0; i < 5000; i++) {
+      previous = generator.generateId();
+    }
+    long borrowed = timestampOf(previous);
+    clock.set(borrowed);
+    previous = assertIncreasing(previous, generator.generateId());
+    clock.set(borrowed + 1);
+    assertIncreasing(previous, generator.generateId());
+  }
+
+  @Test
+  public void concurrentIdsAreUnique() throws InterruptedException {
+    TimeOrderedUuidGenerator shared = new TimeOrderedUuidGenerator();
+    Set<String> ids = ConcurrentHashMap.newKeySet();
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread(() -> {
+        for (int i = 0; i < 10000; i++) {
+          ids.add(shared.generateId());
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(40000, ids.size());
+  }
+
+  /**
+   * The @id index orders the string form of the IDs, so that is the order that must increase
+   */
+  private static String assertIncreasing(String previous, String next) {
+    assertTrue(previous + " must sort before " + next, previous.compareTo(next) < 0);
+    return next;
+  }
+
+  private static long timestampOf(String id) {
+    return UUID.fromString(id).getMostSignificantBits() >>> 16;
+  }
+}
@@ -0,0 +1,345 @@
+package org.metadatacenter.server.dao.mongodb;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.ServerCursor;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCursor;
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CursorPublisherTest {
+
+  private static final List<Integer> ELEMENTS = Arrays.asList(1, 2, 3, 4, 5);
+
+  private final List<TestCursor> cursors = new ArrayList<>();
+
+  @Test
+  public void deliversOnlyRequestedElements() {
+    RecordingSubscriber subscriber = subscribe(publisher(ELEMENTS, Runnable::run));
+    assertTrue("The cursor must be opened on the first request", cursors.isEmpty());
+    subscriber.subscription.request(2);
+    assertEquals(Arrays.asList(1, 2), subscriber.elements);
+    assertEquals(2, cursors.get(0).readCount);
+    subscriber.subscription.request(2);
+    assertEquals(Arrays.asList(1, 2, 3, 4), subscriber.elements);
+    assertFalse(subscriber.completed);
+    subscriber.subscription.request(10);
+    assertEquals(ELEMENTS, subscriber.elements);
+    assertTrue(subscriber.completed);
+    assertNull(subscriber.error);
+    assertEquals(1, cursors.size());
+    assertTrue(cursors.get(0).closed);
+  }
+
+  @Test
+  public void unboundedDemandDeliversAllElements() {
+    RecordingSubscriber subscriber = subscribe(publisher(ELEMENTS, Runnable::run));
+    subscriber.subscription.request(Long.MAX_VALUE);
+    subscriber.subscription.request(Long.MAX_VALUE);
+    assertEquals(ELEMENTS, subscriber.elements);
+    assertTrue(subscriber.completed);
+  }
+
+  @Test
+  public void emptyResultCompletes() {
+    RecordingSubscriber subscriber = subscribe(publisher(Collections.emptyList(), Runnable::run));
+    subscriber.subscription.request(1);
+    assertTrue(subscriber.elements.isEmpty());
+    assertTrue(subscriber.completed);
+  }
+
+  @Test
+  public void zeroRequestSignalsErrorAndClosesCursor() {
+    assertInvalidRequest(0);
+  }
+
+  @Test
+  public void negativeRequestSignalsErrorAndClosesCursor() {
+    assertInvalidRequest(-1);
+  }
+
+  @Test
+  public void cancellationClosesCursorAndStopsSignals() {
+    RecordingSubscriber subscriber = subscribe(publisher(ELEMENTS, Runnable::run));
+    subscriber.subscription.request(2);
+    subscriber.subscription.cancel();
+    assertTrue(cursors.get(0).closed);
+    subscriber.subscription.request(2);
+    subscriber.subscription.cancel();
+    assertEquals(Arrays.asList(1, 2), subscriber.elements);
+    assertFalse(subscriber.completed);
+    assertNull(subscriber.error);
+  }
+
+  @Test
+  public void cancellationFromOnNextStopsDelivery() {
+    RecordingSubscriber subscriber = new RecordingSubscriber() {
+      @Override
+      public void onNext(Integer element) {
+        super.onNext(element);
+        if (element == 2) {
+          subscription.cancel();
+        }
+      }
+    };
+    publisher(ELEMENTS, Runnable::run).subscribe(subscriber);
+    subscriber.subscription.request(Long.MAX_VALUE);
+    assertEquals(Arrays.asList(1, 2), subscriber.elements);
+    assertTrue(cursors.get(0).closed);
+    assertFalse(subscriber.completed);
+  }
+
+  @Test
+  public void requestFromOnNextDoesNotReenterOnNext() {
+    AtomicInteger depth = new AtomicInteger();
+    AtomicInteger maxDepth = new AtomicInteger();
+    RecordingSubscriber subscriber = new RecordingSubscriber() {
+      @Override
+      public void onNext(Integer element) {
+        maxDepth.accumulateAndGet(depth.incrementAndGet(), Math::max);
+        super.onNext(element);
+        subscription.request(1);
+        depth.decrementAndGet();
+      }
+    };
+    // With a synchronous executor, a reentrant delivery would run within the request made by onNext
+    publisher(ELEMENTS, Runnable::run).subscribe(subscriber);
+    subscriber.subscription.request(1);
+    assertEquals(ELEMENTS, subscriber.elements);
+    assertTrue(subscriber.completed);
+    assertEquals(1, maxDepth.get());
+  }
+
+  @Test
+  public void concurrentRequestsAreDeliveredSerially() throws InterruptedException {
+    List<Integer> elements = IntStream.range(0, 10000).boxed().collect(Collectors.toList());
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    AtomicInteger concurrentSignals = new AtomicInteger();
+    AtomicInteger overlaps = new AtomicInteger();
+    CountDownLatch completion = new CountDownLatch(1);
+    RecordingSubscriber subscriber = new RecordingSubscriber() {
+      @Override
+      public void onNext(Integer element) {
+        if (concurrentSignals.incrementAndGet() != 1) {
+          overlaps.incrementAndGet();
+        }
+        super.onNext(element);
+        concurrentSignals.decrementAndGet();
+      }
+
+      @Override
+      public void onComplete() {
+        super.onComplete();
+        completion.countDown();
+      }
+    };
+    try {
+      publisher(elements, executor).subscribe(subscriber);
+      Thread[] requesters = new Thread[4];
+      for (int t = 0; t < requesters.length; t++) {
+        requesters[t] = new Thread(() -> {
+          for (int i = 0; i < 2501; i++) {
+            subscriber.subscription.request(1);
+          }
+        });
+        requesters[t].start();
+      }
+      for (Thread requester : requesters) {
+        requester.join();
+      }
+      assertTrue(completion.await(10, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals(0, overlaps.get());
+    assertEquals(elements, subscriber.elements);
+    assertNull(subscriber.error);
+  }
+
+  @Test
+  public void cursorFailureSignalsErrorAndClosesCursor() {
+    IllegalStateException failure = new IllegalStateException("connection lost");
+    TestCursor failingCursor = new TestCursor(ELEMENTS) {
+      @Override
+      public Integer next() {
+        if (readCount == 2) {
+          throw failure;
+        }
+        return super.next();
+      }
+    };
+    RecordingSubscriber subscriber = subscribe(new CursorPublisher<>(findIterable(() -> failingCursor),
+        Runnable::run));
+    subscriber.subscription.request(5);
+    assertEquals(Arrays.asList(1, 2), subscriber.elements);
+    assertEquals(failure, subscriber.error);
+    assertTrue(failingCursor.closed);
+  }
+
+  @Test
+  public void rejectedDeliverySignalsError() {
+    RecordingSubscriber subscriber = subscribe(publisher(ELEMENTS, runnable -> {
+      throw new RejectedExecutionException("shut down");
+    }));
+    subscriber.subscription.request(1);
+    assertTrue(subscriber.error instanceof RejectedExecutionException);
+    assertTrue(subscriber.elements.isEmpty());
+  }
+
+  @Test
+  public void eachSubscriberGetsItsOwnCursor() {
+    CursorPublisher<Integer> publisher = publisher(ELEMENTS, Runnable::run);
+    RecordingSubscriber first = subscribe(publisher);
+    RecordingSubscriber second = subscribe(publisher);
+    first.subscription.request(Long.MAX_VALUE);
+    second.subscription.request(1);
+    assertEquals(ELEMENTS, first.elements);
+    assertEquals(Collections.singletonList(1), second.elements);
+    assertEquals(2, cursors.size());
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void nullSubscriberIsRejected() {
+    publisher(ELEMENTS, Runnable::run).subscribe(null);
+  }
+
+  private void assertInvalidRequest(long n) {
+    RecordingSubscriber subscriber = subscribe(publisher(ELEMENTS, Runnable::run));
+    subscriber.subscription.request(1);
+    subscriber.subscription.request(n);
+    assertTrue(subscriber.error instanceof IllegalArgumentException);
+    assertTrue(cursors.get(0).closed);
+    subscriber.subscription.request(1);
+    assertEquals(Collections.singletonList(1), subscriber.elements);
+    assertFalse(subscriber.completed);
+    assertEquals(1, subscriber.terminalSignals);
+  }
+
+  private RecordingSubscriber subscribe(CursorPublisher<Integer> publisher) {
+    RecordingSubscriber subscriber = new RecordingSubscriber();
+    publisher.subscribe(subscriber);
+    return subscriber;
+  }
+
+  private CursorPublisher<Integer> publisher(List<Integer> elements, Executor executor) {
+    return new CursorPublisher<>(findIterable(() -> {
+      TestCursor cursor = new TestCursor(elements);
+      cursors.add(cursor);
+      return cursor;
+    }), executor);
+  }
+
+  /**
+   * Find iterable that only supports opening a cursor, which is all the publisher uses
+   */
+  @SuppressWarnings("unchecked")
+  private static FindIterable<Integer> findIterable(Supplier<MongoCursor<Integer>> cursors) {
+    return (FindIterable<Integer>) Proxy.newProxyInstance(CursorPublisherTest.class.getClassLoader(),
+        new Class<?>[]{FindIterable.class}, (proxy, method, args) -> {
+          if (method.getName().equals("iterator")) {
+            return cursors.get();
+          }
+          throw new UnsupportedOperationException(method.getName());
+        });
+  }
+
+  private static class TestCursor implements MongoCursor<Integer> {
+
+    private final List<Integer> elements;
+    int readCount;
+    volatile boolean closed;
+
+    TestCursor(List<Integer> elements) {
+      this.elements = elements;
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (closed) {
+        throw new IllegalStateException("The cursor is closed");
+      }
+      return readCount < elements.size();
+    }
+
+    @Override
+    public Integer next() {
+      if (closed) {
+        throw new IllegalStateException("The cursor is closed");
+      }
+      return elements.get(readCount++);
+    }
+
+    @Override
+    public Integer tryNext() {
+      return hasNext() ? next() : null;
+    }
+
+    @Override
+    public ServerCursor getServerCursor() {
+      return null;
+    }
+
+    @Override
+    public ServerAddress getServerAddress() {
+      return null;
+    }
+  }
+
+  private static class RecordingSubscriber implements Subscriber<Integer> {
+
+    final List<Integer> elements = Collections.synchronizedList(new ArrayList<>());
+    volatile Subscription subscription;
+    volatile boolean completed;
+    volatile Throwable error;
+    volatile int terminalSignals;
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+      this.subscription = subscription;
+    }
+
+    @Override
+    public void onNext(Integer element) {
+      elements.add(element);
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      error = t;
+      terminalSignals++;
+    }
+
+    @Override
+    public void onComplete() {
+      completed = true;
+      terminalSignals++;
+    }
+  }
+}
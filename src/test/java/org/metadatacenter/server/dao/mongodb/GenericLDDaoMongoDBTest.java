@@ -0,0 +1,415 @@
+package org.metadatacenter.server.dao.mongodb;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.fakemongo.Fongo;
+import com.mongodb.MongoClient;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+import org.metadatacenter.server.service.BulkCreateReport;
+import org.metadatacenter.server.service.FieldFilter;
+import org.metadatacenter.server.service.FieldNameInEx;
+import org.metadatacenter.server.service.Page;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GenericLDDaoMongoDBTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final String BASE_PATH = "https://repo.metadatacenter.org/template-fields/";
+
+  private GenericLDDaoMongoDB dao;
+
+  @Before
+  public void createDao() {
+    dao = new GenericLDDaoMongoDB(new Fongo("test").getMongo(), "cedar", "template-fields", BASE_PATH);
+  }
+
+  @Test
+  public void createOnlyAddsTheLinkedDataIdToTheElement() throws IOException {
+    ObjectNode element = field("name");
+    JsonNode original = element.deepCopy();
+    JsonNode created = dao.create(element);
+
+    String id = element.get("@id").textValue();
+    assertTrue(id.startsWith(BASE_PATH));
+    assertFalse(element.has("_id"));
+    original = ((ObjectNode) original).put("@id", id);
+    assertEquals(original, element);
+
+    assertEquals(id, created.get("@id").textValue());
+    assertNotNull(created.get("_id").get("$oid"));
+    // The created element is a copy, so changing it does not change the element
+    ((ObjectNode) created).put("name", "changed");
+    assertEquals("name", element.get("name").textValue());
+    assertEquals(element, withoutMongoId(dao.find(id)));
+  }
+
+  @Test
+  public void fieldsCreatedWithinATemplateDoNotAddTheMongoIdToIt() throws IOException {
+    // As in TemplateFieldServiceMongoDB.saveNewFieldsAndReplaceIds, the fields are created where they are
+    ObjectNode template = MAPPER.createObjectNode().put("$schema", "http://json-schema.org/draft-04/schema#");
+    ObjectNode properties = template.putObject("properties");
+    properties.set("first", field("first"));
+    properties.set("second", field("second"));
+    dao.create(properties.get("first"));
+    dao.create(properties.get("second"));
+
+    assertFalse(template.toString(), template.toString().contains("_id"));
+    for (JsonNode field : properties) {
+      assertTrue(field.get("@id").textValue().startsWith(BASE_PATH));
+      assertEquals(field, withoutMongoId(dao.find(field.get("@id").textValue())));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void createRejectsElementsWithALinkedDataId() throws IOException {
+    dao.create(field("name").put("@id", BASE_PATH + "given"));
+  }
+
+  @Test
+  public void createAllCreatesEveryElementAcrossBatches() throws IOException {
+    dao.setBulkInsertBatchSize(2);
+    List<JsonNode> elements = fields(5);
+    BulkCreateReport<JsonNode> report = dao.createAll(elements);
+    assertTrue(report.isSuccess());
+    assertEquals(5, report.getCreatedCount());
+    assertEquals(5, dao.count());
+    for (int i = 0; i < elements.size(); i++) {
+      JsonNode created = report.getCreated().get(i);
+      assertEquals(elements.get(i).get("@id"), created.get("@id"));
+      assertFalse(elements.get(i).has("_id"));
+      assertEquals(elements.get(i), withoutMongoId(dao.find(created.get("@id").textValue())));
+    }
+  }
+
+  @Test
+  public void orderedCreateAllStopsAtTheFirstFailure() throws IOException {
+    dao.setBulkInsertBatchSize(2);
+    dao.setBulkInsertOrdered(true);
+    List<JsonNode> elements = fields(6);
+    ((ObjectNode) elements.get(3)).put("@id", BASE_PATH + "given");
+    ((ObjectNode) elements.get(5)).put("@id", BASE_PATH + "given too");
+    BulkCreateReport<JsonNode> report = dao.createAll(elements);
+
+    assertFalse(report.isSuccess());
+    // The elements before the failure are created, in the full first batch and in the partial second one
+    assertEquals(Arrays.asList(0, 1, 2), new ArrayList<>(report.getCreated().keySet()));
+    assertEquals(Arrays.asList(3, 4, 5), new ArrayList<>(report.getFailures().keySet()));
+    assertEquals(GenericLDDaoMongoDB.LINKED_DATA_ID_NOT_ALLOWED, report.getFailures().get(3));
+    assertEquals(BulkCreateReport.NOT_ATTEMPTED, report.getFailures().get(4));
+    assertEquals(BulkCreateReport.NOT_ATTEMPTED, report.getFailures().get(5));
+    assertEquals(3, dao.count());
+    assertFalse("Elements that were not attempted get no @id", elements.get(4).has("@id"));
+    assertEquals(BASE_PATH + "given", elements.get(3).get("@id").textValue());
+  }
+
+  @Test
+  public void unorderedCreateAllReportsEachFailureAtItsIndex() throws IOException {
+    dao.setBulkInsertBatchSize(2);
+    dao.setBulkInsertOrdered(false);
+    List<JsonNode> elements = fields(7);
+    for (int failed : new int[]{0, 3, 4, 6}) {
+      ((ObjectNode) elements.get(failed)).put("@id", BASE_PATH + "given " + failed);
+    }
+    BulkCreateReport<JsonNode> report = dao.createAll(elements);
+
+    assertEquals(Arrays.asList(1, 2, 5), new ArrayList<>(report.getCreated().keySet()));
+    assertEquals(Arrays.asList(0, 3, 4, 6), new ArrayList<>(report.getFailures().keySet()));
+    for (String failure : report.getFailures().values()) {
+      assertEquals(GenericLDDaoMongoDB.LINKED_DATA_ID_NOT_ALLOWED, failure);
+    }
+    assertEquals(3, dao.count());
+    for (int created : report.getCreated().keySet()) {
+      assertEquals("field " + created, report.getCreated().get(created).get("name").textValue());
+      assertTrue(dao.exists(elements.get(created).get("@id").textValue()));
+    }
+  }
+
+  @Test
+  public void createAllOfNothingSucceeds() throws IOException {
+    BulkCreateReport<JsonNode> report = dao.createAll(new ArrayList<>());
+    assertTrue(report.isSuccess());
+    assertEquals(0, report.getCreatedCount());
+  }
+
+  @Test
+  public void pagesCoverAllElementsInCreationOrder() throws IOException {
+    List<String> names = createFields(7);
+    List<String> pagedNames = new ArrayList<>();
+    List<Integer> pageSizes = new ArrayList<>();
+    String token = null;
+    do {
+      Page<JsonNode> page = dao.findPage(3, token, null, null);
+      pageSizes.add(page.getItems().size());
+      for (JsonNode item : page.getItems()) {
+        pagedNames.add(item.get("name").textValue());
+      }
+      token = page.getContinuationToken();
+      assertEquals(token != null, page.hasMore());
+    } while (token != null);
+    assertEquals(names, pagedNames);
+    assertEquals(Arrays.asList(3, 3, 1), pageSizes);
+  }
+
+  @Test
+  public void fullLastPageHasNoContinuationToken() throws IOException {
+    createFields(6);
+    Page<JsonNode> first = dao.findPage(3, null, null, null);
+    assertNotNull(first.getContinuationToken());
+    Page<JsonNode> last = dao.findPage(3, first.getContinuationToken(), null, null);
+    assertEquals(3, last.getItems().size());
+    assertNull(last.getContinuationToken());
+  }
+
+  @Test
+  public void tokenOfTheLastElementGivesAnEmptyLastPage() throws IOException {
+    createFields(2);
+    List<JsonNode> all = dao.findPage(GenericLDDaoMongoDB.MAX_PAGE_SIZE, null, null, null).getItems();
+    String token = GenericLDDaoMongoDB.encodeContinuationToken(all.get(all.size() - 1));
+    Page<JsonNode> page = dao.findPage(10, token, null, null);
+    assertTrue(page.getItems().isEmpty());
+    assertNull(page.getContinuationToken());
+    assertFalse(page.hasMore());
+  }
+
+  @Test
+  public void emptyCollectionHasOneEmptyPage() throws IOException {
+    Page<JsonNode> page = dao.findPage(10, null, null, null);
+    assertTrue(page.getItems().isEmpty());
+    assertNull(page.getContinuationToken());
+  }
+
+  @Test
+  public void continuationTokenIsTheUrlSafeObjectId() {
+    for (int i = 0; i < 100; i++) {
+      ObjectId objectId = new ObjectId();
+      String token = GenericLDDaoMongoDB.encodeContinuationToken(
+          MAPPER.createObjectNode().set("_id", MAPPER.createObjectNode().put("$oid", objectId.toHexString())));
+      assertEquals(16, token.length());
+      assertTrue(token, token.matches("[A-Za-z0-9_-]+"));
+      assertEquals(objectId, GenericLDDaoMongoDB.decodeContinuationToken(token));
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void continuationTokenRequiresAnObjectId() {
+    GenericLDDaoMongoDB.encodeContinuationToken(MAPPER.createObjectNode().put("_id", "custom"));
+  }
+
+  @Test
+  public void malformedOrTamperedTokensAreRejected() throws IOException {
+    createFields(3);
+    String token = dao.findPage(1, null, null, null).getContinuationToken();
+    String[] invalidTokens = {"", "not a token", token.substring(1), token + "A", token + "AAAA", token + "==",
+        token.replace(token.charAt(0), '+'), token.replace(token.charAt(0), '/'), "AAAA"};
+    for (String invalidToken : invalidTokens) {
+      try {
+        dao.findPage(1, invalidToken, null, null);
+        fail("The token " + invalidToken + " must be rejected");
+      } catch (IllegalArgumentException e) {
+        assertEquals("Invalid continuation token", e.getMessage());
+      }
+    }
+  }
+
+  @Test
+  public void pageSizeIsLimited() throws IOException {
+    createFields(1);
+    assertEquals(1, dao.findPage(GenericLDDaoMongoDB.MAX_PAGE_SIZE, null, null, null).getItems().size());
+    for (int limit : new int[]{0, -1, GenericLDDaoMongoDB.MAX_PAGE_SIZE + 1, Integer.MAX_VALUE}) {
+      try {
+        dao.findPage(limit, null, null, null);
+        fail("The page size " + limit + " must be rejected");
+      } catch (IllegalArgumentException e) {
+        // Expected
+      }
+    }
+  }
+
+  @Test
+  public void storedPathsAreEscapedWithoutDuplicatesOrNestedPaths() {
+    assertEquals(Arrays.asList("_$schema", "properties._$schema"),
+        GenericLDDaoMongoDB.toStoredPaths(Arrays.asList("$schema", "properties.$schema")));
+    assertEquals(Collections.singletonList("name"), GenericLDDaoMongoDB.toStoredPaths(Arrays.asList("name", "name")));
+    assertEquals(Collections.singletonList("_ui"),
+        GenericLDDaoMongoDB.toStoredPaths(Arrays.asList("_ui.order", "_ui", "_ui.propertyLabels")));
+    assertEquals(Collections.singletonList("_ui"),
+        GenericLDDaoMongoDB.toStoredPaths(Arrays.asList("_ui", "_ui.order")));
+    // A common prefix is not enough to make a path nested
+    assertEquals(Arrays.asList("name", "names", "name2.x"),
+        GenericLDDaoMongoDB.toStoredPaths(Arrays.asList("name", "names", "name2.x")));
+  }
+
+  @Test
+  public void projectionOfIncludedFieldsExcludesTheMongoIdUnlessItIsIncluded() {
+    assertEquals(BsonDocument.parse("{name: 1, '_$schema': 1, _id: 0}"),
+        render(GenericLDDaoMongoDB.buildProjection(Arrays.asList("name", "$schema"), FieldNameInEx.INCLUDE)));
+    assertEquals(BsonDocument.parse("{_id: 1, name: 1}"),
+        render(GenericLDDaoMongoDB.buildProjection(Arrays.asList("_id", "name"), FieldNameInEx.INCLUDE)));
+    assertEquals(BsonDocument.parse("{'properties._$schema': 0, _id: 0}"), render(GenericLDDaoMongoDB.buildProjection(
+        Arrays.asList("properties.$schema", "_id"), FieldNameInEx.EXCLUDE)));
+  }
+
+  @Test
+  public void noFieldNamesMeansNoProjection() {
+    assertNull(GenericLDDaoMongoDB.buildProjection(null, FieldNameInEx.INCLUDE));
+    assertNull(GenericLDDaoMongoDB.buildProjection(Collections.emptyList(), FieldNameInEx.EXCLUDE));
+  }
+
+  @Test
+  public void findAllReturnsOnlyTheIncludedFields() throws IOException {
+    dao.create(field("name"));
+    JsonNode element = dao.findAll(Arrays.asList("name", "$schema", "properties.@value.type", "properties"),
+        FieldNameInEx.INCLUDE).get(0);
+    assertEquals(MAPPER.readTree("{\"name\":\"name\",\"$schema\":\"http://json-schema.org/draft-04/schema#\","
+        + "\"properties\":{\"@value\":{\"type\":\"string\"}}}"), element);
+  }
+
+  @Test
+  public void findAllOmitsTheExcludedFields() throws IOException {
+    ObjectNode created = (ObjectNode) dao.create(field("name"));
+    JsonNode element = dao.findAll(Arrays.asList("_id", "$schema", "_ui"), FieldNameInEx.EXCLUDE).get(0);
+    created.remove("_id");
+    created.remove("$schema");
+    created.remove("_ui");
+    assertEquals(created, element);
+  }
+
+  @Test
+  public void pagesKeepTheirTokenWhenTheMongoIdIsNotIncluded() throws IOException {
+    createFields(3);
+    Page<JsonNode> page = dao.findPage(2, null, Collections.singletonList("name"), FieldNameInEx.INCLUDE);
+    assertEquals(MAPPER.createObjectNode().put("name", "field 0"), page.getItems().get(0));
+    page = dao.findPage(2, page.getContinuationToken(), Collections.singletonList("_id"), FieldNameInEx.EXCLUDE);
+    assertEquals(1, page.getItems().size());
+    assertEquals("field 2", page.getItems().get(0).get("name").textValue());
+    assertFalse(page.getItems().get(0).has("_id"));
+  }
+
+  private static BsonDocument render(Bson projection) {
+    return projection.toBsonDocument(BsonDocument.class, MongoClient.getDefaultCodecRegistry());
+  }
+
+  @Test
+  public void queryOnLinkedDataIdsMatchesBothStoredForms() throws IOException {
+    dao = unindexedDao();
+    String stringId = dao.create(field("string")).get("@id").textValue();
+    dao.setCompactLinkedDataIds(true);
+    String binaryId = dao.create(field("binary")).get("@id").textValue();
+    assertTrue(storedLinkedDataId(new Document("name", "binary")).isBinary());
+
+    // The elements are told apart by name, since Fongo returns binary UUIDs with the legacy subtype
+    String[][] cases = {{stringId, "string"}, {binaryId, "binary"}};
+    for (String[] testCase : cases) {
+      List<JsonNode> items = dao.query(Collections.singletonList(FieldFilter.eq("@id", testCase[0])), null, null,
+          null, null).getItems();
+      assertEquals(1, items.size());
+      assertEquals(testCase[1], items.get(0).get("name").textValue());
+    }
+    List<JsonNode> items = dao.query(Collections.singletonList(FieldFilter.in("@id", Arrays.asList(stringId,
+        binaryId, BASE_PATH + "missing"))), null, null, null, null).getItems();
+    assertEquals(2, items.size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void queryRejectsRangesOnCompactLinkedDataIds() throws IOException {
+    dao.setCompactLinkedDataIds(true);
+    dao.query(Collections.singletonList(FieldFilter.gt("@id", BASE_PATH)), null, null, null, null);
+  }
+
+  @Test
+  public void migrationConvertsTheUuidIdsToBinary() throws IOException {
+    dao = unindexedDao();
+    List<String> ids = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      ids.add(dao.create(field("field " + i)).get("@id").textValue());
+      assertTrue(storedLinkedDataId(new Document("name", "field " + i)).isString());
+    }
+    dao.setIdGenerator(() -> "custom-id");
+    String customId = dao.create(field("custom")).get("@id").textValue();
+    dao.setCompactLinkedDataIds(true);
+    dao.setBulkInsertBatchSize(1);
+
+    assertEquals(5, dao.migrateLinkedDataIdsToBinary());
+    for (int i = 0; i < ids.size(); i++) {
+      assertTrue(storedLinkedDataId(new Document("name", "field " + i)).isBinary());
+      assertEquals("field " + i, dao.find(ids.get(i)).get("name").textValue());
+    }
+    assertEquals(new BsonString(customId), storedLinkedDataId(new Document("name", "custom")));
+    assertEquals(0, dao.migrateLinkedDataIdsToBinary());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void migrationRequiresCompactLinkedDataIds() {
+    dao.migrateLinkedDataIdsToBinary();
+  }
+
+  private BsonValue storedLinkedDataId(Bson filter) {
+    return dao.entityCollection.withDocumentClass(BsonDocument.class).find(filter).first().get("@id");
+  }
+
+  /**
+   * Fongo cannot order binary and string linked data IDs within one index, which a real server does.
+   */
+  private static GenericLDDaoMongoDB unindexedDao() {
+    return new GenericLDDaoMongoDB(new Fongo("unindexed").getMongo(), "cedar", "template-fields", BASE_PATH) {
+      @Override
+      protected void ensureIndexes() {
+      }
+
+      @Override
+      public String findIndexFor(List<FieldFilter> filters) {
+        return null;
+      }
+    };
+  }
+
+  private static List<JsonNode> fields(int count) {
+    List<JsonNode> fields = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      fields.add(field("field " + i));
+    }
+    return fields;
+  }
+
+  private List<String> createFields(int count) throws IOException {
+    List<String> names = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      names.add("field " + i);
+      dao.create(field("field " + i));
+    }
+    return names;
+  }
+
+  static ObjectNode field(String name) {
+    ObjectNode field = MAPPER.createObjectNode().put("$schema", "http://json-schema.org/draft-04/schema#")
+        .put("@type", "https://schema.metadatacenter.org/core/TemplateField").put("name", name);
+    field.putObject("_ui").put("inputType", "textfield");
+    field.putObject("properties").putObject("@value").put("type", "string");
+    return field;
+  }
+
+  static JsonNode withoutMongoId(JsonNode element) {
+    ((ObjectNode) element).remove("_id");
+    return element;
+  }
+}
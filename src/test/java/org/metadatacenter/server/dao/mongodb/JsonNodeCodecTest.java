@@ -0,0 +1,190 @@
+package org.metadatacenter.server.dao.mongodb;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.bson.BsonArray;
+import org.bson.BsonBinary;
+import org.bson.BsonDateTime;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.BsonDouble;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonNull;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JsonNodeCodecTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final String BASE_PATH = "https://repo.metadatacenter.org/templates/";
+
+  private final JsonNodeCodec codec = new JsonNodeCodec();
+
+  @Test
+  public void dollarKeysAreEscapedAtTheRootAndNested() throws IOException {
+    JsonNode element = MAPPER.readTree("{\"$schema\":\"http://json-schema.org/draft-04/schema#\","
+        + "\"properties\":{\"name\":{\"$schema\":\"s\",\"$ref\":\"#/r\",\"_$id\":\"i\",\"type\":\"string\"}},"
+        + "\"items\":[{\"$comment\":\"c\"},\"$notAKey\"]}");
+    BsonDocument stored = encode(element);
+    assertEquals(new BsonString("http://json-schema.org/draft-04/schema#"), stored.get("_$schema"));
+    assertFalse(stored.containsKey("$schema"));
+    BsonDocument name = stored.getDocument("properties").getDocument("name");
+    assertEquals(new BsonString("s"), name.get("_$schema"));
+    assertEquals(new BsonString("#/r"), name.get("_$ref"));
+    assertEquals(new BsonString("i"), name.get("__$id"));
+    assertEquals(new BsonString("c"), stored.getArray("items").get(0).asDocument().get("_$comment"));
+    // Values are never escaped
+    assertEquals(new BsonString("$notAKey"), stored.getArray("items").get(1));
+    assertEquals(element, decode(stored));
+  }
+
+  @Test
+  public void objectIdIsWrittenFirstAndReadBack() throws IOException {
+    ObjectId objectId = new ObjectId();
+    JsonNode element = MAPPER.readTree("{\"name\":\"n\",\"_id\":{\"$oid\":\"" + objectId.toHexString() + "\"}}");
+    BsonDocument stored = encode(element);
+    assertEquals("_id", stored.keySet().iterator().next());
+    assertEquals(new BsonObjectId(objectId), stored.get("_id"));
+    assertEquals(new BsonObjectId(objectId), codec.getDocumentId(element));
+    assertEquals(element, decode(stored));
+  }
+
+  @Test
+  public void otherIdsAreWrittenAsTheyAre() throws IOException {
+    JsonNode element = MAPPER.readTree("{\"_id\":\"custom\",\"nested\":{\"$oid\":\"not an ObjectId\"}}");
+    BsonDocument stored = encode(element);
+    assertEquals(new BsonString("custom"), stored.get("_id"));
+    assertEquals(new BsonString("not an ObjectId"), stored.getDocument("nested").get("_$oid"));
+    assertEquals(element, decode(stored));
+  }
+
+  @Test
+  public void generatedIdIsAnObjectId() {
+    ObjectNode element = JsonNodeFactory.instance.objectNode().put("name", "n");
+    assertFalse(codec.documentHasId(element));
+    codec.generateIdIfAbsentFromDocument(element);
+    assertTrue(codec.documentHasId(element));
+    assertTrue(codec.getDocumentId(element).isObjectId());
+  }
+
+  @Test
+  public void numbersKeepTheirType() throws IOException {
+    JsonNode element = MAPPER.readTree("{\"int\":42,\"long\":" + Long.MAX_VALUE + ",\"negativeLong\":"
+        + Long.MIN_VALUE + ",\"double\":0.5,\"exponent\":1.5e300}");
+    BsonDocument stored = encode(element);
+    assertEquals(new BsonInt32(42), stored.get("int"));
+    assertEquals(new BsonInt64(Long.MAX_VALUE), stored.get("long"));
+    assertEquals(new BsonInt64(Long.MIN_VALUE), stored.get("negativeLong"));
+    assertEquals(new BsonDouble(0.5), stored.get("double"));
+    assertEquals(new BsonDouble(1.5e300), stored.get("exponent"));
+    JsonNode decoded = decode(stored);
+    assertEquals(element, decoded);
+    assertTrue(decoded.get("long").isLong());
+    assertTrue(decoded.get("double").isDouble());
+  }
+
+  @Test
+  public void bigIntegersInTheLongRangeAreStoredAsInt64() {
+    ObjectNode element = JsonNodeFactory.instance.objectNode();
+    element.set("n", JsonNodeFactory.instance.numberNode(BigInteger.valueOf(Long.MAX_VALUE)));
+    assertEquals(new BsonInt64(Long.MAX_VALUE), encode(element).get("n"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void bigIntegersBeyondTheLongRangeAreRejected() {
+    ObjectNode element = JsonNodeFactory.instance.objectNode();
+    element.set("n", JsonNodeFactory.instance.numberNode(BigInteger.ONE.shiftLeft(64)));
+    encode(element);
+  }
+
+  @Test
+  public void datesAndBinaryValuesSurviveReadAndWrite() {
+    BsonDocument stored = new BsonDocument("created", new BsonDateTime(1500000000000L))
+        .append("nested", new BsonDocument("data", new BsonBinary(new byte[]{1, 2, (byte) 0xFF})))
+        .append("uuid", new BsonBinary((byte) 4, new byte[16]))
+        .append("objectIds", new BsonArray(Collections.singletonList(new BsonObjectId(new ObjectId()))));
+    JsonNode decoded = decode(stored);
+    assertEquals(1500000000000L, decoded.get("created").get("$date").longValue());
+    assertEquals("AQL/", decoded.get("nested").get("data").get("$binary").textValue());
+    assertEquals("0", decoded.get("nested").get("data").get("$type").textValue());
+    assertEquals("4", decoded.get("uuid").get("$type").textValue());
+    // A document that is read and written back keeps the BSON types
+    assertEquals(stored, encode(decoded));
+  }
+
+  @Test
+  public void objectsThatOnlyLookLikeBsonValuesStayObjects() throws IOException {
+    JsonNode element = MAPPER.readTree("{\"a\":{\"$date\":\"yesterday\"},\"b\":{\"$date\":1,\"x\":2},"
+        + "\"c\":{\"$binary\":\"not base64!\",\"$type\":\"0\"},\"d\":{\"$binary\":\"AQ==\",\"$type\":\"zz\"}}");
+    BsonDocument stored = encode(element);
+    for (String key : new String[]{"a", "b", "c", "d"}) {
+      assertTrue(key, stored.get(key).isDocument());
+    }
+    assertEquals(element, decode(stored));
+  }
+
+  @Test
+  public void nullsAndEmptyContainersSurvive() throws IOException {
+    JsonNode element = MAPPER.readTree("{\"null\":null,\"empty\":[],\"emptyObject\":{},\"nested\":[[],[null]]}");
+    BsonDocument stored = encode(element);
+    assertEquals(BsonNull.VALUE, stored.get("null"));
+    assertTrue(stored.getArray("empty").isEmpty());
+    assertTrue(stored.getDocument("emptyObject").isEmpty());
+    assertEquals(element, decode(stored));
+  }
+
+  @Test
+  public void rootLinkedDataIdUsesTheStoredFormOfTheMapper() {
+    LinkedDataIdMapper mapper = new LinkedDataIdMapper(BASE_PATH);
+    mapper.setCompact(true);
+    JsonNodeCodec compactCodec = new JsonNodeCodec(JsonNodeFactory.instance, mapper);
+    String id = BASE_PATH + UUID.randomUUID();
+    ObjectNode element = JsonNodeFactory.instance.objectNode().put("@id", id);
+    element.putObject("nested").put("@id", id);
+    BsonDocument stored = encode(compactCodec, element);
+    assertTrue(stored.get("@id").isBinary());
+    // Only the root @id is the ID of the document
+    assertEquals(new BsonString(id), stored.getDocument("nested").get("@id"));
+    assertEquals(element, decode(compactCodec, stored));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void onlyObjectsCanBeEncoded() {
+    encode(JsonNodeFactory.instance.arrayNode());
+  }
+
+  private BsonDocument encode(JsonNode element) {
+    return encode(codec, element);
+  }
+
+  private JsonNode decode(BsonDocument stored) {
+    return decode(codec, stored);
+  }
+
+  private static BsonDocument encode(JsonNodeCodec codec, JsonNode element) {
+    BsonDocument stored = new BsonDocument();
+    codec.encode(new BsonDocumentWriter(stored), element, EncoderContext.builder().build());
+    return stored;
+  }
+
+  private static JsonNode decode(JsonNodeCodec codec, BsonDocument stored) {
+    return codec.decode(new BsonDocumentReader(stored), DecoderContext.builder().build());
+  }
+}
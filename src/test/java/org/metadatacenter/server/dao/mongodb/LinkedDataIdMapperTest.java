@@ -0,0 +1,118 @@
+package org.metadatacenter.server.dao.mongodb;
+
+import com.mongodb.MongoClient;
+import org.bson.BsonArray;
+import org.bson.BsonBinary;
+import org.bson.BsonBinarySubType;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.conversions.Bson;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LinkedDataIdMapperTest {
+
+  private static final String BASE_PATH = "https://repo.metadatacenter.org/templates/";
+  private static final UUID UUID_VALUE = UUID.fromString("0f8fad5b-d9cb-469f-a165-70867728950e");
+  private static final String ID = BASE_PATH + UUID_VALUE;
+  private static final BsonBinary BINARY_ID = new BsonBinary(BsonBinarySubType.UUID_STANDARD, new byte[]{
+      0x0f, (byte) 0x8f, (byte) 0xad, 0x5b, (byte) 0xd9, (byte) 0xcb, 0x46, (byte) 0x9f,
+      (byte) 0xa1, 0x65, 0x70, (byte) 0x86, 0x77, 0x28, (byte) 0x95, 0x0e});
+
+  private final LinkedDataIdMapper mapper = new LinkedDataIdMapper(BASE_PATH);
+
+  @Test
+  public void idsAreStoredAsStringsByDefault() {
+    assertEquals(new BsonString(ID), mapper.toStored(ID));
+    assertEquals(BsonDocument.parse("{'@id': '" + ID + "'}"), render(mapper.filter(ID)));
+  }
+
+  @Test
+  public void compactModeStoresTheUuidWithoutTheBasePath() {
+    mapper.setCompact(true);
+    BsonValue stored = mapper.toStored(ID);
+    assertTrue(stored.isBinary());
+    assertEquals(BsonBinarySubType.UUID_STANDARD.getValue(), stored.asBinary().getType());
+    assertArrayEquals(BINARY_ID.getData(), stored.asBinary().getData());
+    assertEquals(ID, mapper.fromStored(stored.asBinary()));
+  }
+
+  @Test
+  public void idsThatAreNotABasePathUuidStayStrings() {
+    mapper.setCompact(true);
+    String[] ids = {
+        BASE_PATH + "custom-id",
+        BASE_PATH + UUID_VALUE.toString().toUpperCase(),
+        BASE_PATH + UUID_VALUE.toString().replace("-", ""),
+        BASE_PATH + UUID_VALUE + "/versions/1",
+        "https://repo.metadatacenter.org/template-elements/" + UUID_VALUE,
+        UUID_VALUE.toString(),
+        BASE_PATH};
+    for (String id : ids) {
+      assertEquals(id, new BsonString(id), mapper.toStored(id));
+      assertEquals(id, BsonDocument.parse("{'@id': '" + id + "'}"), render(mapper.filter(id)));
+    }
+  }
+
+  @Test
+  public void storedBinaryValuesThatAreNotUuidsAreNotIds() {
+    assertNull(mapper.fromStored(new BsonBinary(BINARY_ID.getData())));
+    assertNull(mapper.fromStored(new BsonBinary(BsonBinarySubType.UUID_STANDARD, new byte[8])));
+  }
+
+  @Test
+  public void storedUuidsAreReadBackAfterLeavingCompactMode() {
+    mapper.setCompact(true);
+    BsonBinary stored = mapper.toStored(ID).asBinary();
+    mapper.setCompact(false);
+    assertEquals(ID, mapper.fromStored(stored));
+    assertEquals(UUID_VALUE.toString(), new LinkedDataIdMapper(null).fromStored(stored));
+  }
+
+  @Test
+  public void compactFiltersMatchBothForms() {
+    mapper.setCompact(true);
+    assertEquals(new BsonDocument("@id", new BsonDocument("$in", new BsonArray(Arrays.asList(new BsonString(ID),
+        BINARY_ID)))), render(mapper.filter(ID)));
+  }
+
+  @Test
+  public void filtersOfSeveralIdsMixTheForms() {
+    mapper.setCompact(true);
+    String customId = BASE_PATH + "custom-id";
+    assertEquals(new BsonDocument("@id", new BsonDocument("$in", new BsonArray(Arrays.asList(new BsonString(ID),
+        BINARY_ID, new BsonString(customId))))), render(mapper.filter(Arrays.asList(ID, customId))));
+    mapper.setCompact(false);
+    assertEquals(new BsonDocument("@id", new BsonDocument("$in", new BsonArray(Arrays.asList(new BsonString(ID),
+        new BsonString(customId))))), render(mapper.filter(Arrays.asList(ID, customId))));
+  }
+
+  @Test
+  public void compactIdRegexMatchesTheIdsStoredAsBinary() {
+    mapper.setCompact(true);
+    Pattern pattern = Pattern.compile(mapper.compactIdRegex());
+    String[] ids = {ID, BASE_PATH + "custom-id", BASE_PATH + UUID_VALUE.toString().toUpperCase(),
+        BASE_PATH + UUID_VALUE + "/versions/1", "prefix" + ID, UUID_VALUE.toString()};
+    for (String id : ids) {
+      assertEquals(id, mapper.toStored(id).isBinary(), pattern.matcher(id).find());
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void compactModeRequiresABasePath() {
+    new LinkedDataIdMapper(null).setCompact(true);
+  }
+
+  private static BsonDocument render(Bson filter) {
+    return filter.toBsonDocument(BsonDocument.class, MongoClient.getDefaultCodecRegistry());
+  }
+}
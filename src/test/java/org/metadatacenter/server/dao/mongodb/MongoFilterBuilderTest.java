@@ -0,0 +1,134 @@
+package org.metadatacenter.server.dao.mongodb;
+
+import com.mongodb.MongoClient;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.conversions.Bson;
+import org.junit.Test;
+import org.metadatacenter.server.service.FieldFilter;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class MongoFilterBuilderTest {
+
+  @Test
+  public void eachOperatorHasItsMongoDBFilter() {
+    Object[][] cases = {
+        {FieldFilter.eq("name", "n"), "{name: 'n'}"},
+        {FieldFilter.eq("name", null), "{name: null}"},
+        {FieldFilter.in("status", Arrays.asList("draft", "published")), "{status: {$in: ['draft', 'published']}}"},
+        {FieldFilter.in("status", Collections.emptyList()), "{status: {$in: []}}"},
+        {FieldFilter.gt("version", 1), "{version: {$gt: 1}}"},
+        {FieldFilter.gte("version", 1), "{version: {$gte: 1}}"},
+        {FieldFilter.lt("title", "m"), "{title: {$lt: 'm'}}"},
+        {FieldFilter.lte("title", "m"), "{title: {$lte: 'm'}}"},
+        {FieldFilter.exists("_ui.order", true), "{'_ui.order': {$exists: true}}"},
+        {FieldFilter.exists("_ui.order", false), "{'_ui.order': {$exists: false}}"},
+        {FieldFilter.eq("archived", false), "{archived: false}"},
+    };
+    for (Object[] testCase : cases) {
+      FieldFilter filter = (FieldFilter) testCase[0];
+      assertEquals(filter.getOperator() + " " + filter.getPath(), BsonDocument.parse((String) testCase[1]),
+          render(MongoFilterBuilder.toBson(Collections.singletonList(filter))));
+    }
+  }
+
+  @Test
+  public void pathsAreEscaped() {
+    assertEquals(BsonDocument.parse("{'_$schema': 's'}"), render(FieldFilter.eq("$schema", "s")));
+    assertEquals(BsonDocument.parse("{'properties._$schema': {$exists: true}}"),
+        render(FieldFilter.exists("properties.$schema", true)));
+  }
+
+  @Test
+  public void noFiltersMatchEverything() {
+    assertEquals(new BsonDocument(), render(MongoFilterBuilder.toBson(null)));
+    assertEquals(new BsonDocument(), render(MongoFilterBuilder.toBson(Collections.emptyList())));
+  }
+
+  @Test
+  public void filtersAreCombinedWithAnd() {
+    assertEquals(BsonDocument.parse("{status: 'draft', version: {$gte: 2}}"), render(MongoFilterBuilder.toBson(
+        Arrays.asList(FieldFilter.eq("status", "draft"), FieldFilter.gte("version", 2)))));
+    // Several conditions on the same field must all hold
+    assertEquals(BsonDocument.parse("{version: {$gt: 1, $lt: 5}}"),
+        render(MongoFilterBuilder.toBson(Arrays.asList(FieldFilter.gt("version", 1), FieldFilter.lt("version", 5)))));
+  }
+
+  @Test
+  public void numbersAreConvertedToTheStoredTypes() {
+    Object[][] cases = {
+        {(byte) 1, "{n: 1}"},
+        {(short) 1, "{n: 1}"},
+        {1, "{n: 1}"},
+        {1L, "{n: {$numberLong: '1'}}"},
+        {BigInteger.valueOf(Long.MAX_VALUE), "{n: {$numberLong: '" + Long.MAX_VALUE + "'}}"},
+        {1.5f, "{n: 1.5}"},
+        {new BigDecimal("2.5"), "{n: 2.5}"},
+        {2.5, "{n: 2.5}"},
+    };
+    for (Object[] testCase : cases) {
+      assertEquals(testCase[0].getClass().getSimpleName(), BsonDocument.parse((String) testCase[1]),
+          render(FieldFilter.eq("n", testCase[0])));
+    }
+    assertEquals(BsonDocument.parse("{n: {$in: [1, {$numberLong: '2'}, 3.5]}}"),
+        render(FieldFilter.in("n", Arrays.asList((short) 1, BigInteger.valueOf(2), 3.5f))));
+  }
+
+  @Test
+  public void linkedDataIdFiltersMatchTheStoredForms() {
+    LinkedDataIdMapper mapper = new LinkedDataIdMapper("https://repo.metadatacenter.org/templates/");
+    mapper.setCompact(true);
+    String id = mapper.getBasePath() + UUID.randomUUID();
+    BsonValue binaryId = mapper.toStored(id);
+    assertEquals(new BsonDocument("@id", new BsonDocument("$in", new BsonArray(Arrays.asList(new BsonString(id),
+        binaryId)))), render(MongoFilterBuilder.toBson(Collections.singletonList(FieldFilter.eq("@id", id)), mapper)));
+    assertEquals(new BsonDocument("@id", new BsonDocument("$in", new BsonArray(Arrays.asList(new BsonString(id),
+        binaryId, new BsonString("other"), new BsonInt32(1))))), render(MongoFilterBuilder.toBson(
+        Collections.singletonList(FieldFilter.in("@id", Arrays.asList(id, "other", 1))), mapper)));
+    // Only the root @id is mapped
+    assertEquals(new BsonDocument("properties.@id", new BsonString(id)), render(MongoFilterBuilder.toBson(
+        Collections.singletonList(FieldFilter.eq("properties.@id", id)), mapper)));
+    assertEquals(BsonDocument.parse("{'@id': {$exists: true}}"), render(MongoFilterBuilder.toBson(
+        Collections.singletonList(FieldFilter.exists("@id", true)), mapper)));
+  }
+
+  @Test
+  public void linkedDataIdRangesAreOnlyRejectedInCompactMode() {
+    LinkedDataIdMapper mapper = new LinkedDataIdMapper("https://repo.metadatacenter.org/templates/");
+    List<FieldFilter> range = Collections.singletonList(FieldFilter.gte("@id", mapper.getBasePath()));
+    assertEquals(BsonDocument.parse("{'@id': {$gte: '" + mapper.getBasePath() + "'}}"),
+        render(MongoFilterBuilder.toBson(range, mapper)));
+    mapper.setCompact(true);
+    try {
+      MongoFilterBuilder.toBson(range, mapper);
+      fail("A range on compact linked data IDs must be rejected");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void integersBeyondTheLongRangeAreRejected() {
+    MongoFilterBuilder.toBson(Collections.singletonList(FieldFilter.gt("n", BigInteger.ONE.shiftLeft(63))));
+  }
+
+  private static BsonDocument render(FieldFilter filter) {
+    return render(MongoFilterBuilder.toBson(Collections.singletonList(filter)));
+  }
+
+  private static BsonDocument render(Bson filter) {
+    return filter.toBsonDocument(BsonDocument.class, MongoClient.getDefaultCodecRegistry());
+  }
+}
@@ -0,0 +1,175 @@
+package org.metadatacenter.server.dao.mongodb;
+
+import com.github.fakemongo.Fongo;
+import com.mongodb.WriteError;
+import com.mongodb.client.MongoCollection;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MongoIndexManagerTest {
+
+  private static final List<Document> INDEXES = Arrays.asList(
+      index("_id_", "{_id: 1}"),
+      index("name_1_version_1", "{name: 1, version: 1}"),
+      index("name_1", "{name: 1}"),
+      index("status_1_created_-1", "{status: 1, created: -1}"),
+      index("tag_1", "{tag: 1}").append("sparse", true),
+      index("owner_1", "{owner: 1}").append("partialFilterExpression", Document.parse("{owner: {$exists: true}}")),
+      index("title_text", "{title: 'text'}"),
+      index("type_1_language_1_modified_1", "{type: 1, language: 1, modified: 1}"));
+
+  private final MongoCollection<Document> collection = new Fongo("test").getMongo().getDatabase("cedar")
+      .getCollection("templates");
+  private final MongoIndexManager indexManager = new MongoIndexManager(collection) {
+    @Override
+    public List<Document> getIndexes() {
+      return INDEXES;
+    }
+  };
+
+  @Test
+  public void findIndexForUsesTheLongestPrefixOfTheQuery() {
+    Object[][] cases = {
+        // Equality paths, range paths, expected index
+        {list("_id"), list(), "_id_"},
+        {list("name"), list(), "name_1"},
+        {list("name", "version"), list(), "name_1_version_1"},
+        {list("version", "name"), list(), "name_1_version_1"},
+        {list("name"), list("version"), "name_1_version_1"},
+        {list(), list("name"), "name_1"},
+        {list("status"), list("created"), "status_1_created_-1"},
+        {list("status", "other"), list(), "status_1_created_-1"},
+    };
+    assertCases(cases);
+  }
+
+  @Test
+  public void findIndexForStopsAtTheFirstRangeKey() {
+    Object[][] cases = {
+        // The range on name ends the usable prefix, so the smaller index serves the query as well
+        {list(), list("name", "version"), "name_1"},
+        {list("version"), list("name"), "name_1"},
+    };
+    assertCases(cases);
+  }
+
+  @Test
+  public void findIndexForFallsBackToNoIndex() {
+    Object[][] cases = {
+        {list(), list(), null},
+        {list("version"), list(), null},
+        {list(), list("created"), null},
+        {list("unindexed"), list("other"), null},
+        // Sparse, partial and text indexes are never chosen
+        {list("tag"), list(), null},
+        {list("owner"), list(), null},
+        {list("title"), list(), null},
+    };
+    assertCases(cases);
+  }
+
+  @Test
+  public void findIndexForSortMatchesTheDirections() {
+    Object[][] cases = {
+        // Single value paths, sort keys, expected index
+        {list(), "{name: 1}", "name_1_version_1"},
+        {list(), "{name: -1}", "name_1_version_1"},
+        {list(), "{name: 1, version: 1}", "name_1_version_1"},
+        {list(), "{name: -1, version: -1}", "name_1_version_1"},
+        {list(), "{status: 1, created: -1}", "status_1_created_-1"},
+        {list(), "{status: -1, created: 1}", "status_1_created_-1"},
+        {list(), "{_id: -1}", "_id_"},
+    };
+    assertSortCases(cases);
+  }
+
+  @Test
+  public void findIndexForSortSkipsKeysWithASingleValue() {
+    Object[][] cases = {
+        {list("name"), "{version: -1}", "name_1_version_1"},
+        {list("status"), "{created: 1}", "status_1_created_-1"},
+        {list("language"), "{type: 1, modified: 1}", "type_1_language_1_modified_1"},
+        {list("type", "language"), "{modified: -1}", "type_1_language_1_modified_1"},
+        // Sorting on single values has no effect, so any index does
+        {list("name"), "{name: 1}", "_id_"},
+    };
+    assertSortCases(cases);
+  }
+
+  @Test
+  public void findIndexForSortFallsBackToNoIndex() {
+    Object[][] cases = {
+        {list(), "{name: 1, version: -1}", null},
+        {list(), "{status: 1, created: 1}", null},
+        {list(), "{version: 1}", null},
+        {list(), "{version: 1, name: 1}", null},
+        {list(), "{type: 1, modified: 1}", null},
+        {list("language"), "{modified: 1, type: 1}", null},
+        {list(), "{unindexed: 1}", null},
+        {list(), "{tag: 1}", null},
+        {list(), "{owner: 1}", null},
+        {list(), "{title: 1}", null},
+    };
+    assertSortCases(cases);
+  }
+
+  @Test
+  public void duplicateKeyErrorsAreMatchedByIndexName() {
+    WriteError duplicate = new WriteError(11000,
+        "E11000 duplicate key error index: cedar.templates.$@id_1 dup key: { : \"x\" }", new BsonDocument());
+    assertTrue(MongoIndexManager.isDuplicateKey(duplicate, "@id_1"));
+    assertFalse(MongoIndexManager.isDuplicateKey(duplicate, "name_1"));
+    assertFalse(MongoIndexManager.isDuplicateKey(new WriteError(121, "@id_1 failed validation",
+        new BsonDocument()), "@id_1"));
+  }
+
+  @Test
+  public void onlyAscendingAndDescendingKeysArePlain() {
+    assertTrue(MongoIndexManager.isPlainIndex(Document.parse("{a: 1, b: -1}")));
+    assertFalse(MongoIndexManager.isPlainIndex(Document.parse("{a: 1, b: '2dsphere'}")));
+  }
+
+  private void assertCases(Object[][] cases) {
+    for (Object[] testCase : cases) {
+      @SuppressWarnings("unchecked")
+      List<String> equalityPaths = (List<String>) testCase[0];
+      @SuppressWarnings("unchecked")
+      List<String> rangePaths = (List<String>) testCase[1];
+      assertEquals(equalityPaths + " " + rangePaths, testCase[2], indexManager.findIndexFor(equalityPaths,
+          rangePaths));
+    }
+  }
+
+  private void assertSortCases(Object[][] cases) {
+    for (Object[] testCase : cases) {
+      @SuppressWarnings("unchecked")
+      List<String> singleValuePaths = (List<String>) testCase[0];
+      Map<String, Integer> sortKeys = new LinkedHashMap<>();
+      for (Map.Entry<String, Object> key : Document.parse((String) testCase[1]).entrySet()) {
+        sortKeys.put(key.getKey(), (Integer) key.getValue());
+      }
+      assertEquals(singleValuePaths + " " + sortKeys, testCase[2], indexManager.findIndexForSort(singleValuePaths,
+          sortKeys));
+    }
+  }
+
+  private static List<String> list(String... paths) {
+    return (paths.length == 0) ? Collections.emptyList() : Arrays.asList(paths);
+  }
+
+  private static Document index(String name, String keys) {
+    return new Document("v", 1).append("key", Document.parse(keys)).append("name", name);
+  }
+}
@@ -0,0 +1,147 @@
+package org.metadatacenter.server.dao.mongodb;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.metadatacenter.util.FixMongoDirection;
+import org.metadatacenter.util.json.JsonUtils;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class MongoKeyEscaperTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper().configure(JsonParser.Feature.ALLOW_SINGLE_QUOTES,
+      true);
+
+  // A template with the keys found in CEDAR documents: JSON Schema keywords, JSON-LD keywords and UI settings
+  private static final String TEMPLATE = "{" +
+      "'$schema': 'http://json-schema.org/draft-04/schema#'," +
+      "'@id': 'https://repo.metadatacenter.org/templates/0f8fad5b-d9cb-469f-a165-70867728950e'," +
+      "'@type': 'https://schema.metadatacenter.org/core/Template'," +
+      "'@context': {'pav': 'http://purl.org/pav/', 'pav:createdOn': {'@type': 'xsd:dateTime'}}," +
+      "'type': 'object'," +
+      "'title': 'Study'," +
+      "'properties': {" +
+      "  '@context': {'type': 'object', 'properties': {'name': {'enum': ['https://schema.org/name']}}}," +
+      "  'name': {'$schema': 'http://json-schema.org/draft-04/schema#', 'type': 'object'," +
+      "    'properties': {'@value': {'type': ['string', 'null']}}," +
+      "    '_ui': {'inputType': 'textfield'}, '_valueConstraints': {'requiredValue': true}}," +
+      "  'sample': {'$ref': '#/definitions/sample', 'description': '$ref'}," +
+      "  'keywords': {'type': 'array', 'items': {'$schema': 'http://json-schema.org/draft-04/schema#'}}" +
+      "}," +
+      "'required': ['@context', '@id', 'name']," +
+      "'_ui': {'order': ['name', 'sample', 'keywords'], 'pages': [{'title': 'First'}, {'title': 'Second'}]}," +
+      "'pav:createdOn': null," +
+      "'additionalProperties': false" +
+      "}";
+
+  @Test
+  public void keysAreRestoredAsTheyWereWritten() {
+    String[] keys = {"name", "@id", "$schema", "$ref", "$id", "$comment", "$custom", "$", "_$schema", "_$custom",
+        "__$custom", "_$", "_", "__", "_ui", "a$b", "_a$b", ""};
+    for (String key : keys) {
+      String escaped = MongoKeyEscaper.escapeKey(key);
+      assertFalse(key, escaped.startsWith("$"));
+      assertEquals(key, MongoKeyEscaper.unescapeKey(escaped));
+    }
+  }
+
+  @Test
+  public void keysStartingWithEscapesAndADollarGetOneMoreEscape() {
+    String[][] cases = {
+        // Key, stored key
+        {"$schema", "_$schema"},
+        {"$custom", "_$custom"},
+        {"_$schema", "__$schema"},
+        {"__$custom", "___$custom"},
+        {"_ui", "_ui"},
+        {"_a$b", "_a$b"},
+        {"_", "_"},
+    };
+    for (String[] testCase : cases) {
+      assertEquals(testCase[0], testCase[1], MongoKeyEscaper.escapeKey(testCase[0]));
+    }
+  }
+
+  @Test
+  public void pathsAreEscapedPerKey() {
+    assertEquals("properties._$schema", MongoKeyEscaper.escapePath("properties.$schema"));
+    assertEquals("_$ref.0.__$x", MongoKeyEscaper.escapePath("$ref.0._$x"));
+    assertEquals("_ui.order", MongoKeyEscaper.escapePath("_ui.order"));
+  }
+
+  @Test
+  public void treesAreAdaptedAsByJsonUtils() throws IOException {
+    JsonNode template = MAPPER.readTree(TEMPLATE);
+    JsonNode original = template.deepCopy();
+    JsonUtils jsonUtils = new JsonUtils();
+
+    JsonNode escaped = MongoKeyEscaper.fixMongoDB(template, FixMongoDirection.WRITE_TO_MONGO);
+    assertEquals(jsonUtils.fixMongoDB(template.deepCopy(), FixMongoDirection.WRITE_TO_MONGO), escaped);
+    assertEquals("http://json-schema.org/draft-04/schema#", escaped.get("_$schema").textValue());
+    assertEquals("$ref", escaped.get("properties").get("sample").get("description").textValue());
+
+    JsonNode restored = MongoKeyEscaper.fixMongoDB(escaped, FixMongoDirection.READ_FROM_MONGO);
+    assertEquals(jsonUtils.fixMongoDB(escaped.deepCopy(), FixMongoDirection.READ_FROM_MONGO), restored);
+    assertEquals(original, restored);
+    // Neither tree is modified
+    assertEquals(original, template);
+    assertEquals(jsonUtils.fixMongoDB(original.deepCopy(), FixMongoDirection.WRITE_TO_MONGO), escaped);
+  }
+
+  @Test
+  public void treesWithEscapedKeysRoundTrip() throws IOException {
+    JsonNode tree = MAPPER.readTree("{'_$schema': 1, 'a': [{'$ref': 2, '__$x': 3}], 'b': {'$id': {'_$': 4}}}");
+    JsonNode escaped = MongoKeyEscaper.fixMongoDB(tree, FixMongoDirection.WRITE_TO_MONGO);
+    assertEquals(MAPPER.readTree("{'__$schema': 1, 'a': [{'_$ref': 2, '___$x': 3}], 'b': {'_$id': {'__$': 4}}}"),
+        escaped);
+    assertEquals(tree, MongoKeyEscaper.fixMongoDB(escaped, FixMongoDirection.READ_FROM_MONGO));
+  }
+
+  @Test
+  public void untouchedSubtreesAreShared() throws IOException {
+    JsonNode template = MAPPER.readTree(TEMPLATE);
+    JsonNode escaped = MongoKeyEscaper.fixMongoDB(template, FixMongoDirection.WRITE_TO_MONGO);
+    assertNotSame(template, escaped);
+    for (String key : new String[]{"@context", "required", "_ui"}) {
+      assertSame(key, template.get(key), escaped.get(key));
+    }
+    JsonNode properties = template.get("properties");
+    JsonNode escapedProperties = escaped.get("properties");
+    assertNotSame(properties, escapedProperties);
+    assertSame(properties.get("@context"), escapedProperties.get("@context"));
+    assertNotSame(properties.get("name"), escapedProperties.get("name"));
+    assertSame(properties.get("name").get("properties"), escapedProperties.get("name").get("properties"));
+    assertSame(properties.get("name").get("_ui"), escapedProperties.get("name").get("_ui"));
+    assertNotSame(properties.get("keywords"), escapedProperties.get("keywords"));
+
+    JsonNode restored = MongoKeyEscaper.fixMongoDB(escaped, FixMongoDirection.READ_FROM_MONGO);
+    assertSame(template.get("_ui"), restored.get("_ui"));
+    assertSame(properties.get("@context"), restored.get("properties").get("@context"));
+  }
+
+  @Test
+  public void treesWithoutKeysToAdaptAreReturnedAsIs() throws IOException {
+    JsonNode tree = MAPPER.readTree("{'@id': 'x', 'title': '$schema', '_ui': {'order': ['a']}, 'list': [{'a': 1}]}");
+    assertSame(tree, MongoKeyEscaper.fixMongoDB(tree, FixMongoDirection.WRITE_TO_MONGO));
+    assertSame(tree, MongoKeyEscaper.fixMongoDB(tree, FixMongoDirection.READ_FROM_MONGO));
+    // Keys starting with '$' are only adapted when writing
+    JsonNode unescaped = MAPPER.readTree("{'$schema': 's'}");
+    assertSame(unescaped, MongoKeyEscaper.fixMongoDB(unescaped, FixMongoDirection.READ_FROM_MONGO));
+  }
+
+  @Test
+  public void arraysAreCopiedOnlyFromTheFirstChange() throws IOException {
+    JsonNode tree = MAPPER.readTree("[{'a': 1}, {'$ref': 2}, {'b': 3}]");
+    JsonNode escaped = MongoKeyEscaper.fixMongoDB(tree, FixMongoDirection.WRITE_TO_MONGO);
+    assertEquals(MAPPER.readTree("[{'a': 1}, {'_$ref': 2}, {'b': 3}]"), escaped);
+    assertSame(tree.get(0), escaped.get(0));
+    assertSame(tree.get(2), escaped.get(2));
+  }
+}
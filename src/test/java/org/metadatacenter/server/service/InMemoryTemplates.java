@@ -0,0 +1,80 @@
+package org.metadatacenter.server.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Templates kept in memory, served by a {@link TemplateService} that only supports finding templates and registering
+ * change listeners
+ */
+public class InMemoryTemplates implements InvocationHandler {
+
+  private final Map<String, JsonNode> templates = new ConcurrentHashMap<>();
+  private final List<TemplateChangeListener<String>> listeners = new CopyOnWriteArrayList<>();
+  private final AtomicInteger findCount = new AtomicInteger();
+  private volatile long findDelayMillis;
+
+  @SuppressWarnings("unchecked")
+  public TemplateService<String, JsonNode> service() {
+    return (TemplateService<String, JsonNode>) Proxy.newProxyInstance(TemplateService.class.getClassLoader(),
+        new Class<?>[]{TemplateService.class}, this);
+  }
+
+  /**
+   * Add or replace a template, without notifying the listeners
+   */
+  public void put(String templateId, JsonNode template) {
+    templates.put(templateId, template);
+  }
+
+  public List<TemplateChangeListener<String>> getListeners() {
+    return listeners;
+  }
+
+  /**
+   * Make findTemplate slow, so that concurrent callers overlap
+   */
+  public void setFindDelayMillis(long findDelayMillis) {
+    this.findDelayMillis = findDelayMillis;
+  }
+
+  /**
+   * @return The number of calls to findTemplate
+   */
+  public int getFindCount() {
+    return findCount.get();
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public Object invoke(Object proxy, Method method, Object[] args) throws InterruptedException {
+    switch (method.getName()) {
+      case "findTemplate":
+        findCount.incrementAndGet();
+        Thread.sleep(findDelayMillis);
+        return templates.get((String) args[0]);
+      case "addTemplateChangeListener":
+        listeners.add((TemplateChangeListener<String>) args[0]);
+        return null;
+      case "removeTemplateChangeListener":
+        listeners.remove(args[0]);
+        return null;
+      case "equals":
+        return proxy == args[0];
+      case "hashCode":
+        return System.identityHashCode(proxy);
+      case "toString":
+        return "InMemoryTemplates" + templates.keySet();
+      default:
+        throw new UnsupportedOperationException(method.getName());
+    }
+  }
+}
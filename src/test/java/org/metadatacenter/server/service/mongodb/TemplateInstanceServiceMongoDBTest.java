@@ -0,0 +1,102 @@
+package org.metadatacenter.server.service.mongodb;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.fakemongo.Fongo;
+import com.mongodb.MongoClient;
+import org.junit.Test;
+import org.metadatacenter.server.dao.mongodb.TemplateInstanceDaoMongoDB;
+import org.metadatacenter.server.service.InMemoryTemplates;
+import org.metadatacenter.server.validation.BatchValidator;
+import org.metadatacenter.server.validation.ValidationResult;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+public class TemplateInstanceServiceMongoDBTest {
+
+  private static final String TEMPLATE_ID = "https://repo.metadatacenter.org/templates/t";
+  private static final String BASE_PATH = "https://repo.metadatacenter.org/template-instances/";
+
+  private final MongoClient mongoClient = new Fongo("test").getMongo();
+  private final InMemoryTemplates templates = new InMemoryTemplates();
+
+  @Test
+  public void instancesAreValidatedAgainstTheirTemplate() throws Exception {
+    templates.put(TEMPLATE_ID, new ObjectMapper().readTree("{\"type\":\"object\","
+        + "\"properties\":{\"value\":{\"type\":\"integer\"}},\"required\":[\"value\"]}"));
+    TemplateInstanceServiceMongoDB service = service();
+    assertNotNull(service.createTemplateInstance(instance(TEMPLATE_ID).put("value", 1)).get("@id"));
+    assertRejected(service, instance(TEMPLATE_ID).put("value", "one"));
+    assertRejected(service, instance(TEMPLATE_ID));
+    assertRejected(service, instance(TEMPLATE_ID + "/missing").put("value", 1));
+    assertRejected(service, JsonNodeFactory.instance.objectNode().put("value", 1));
+    assertEquals(1, service.count());
+  }
+
+  @Test
+  public void batchesCompileEachTemplateOnce() throws Exception {
+    templates.put(TEMPLATE_ID, new ObjectMapper().readTree("{\"type\":\"object\","
+        + "\"properties\":{\"value\":{\"type\":\"integer\"}}}"));
+    templates.setFindDelayMillis(200);
+    TemplateInstanceServiceMongoDB service = service();
+    BatchValidator batchValidator = new BatchValidator(4);
+    service.setBatchValidator(batchValidator);
+    try {
+      List<JsonNode> instances = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        ObjectNode instance = instance(TEMPLATE_ID);
+        instances.add((i % 2 == 0) ? instance.put("value", Integer.toString(i)) : instance.put("value", i));
+      }
+      List<ValidationResult> results = service.validateTemplateInstances(instances);
+      for (int i = 0; i < results.size(); i++) {
+        assertEquals("instance " + i, i % 2 != 0, results.get(i).isSuccess());
+      }
+      assertEquals(1, templates.getFindCount());
+    } finally {
+      batchValidator.close();
+    }
+  }
+
+  @Test
+  public void instancesAreNotValidatedWithoutATemplateService() throws Exception {
+    TemplateInstanceServiceMongoDB service = new TemplateInstanceServiceMongoDB(mongoClient, "cedar",
+        "template-instances", BASE_PATH);
+    service.createTemplateInstance(instance(TEMPLATE_ID).put("value", "one"));
+    assertEquals(1, service.count());
+    service.close();
+  }
+
+  @Test
+  public void closingStopsListeningToTheTemplates() {
+    TemplateInstanceServiceMongoDB service = service();
+    assertEquals(1, templates.getListeners().size());
+    service.close();
+    assertEquals(0, templates.getListeners().size());
+  }
+
+  private TemplateInstanceServiceMongoDB service() {
+    return new TemplateInstanceServiceMongoDB(mongoClient, "cedar", "template-instances", BASE_PATH,
+        templates.service());
+  }
+
+  private static ObjectNode instance(String templateId) {
+    return JsonNodeFactory.instance.objectNode().put(TemplateInstanceDaoMongoDB.TEMPLATE_ID_FIELD, templateId);
+  }
+
+  private static void assertRejected(TemplateInstanceServiceMongoDB service, JsonNode instance) throws IOException {
+    try {
+      service.createTemplateInstance(instance);
+      fail("The instance must be rejected: " + instance);
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+  }
+}
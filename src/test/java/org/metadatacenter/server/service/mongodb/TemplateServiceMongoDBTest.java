@@ -0,0 +1,60 @@
+package org.metadatacenter.server.service.mongodb;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.fakemongo.Fongo;
+import com.mongodb.MongoClient;
+import org.junit.Test;
+import org.metadatacenter.server.dao.cache.CacheStatistics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TemplateServiceMongoDBTest {
+
+  private static final String BASE_PATH = "https://repo.metadatacenter.org/templates/";
+
+  private final MongoClient mongoClient = new Fongo("test").getMongo();
+  private final TemplateElementServiceMongoDB templateElementService = new TemplateElementServiceMongoDB(mongoClient,
+      "cedar", "template-elements", "https://repo.metadatacenter.org/template-elements/");
+
+  @Test
+  public void cachingIsDisabledByDefault() {
+    assertNull(service().getCacheStatistics());
+    assertNull(templateElementService.getCacheStatistics());
+  }
+
+  @Test
+  public void uncachedServicesSeeTheChangesMadeByOtherServices() throws Exception {
+    TemplateServiceMongoDB service = service();
+    // Another node, whose writes the first service is not notified of
+    TemplateServiceMongoDB otherService = service();
+    String id = service.createTemplate(template("first")).get("@id").textValue();
+    assertEquals("first", service.findTemplate(id).get("title").textValue());
+    otherService.updateTemplate(id, JsonNodeFactory.instance.objectNode().put("title", "second"));
+    assertEquals("second", service.findTemplate(id).get("title").textValue());
+  }
+
+  @Test
+  public void cachingIsOptIn() throws Exception {
+    TemplateServiceMongoDB service = new TemplateServiceMongoDB(mongoClient, "cedar", "templates", BASE_PATH,
+        templateElementService, GenericTemplateServiceMongoDB.newDefaultCache());
+    String id = service.createTemplate(template("first")).get("@id").textValue();
+    service.findTemplate(id);
+    JsonNode found = service.findTemplate(id);
+    assertEquals("first", found.get("title").textValue());
+    CacheStatistics statistics = service.getCacheStatistics();
+    assertEquals(1, statistics.getMissCount());
+    assertEquals(1, statistics.getHitCount());
+  }
+
+  private TemplateServiceMongoDB service() {
+    return new TemplateServiceMongoDB(mongoClient, "cedar", "templates", BASE_PATH, templateElementService);
+  }
+
+  private static ObjectNode template(String title) {
+    return JsonNodeFactory.instance.objectNode().put("$schema", "http://json-schema.org/draft-04/schema#")
+        .put("@type", "https://schema.metadatacenter.org/core/Template").put("title", title);
+  }
+}
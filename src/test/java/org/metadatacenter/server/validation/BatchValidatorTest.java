@@ -0,0 +1,154 @@
+package org.metadatacenter.server.validation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.github.fge.jsonschema.core.exceptions.ProcessingException;
+import com.github.fge.jsonschema.core.report.ProcessingReport;
+import com.github.fge.jsonschema.main.JsonSchema;
+import com.github.fge.jsonschema.main.JsonSchemaFactory;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BatchValidatorTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final JsonSchema VALID_SCHEMA;
+
+  static {
+    try {
+      VALID_SCHEMA = JsonSchemaFactory.byDefault().getJsonSchema(JsonNodeFactory.instance.objectNode());
+    } catch (ProcessingException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private final BatchValidator validator = new BatchValidator(4);
+
+  @After
+  public void closeValidator() {
+    validator.close();
+  }
+
+  @Test
+  public void resultsFollowTheOrderOfTheDocuments() throws Exception {
+    JsonSchema schema = JsonSchemaFactory.byDefault().getJsonSchema(MAPPER.readTree(
+        "{\"type\":\"object\",\"properties\":{\"n\":{\"type\":\"integer\",\"multipleOf\":3}}}"));
+    List<JsonNode> documents = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      documents.add(JsonNodeFactory.instance.objectNode().put("n", i));
+    }
+    List<ValidationResult> results = validator.validateAll(schema, documents);
+    assertEquals(documents.size(), results.size());
+    for (int i = 0; i < results.size(); i++) {
+      assertEquals("document " + i, i % 3 == 0, results.get(i).isSuccess());
+      assertEquals(i % 3 == 0, results.get(i).getMessage() == null);
+      assertNull(results.get(i).getFailure());
+    }
+  }
+
+  @Test
+  public void failuresAreReportedPerDocument() {
+    IOException ioFailure = new IOException("unavailable");
+    ProcessingException processingFailure = new ProcessingException("cannot compile");
+    IllegalArgumentException argumentFailure = new IllegalArgumentException("no template");
+    List<JsonNode> documents = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      documents.add(JsonNodeFactory.instance.numberNode(i));
+    }
+    List<ValidationResult> results = validator.validateAll(documents, document -> {
+      switch (document.intValue() % 4) {
+        case 1:
+          throw ioFailure;
+        case 2:
+          throw processingFailure;
+        case 3:
+          throw argumentFailure;
+        default:
+          return validReport();
+      }
+    });
+    for (int i = 0; i < results.size(); i++) {
+      ValidationResult result = results.get(i);
+      if (i % 4 == 0) {
+        assertTrue(result.isSuccess());
+        assertNull(result.getFailure());
+      } else {
+        assertFalse(result.isSuccess());
+        assertNull(result.getReport());
+        assertSame(i % 4 == 1 ? ioFailure : i % 4 == 2 ? processingFailure : argumentFailure, result.getFailure());
+        assertEquals(result.getFailure().getMessage(), result.getMessage());
+      }
+    }
+  }
+
+  @Test
+  public void failureWithoutMessageIsDescribed() {
+    List<ValidationResult> results = validator.validateAll(
+        Collections.singletonList(JsonNodeFactory.instance.nullNode()), document -> {
+          throw new NullPointerException();
+        });
+    assertEquals("java.lang.NullPointerException", results.get(0).getMessage());
+  }
+
+  @Test
+  public void emptyBatchHasNoResults() {
+    assertTrue(validator.validateAll(Collections.emptyList(), document -> validReport()).isEmpty());
+  }
+
+  @Test
+  public void validationsRunInParallelWithinTheBound() {
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    // Each validation waits until as many validations as workers run at the same time
+    CountDownLatch allRunning = new CountDownLatch(validator.getParallelism());
+    List<JsonNode> documents = Collections.nCopies(200, JsonNodeFactory.instance.objectNode());
+    List<ValidationResult> results = validator.validateAll(documents, document -> {
+      maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+      allRunning.countDown();
+      try {
+        allRunning.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      running.decrementAndGet();
+      return validReport();
+    });
+    assertEquals(0, allRunning.getCount());
+    assertEquals(validator.getParallelism(), maxRunning.get());
+    assertTrue(results.stream().allMatch(ValidationResult::isSuccess));
+  }
+
+  @Test
+  public void validationsRunOnTheWorkers() {
+    List<String> threadNames = Collections.synchronizedList(new ArrayList<>());
+    validator.validateAll(Collections.nCopies(100, JsonNodeFactory.instance.objectNode()), document -> {
+      threadNames.add(Thread.currentThread().getName());
+      return validReport();
+    });
+    assertTrue(threadNames.stream().allMatch(name -> name.startsWith("batch-validator-")));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsNonPositiveParallelism() {
+    new BatchValidator(0);
+  }
+
+  private static ProcessingReport validReport() throws ProcessingException {
+    return VALID_SCHEMA.validate(JsonNodeFactory.instance.objectNode());
+  }
+}
@@ -0,0 +1,124 @@
+package org.metadatacenter.server.validation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.github.fge.jsonschema.main.JsonSchema;
+import com.github.fge.jsonschema.main.JsonSchemaFactory;
+import org.junit.Test;
+import org.metadatacenter.server.dao.cache.CacheStatistics;
+import org.metadatacenter.server.service.InMemoryTemplates;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TemplateValidatorCacheTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final String TEMPLATE_ID = "https://repo.metadatacenter.org/templates/t";
+  private static final long EXPIRY = 60_000;
+
+  private final InMemoryTemplates templates = new InMemoryTemplates();
+  private final AtomicLong time = new AtomicLong();
+  private final TemplateValidatorCache cache = new TemplateValidatorCache(templates.service(),
+      JsonSchemaFactory.byDefault(), 10, EXPIRY, time::get);
+
+  @Test
+  public void templatesAreCompiledOnce() throws Exception {
+    templates.put(TEMPLATE_ID, template("integer"));
+    assertTrue(cache.validate(TEMPLATE_ID, instance(1)).isSuccess());
+    assertFalse(cache.validate(TEMPLATE_ID, instance("one")).isSuccess());
+    assertEquals(1, templates.getFindCount());
+    CacheStatistics statistics = cache.getStatistics();
+    assertEquals(1, statistics.getMissCount());
+    assertEquals(1, statistics.getHitCount());
+  }
+
+  @Test
+  public void concurrentLookupsShareOneCompilation() throws Exception {
+    templates.put(TEMPLATE_ID, template("integer"));
+    templates.setFindDelayMillis(200);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<JsonSchema>> lookups = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        lookups.add(executor.submit(() -> {
+          start.await();
+          return cache.getValidator(TEMPLATE_ID);
+        }));
+      }
+      start.countDown();
+      JsonSchema validator = lookups.get(0).get(10, TimeUnit.SECONDS);
+      for (Future<JsonSchema> lookup : lookups) {
+        assertSame(validator, lookup.get(10, TimeUnit.SECONDS));
+      }
+      assertEquals(1, templates.getFindCount());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void changedTemplatesAreCompiledAgain() throws Exception {
+    templates.put(TEMPLATE_ID, template("integer"));
+    assertTrue(cache.validate(TEMPLATE_ID, instance(1)).isSuccess());
+    templates.put(TEMPLATE_ID, template("string"));
+    cache.templateChanged(TEMPLATE_ID);
+    assertFalse(cache.validate(TEMPLATE_ID, instance(1)).isSuccess());
+    assertTrue(cache.validate(TEMPLATE_ID, instance("one")).isSuccess());
+    assertEquals(2, templates.getFindCount());
+  }
+
+  @Test
+  public void validatorsExpireForChangesThatAreNotNotified() throws Exception {
+    templates.put(TEMPLATE_ID, template("integer"));
+    assertTrue(cache.validate(TEMPLATE_ID, instance(1)).isSuccess());
+    templates.put(TEMPLATE_ID, template("string"));
+    time.addAndGet(EXPIRY - 1);
+    assertTrue(cache.validate(TEMPLATE_ID, instance(1)).isSuccess());
+    time.addAndGet(1);
+    assertFalse(cache.validate(TEMPLATE_ID, instance(1)).isSuccess());
+    assertEquals(2, templates.getFindCount());
+  }
+
+  @Test
+  public void missingTemplatesHaveNoValidator() throws Exception {
+    assertNull(cache.getValidator(TEMPLATE_ID));
+    try {
+      cache.validate(TEMPLATE_ID, instance(1));
+      fail("Validating against a missing template must fail");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+    // Missing templates are looked up again, since they may be created later
+    assertEquals(2, templates.getFindCount());
+  }
+
+  private static JsonNode template(String type) throws IOException {
+    return MAPPER.readTree("{\"$schema\":\"http://json-schema.org/draft-04/schema#\",\"type\":\"object\","
+        + "\"properties\":{\"value\":{\"type\":\"" + type + "\"}},\"required\":[\"value\"]}");
+  }
+
+  private static JsonNode instance(int value) {
+    return JsonNodeFactory.instance.objectNode().put("value", value);
+  }
+
+  private static JsonNode instance(String value) {
+    return JsonNodeFactory.instance.objectNode().put("value", value);
+  }
+}